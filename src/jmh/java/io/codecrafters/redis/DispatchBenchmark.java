@@ -0,0 +1,77 @@
+package io.codecrafters.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The path a pipeline takes through Client.processInput without the socket: parse, command lookup,
+// arity check, the handler and the encoded reply. dispatchOnly starts from commands already parsed,
+// so the difference between the two is what parsing costs per command.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    static final int COMMANDS = 100;
+
+    static {
+        Main.registerCommands();
+    }
+
+    byte[] pipeline;
+    RespCommand[] parsed;
+    RespParser parser;
+    Client client;
+
+    @Setup(Level.Trial)
+    public void setup() throws RespParser.ProtocolException {
+        // Half SETs and half GETs of the same keys, so both a simple and a bulk reply get encoded
+        StringBuilder commands = new StringBuilder();
+        parsed = new RespCommand[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            String key = "key:" + i / 2;
+            RespCommand command = i % 2 == 0 ? RespCommand.of("SET", key, "value:" + i) : RespCommand.of("GET", key);
+            parsed[i] = command;
+            commands.append(new String(Main.encode(command), StandardCharsets.ISO_8859_1));
+        }
+        pipeline = commands.toString().getBytes(StandardCharsets.ISO_8859_1);
+        parser = new RespParser();
+        client = new Client(null, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public int parseAndDispatch() throws RespParser.ProtocolException {
+        ByteBuffer buffer = ByteBuffer.wrap(pipeline);
+        RespCommand command;
+        while ((command = parser.parse(buffer)) != null) {
+            Main.processCommand(client, command);
+        }
+        // Stands in for the socket write, which would empty the buffer the same way
+        return client.takeOutput().length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public int dispatchOnly() {
+        for (RespCommand command : parsed) {
+            Main.processCommand(client, command);
+        }
+        return client.takeOutput().length;
+    }
+}
@@ -0,0 +1,123 @@
+package io.codecrafters.redis;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A cache-aside workload under maxmemory: GET a key drawn from a Zipfian distribution over KEYS
+// keys, and SET it on a miss. maxmemory holds about a tenth of the keys, so the hit rate shows how
+// well each policy keeps the popular ones; hits and misses are reported as counters next to the
+// throughput. Each policy runs in its own fork, since the policy is fixed when Eviction loads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvictionBenchmark {
+    static final int KEYS = 100_000;
+    static final int DRAWS = 1 << 20;
+    static final double ZIPF_EXPONENT = 0.99;
+
+    static {
+        Main.registerCommands();
+    }
+
+    @Param({"allkeys-lru", "allkeys-lfu", "allkeys-random"})
+    String policy;
+
+    @Param({"3mb"})
+    String maxmemory;
+
+    Command get;
+    Command set;
+    RespCommand[] gets;
+    RespCommand[] sets;
+    int[][] stripes;
+    int[] draws;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long hits;
+        public long misses;
+        Client client;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            hits = 0;
+            misses = 0;
+            if (client == null) {
+                client = new Client(null, null);
+                // Suppresses replies, there is no socket behind this client
+                client.master = true;
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Config.values.put("maxmemory", maxmemory);
+        Config.values.put("maxmemory-policy", policy);
+        get = Main.commands.lookup("get");
+        set = Main.commands.lookup("set");
+        gets = new RespCommand[KEYS];
+        sets = new RespCommand[KEYS];
+        stripes = new int[KEYS][];
+        String value = "v".repeat(100);
+        for (int i = 0; i < KEYS; i++) {
+            gets[i] = RespCommand.of("GET", "key:" + i);
+            sets[i] = RespCommand.of("SET", "key:" + i, value);
+            stripes[i] = Keyspace.stripes(get, gets[i]);
+        }
+        // Rank r is drawn with probability proportional to 1 / r^s
+        double[] cdf = new double[KEYS];
+        double sum = 0;
+        for (int i = 0; i < KEYS; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cdf[i] = sum;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        draws = new int[DRAWS];
+        for (int i = 0; i < DRAWS; i++) {
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            draws[i] = rank >= 0 ? rank : Math.min(KEYS - 1, -rank - 1);
+        }
+    }
+
+    // The GET is done by hand under its stripe, as Main.call would, to see whether it hit
+    @Benchmark
+    public Object cacheAside(Counters counters) {
+        int key = draws[counters.next++ & (DRAWS - 1)];
+        Object value;
+        Main.keyspace.lock(stripes[key]);
+        try {
+            value = Main.keyspace.getString(gets[key].string(1));
+        } finally {
+            Main.keyspace.unlock(stripes[key]);
+        }
+        if (value != null) {
+            counters.hits++;
+        } else {
+            Eviction.makeRoom();
+            Main.call(counters.client, set, sets[key]);
+            counters.misses++;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,82 @@
+package io.codecrafters.redis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// GET/INCR through dispatch from every core at once. That no INCR gets lost under this contention
+// is checked by KeyspaceConcurrencyTest; this only measures throughput.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class KeyspaceBenchmark {
+    static final int KEYS = 10_000;
+    static final RespCommand INCR_COUNTER = RespCommand.of("INCR", "counter");
+
+    static {
+        Main.registerCommands();
+    }
+
+    final Command get = Main.commands.lookup("get");
+    final Command incr = Main.commands.lookup("incr");
+    final Command set = Main.commands.lookup("set");
+    RespCommand[] getCommands;
+    RespCommand[] incrCommands;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        Client client;
+        int next;
+
+        @Setup
+        public void setup() {
+            client = new Client(null, null);
+            // Suppresses replies, there is no socket behind this client
+            client.master = true;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Client loader = new Client(null, null);
+        loader.master = true;
+        getCommands = new RespCommand[KEYS];
+        incrCommands = new RespCommand[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            Main.call(loader, set, RespCommand.of("SET", "key:" + i, "value"));
+            getCommands[i] = RespCommand.of("GET", "key:" + i);
+            incrCommands[i] = RespCommand.of("INCR", "counter:" + i);
+        }
+    }
+
+    @Benchmark
+    public void get(ThreadState state) {
+        Main.call(state.client, get, getCommands[state.next++ % KEYS]);
+    }
+
+    // Every thread on the same key, so every call contends for one stripe lock
+    @Benchmark
+    public void incrSameKey(ThreadState state) {
+        Main.call(state.client, incr, INCR_COUNTER);
+    }
+
+    @Benchmark
+    public void incrSpreadKeys(ThreadState state) {
+        Main.call(state.client, incr, incrCommands[state.next++ % KEYS]);
+    }
+}
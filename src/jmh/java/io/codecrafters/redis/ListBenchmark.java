@@ -0,0 +1,78 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// QuickList against the ArrayList<String> lists used to be, on a queue of `size` elements:
+// LPUSH+LPOP at the head, RPUSH+LPOP as a job queue, and LINDEX in the middle
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    ArrayList<String> arrayList;
+    QuickList quickList;
+    String element = "job:0123456789";
+
+    @Setup(Level.Trial)
+    public void setup() {
+        arrayList = new ArrayList<>();
+        quickList = new QuickList();
+        for (int i = 0; i < size; i++) {
+            arrayList.add("job:" + i);
+            quickList.pushTail("job:" + i);
+        }
+    }
+
+    @Benchmark
+    public String arrayListHeadPushPop() {
+        arrayList.add(0, element);
+        return arrayList.remove(0);
+    }
+
+    @Benchmark
+    public String quickListHeadPushPop() {
+        quickList.pushHead(element);
+        return quickList.popHead();
+    }
+
+    @Benchmark
+    public String arrayListQueue() {
+        arrayList.add(element);
+        return arrayList.remove(0);
+    }
+
+    @Benchmark
+    public String quickListQueue() {
+        quickList.pushTail(element);
+        return quickList.popHead();
+    }
+
+    @Benchmark
+    public String arrayListIndexMiddle() {
+        return arrayList.get(size / 2);
+    }
+
+    @Benchmark
+    public String quickListIndexMiddle() {
+        return quickList.get(size / 2);
+    }
+}
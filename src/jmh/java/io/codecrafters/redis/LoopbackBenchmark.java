@@ -0,0 +1,152 @@
+package io.codecrafters.redis;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// End to end over loopback: a server in its own process, and one connection per benchmark thread
+// sending `pipeline` commands at a time and reading every reply. The score counts round trips, and
+// the commands counter next to it the commands per second the server executed. The server runs
+// as many event loops as there are benchmark threads, either sharing every key (io-threads) or
+// each owning a range of hash slots (shards).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LoopbackBenchmark {
+    static final int PORT = 17100;
+    static final int KEYS = 10_000;
+
+    @Param({"1", "16", "128"})
+    int pipeline;
+
+    @Param({"io-threads", "shards"})
+    String mode;
+
+    Process server;
+    byte[][] setBatches;
+    byte[][] getBatches;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Connection {
+        public long commands;
+        Socket socket;
+        InputStream in;
+        OutputStream out;
+        int next;
+
+        @Setup(Level.Trial)
+        public void connect() throws IOException, InterruptedException {
+            ServerProcess.Connection connection = ServerProcess.Connection.open(PORT);
+            socket = connection.socket;
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            out = socket.getOutputStream();
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commands = 0;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        // Reads one reply of the shapes SET and GET produce: a status line or a bulk string
+        void readReply() throws IOException {
+            int type = in.read();
+            long length = 0;
+            boolean negative = false;
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) {
+                    throw new IOException("Connection closed");
+                } else if (b == '-') {
+                    negative = true;
+                } else if (type == '$') {
+                    length = length * 10 + (b - '0');
+                }
+            }
+            in.read();
+            if (type == '$' && !negative) {
+                in.skipNBytes(length + 2);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        File dir = Files.createTempDirectory("loopback").toFile();
+        server = ServerProcess.start(dir, "--port", String.valueOf(PORT), "--" + mode, "4");
+        String value = "v".repeat(64);
+        // Each batch covers the `pipeline` keys from a different start, one batch per key
+        setBatches = new byte[KEYS][];
+        getBatches = new byte[KEYS][];
+        for (int i = 0; i < KEYS; i++) {
+            StringBuilder sets = new StringBuilder();
+            StringBuilder gets = new StringBuilder();
+            for (int j = 0; j < pipeline; j++) {
+                String key = "key:" + (i + j) % KEYS;
+                sets.append(new String(Main.encode(RespCommand.of("SET", key, value)), StandardCharsets.ISO_8859_1));
+                gets.append(new String(Main.encode(RespCommand.of("GET", key)), StandardCharsets.ISO_8859_1));
+            }
+            setBatches[i] = sets.toString().getBytes(StandardCharsets.ISO_8859_1);
+            getBatches[i] = gets.toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+        ServerProcess.Connection loader = ServerProcess.Connection.open(PORT);
+        ServerProcess.fill(loader, "key:", KEYS);
+        loader.socket.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.destroyForcibly();
+    }
+
+    @Benchmark
+    public void set(Connection connection) throws IOException {
+        roundTrip(connection, setBatches);
+    }
+
+    @Benchmark
+    public void get(Connection connection) throws IOException {
+        roundTrip(connection, getBatches);
+    }
+
+    private void roundTrip(Connection connection, byte[][] batches) throws IOException {
+        connection.out.write(batches[connection.next]);
+        connection.next = (connection.next + 1) % KEYS;
+        for (int i = 0; i < pipeline; i++) {
+            connection.readReply();
+        }
+        connection.commands += pipeline;
+    }
+}
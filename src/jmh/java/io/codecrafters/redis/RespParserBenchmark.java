@@ -0,0 +1,105 @@
+package io.codecrafters.redis;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parses a pipeline of 100 SET commands: RespParser over a ByteBuffer versus the
+// BufferedReader.readLine() loop processClient used before the parser existed.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RespParserBenchmark {
+    static final int COMMANDS = 100;
+
+    @Param({"16", "1024"})
+    int valueSize;
+
+    byte[] pipeline;
+    RespParser parser;
+
+    @Setup
+    public void setup() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < valueSize; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        StringBuilder commands = new StringBuilder();
+        for (int i = 0; i < COMMANDS; i++) {
+            String key = "key:" + i;
+            commands.append("*3\r\n$3\r\nSET\r\n$").append(key.length()).append("\r\n").append(key)
+                    .append("\r\n$").append(value.length()).append("\r\n").append(value).append("\r\n");
+        }
+        pipeline = commands.toString().getBytes(StandardCharsets.US_ASCII);
+        parser = new RespParser();
+    }
+
+    @Benchmark
+    public long respParser() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(pipeline);
+        long total = 0;
+        RespCommand command;
+        while ((command = parser.parse(buffer)) != null) {
+            total += command.argc + command.length(2);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long respParserSplitReads() throws IOException {
+        // Feeds the same bytes in 1460-byte segments, as they would arrive off the socket
+        ByteBuffer buffer = ByteBuffer.allocate(pipeline.length);
+        long total = 0;
+        int fed = 0;
+        while (fed < pipeline.length) {
+            int chunk = Math.min(1460, pipeline.length - fed);
+            buffer.put(pipeline, fed, chunk);
+            fed += chunk;
+            buffer.flip();
+            RespCommand command;
+            while ((command = parser.parse(buffer)) != null) {
+                total += command.argc + command.length(2);
+            }
+            buffer.compact();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long readLine() throws IOException {
+        BufferedReader clientInput = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(pipeline)));
+        long total = 0;
+        String content;
+        while ((content = clientInput.readLine()) != null) {
+            if (content.charAt(0) == '*') {
+                int commandParams = Integer.parseInt(content.substring(1));
+                String[] params = new String[commandParams];
+                for (int i = 0; i < commandParams; i++) {
+                    clientInput.readLine();
+                    params[i] = clientInput.readLine();
+                }
+                total += params.length + params[2].length();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,54 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A stream used as an event log of `size` entries: XADD with MAXLEN ~ keeping it at that size, and a
+// short XRANGE from the middle, which should stay flat as the stream grows
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    Stream stream;
+    long nextMs;
+    String[] fields = {"event", "click", "user", "12345"};
+
+    @Setup(Level.Trial)
+    public void setup() {
+        stream = new Stream();
+        for (nextMs = 1; nextMs <= size; nextMs++) {
+            stream.add(nextMs, 0, fields);
+        }
+    }
+
+    @Benchmark
+    public long addTrimmed() {
+        stream.add(nextMs++, 0, fields);
+        return stream.trimToLength(size, true, Stream.TRIM_LIMIT);
+    }
+
+    @Benchmark
+    public ArrayList<Stream.Entry> rangeMiddle() {
+        long middle = stream.lastMs - size / 2;
+        return stream.range(middle, 0, StreamCommands.MAX, StreamCommands.MAX, 10, false);
+    }
+}
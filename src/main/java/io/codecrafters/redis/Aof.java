@@ -0,0 +1,483 @@
+package io.codecrafters.redis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+// Append-only file. Event loops append the effect of each write command to an in-memory buffer while
+// holding the stripes of its keys; a single writer thread drains whatever has accumulated with one
+// write, and one force under appendfsync always, so concurrent clients share each fsync (group
+// commit).
+public class Aof {
+    static final int FSYNC_ALWAYS = 0;
+    static final int FSYNC_EVERYSEC = 1;
+    static final int FSYNC_NO = 2;
+    // Lists are rewritten as RPUSH commands of at most this many elements
+    static final int REWRITE_ITEMS_PER_COMMAND = 64;
+
+    static volatile Aof instance;
+
+    static volatile boolean lastWriteOk = true;
+    static volatile boolean lastRewriteOk = true;
+    static volatile long rewriteStartedAt = -1;
+    static volatile long lastRewriteSeconds = -1;
+    static volatile boolean rewriteScheduled = false;
+
+    final File file;
+    final int fsyncPolicy;
+    private FileChannel channel;
+    private FileChannel nextChannel;
+
+    // Guarded by this: bytes waiting for the writer, and a copy of them while a rewrite runs
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer rewriteBuffer;
+    private long appendedOffset = 0;
+    private long durableOffset = 0;
+
+    private volatile long lastFsync = System.currentTimeMillis();
+    private volatile long syncedSize;
+    volatile long currentSize;
+    volatile long baseSize;
+
+    Aof(File file, int fsyncPolicy) throws IOException {
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(this.channel.size());
+        this.currentSize = this.channel.size();
+        this.baseSize = this.currentSize;
+        this.syncedSize = this.currentSize;
+    }
+
+    static File configuredFile() {
+        return Config.dataFile("appendfilename");
+    }
+
+    static int parsePolicy(String name) {
+        switch (name.toLowerCase()) {
+            case "always":
+                return FSYNC_ALWAYS;
+            case "no":
+                return FSYNC_NO;
+            default:
+                return FSYNC_EVERYSEC;
+        }
+    }
+
+    // Opens the log and starts the writer. A log created from scratch is seeded from the dataset
+    // loaded out of the RDB file, so a restart sees the same data.
+    static void start() throws IOException {
+        File file = configuredFile();
+        boolean created = !file.exists();
+        Aof aof = new Aof(file, parsePolicy(Config.get("appendfsync")));
+        instance = aof;
+        Thread writer = new Thread(aof::run, "aof-writer");
+        writer.setDaemon(true);
+        writer.start();
+        if (created && Main.keyspace.size() > 0) {
+            startRewrite();
+        }
+    }
+
+    // Records the effect of a write command; called by dispatch with the command's stripes held.
+    // client is null for deletions by the active expire cycle.
+    static void feed(Client client, byte[] frame) {
+        Aof aof = instance;
+        if (aof != null) {
+            long offset = aof.append(frame);
+            if (client != null) {
+                client.aofOffset = offset;
+            }
+        }
+    }
+
+    private synchronized long append(byte[] frame) {
+        pending = ensure(pending, frame.length);
+        pending.put(frame);
+        if (rewriteBuffer != null) {
+            rewriteBuffer = ensure(rewriteBuffer, frame.length);
+            rewriteBuffer.put(frame);
+        }
+        appendedOffset += frame.length;
+        notifyAll();
+        return appendedOffset;
+    }
+
+    // Under appendfsync always, replies must not leave before their commands are on disk. Waiting
+    // here once per flushed batch is what lets a pipeline or many clients share one fsync.
+    static void awaitDurable(long offset) {
+        Aof aof = instance;
+        if (aof == null || aof.fsyncPolicy != FSYNC_ALWAYS) {
+            return;
+        }
+        synchronized (aof) {
+            boolean interrupted = false;
+            while (aof.durableOffset < offset) {
+                try {
+                    aof.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        ByteBuffer batch = null;
+        long target = 0;
+        while (true) {
+            FileChannel out;
+            synchronized (this) {
+                if (batch == null || !batch.hasRemaining()) {
+                    while (pending.position() == 0 && nextChannel == null && !fsyncDue()) {
+                        try {
+                            wait(1000);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (nextChannel != null) {
+                        closeQuietly(channel);
+                        channel = nextChannel;
+                        nextChannel = null;
+                    }
+                    if (batch != null) {
+                        batch.clear();
+                        spare = batch;
+                    }
+                    batch = pending;
+                    batch.flip();
+                    pending = spare;
+                    target = appendedOffset;
+                }
+                out = channel;
+            }
+            try {
+                while (batch.hasRemaining()) {
+                    currentSize += out.write(batch);
+                }
+                long now = System.currentTimeMillis();
+                if (fsyncPolicy == FSYNC_ALWAYS || (fsyncPolicy == FSYNC_EVERYSEC && now - lastFsync >= 1000)) {
+                    out.force(false);
+                    lastFsync = now;
+                    syncedSize = currentSize;
+                }
+                lastWriteOk = true;
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (nextChannel != null) {
+                        // The log was swapped by a rewrite that already holds this data
+                        batch.position(batch.limit());
+                        continue;
+                    }
+                }
+                lastWriteOk = false;
+                System.out.println("Error writing to the AOF file: " + e.getMessage());
+                if (fsyncPolicy == FSYNC_ALWAYS) {
+                    System.out.println("Can't recover from AOF write error when the AOF fsync policy is 'always'. Exiting...");
+                    System.exit(1);
+                }
+                // Keep the unwritten part of the batch and try again in a second
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+            synchronized (this) {
+                durableOffset = Math.max(durableOffset, target);
+                notifyAll();
+            }
+        }
+    }
+
+    private boolean fsyncDue() {
+        return fsyncPolicy == FSYNC_EVERYSEC && System.currentTimeMillis() - lastFsync >= 1000 && currentSize > syncedSize;
+    }
+
+    // Replays the log through the regular dispatch path. A command cut off by a crash at the end of
+    // the file is dropped and the file truncated, like Redis does with aof-load-truncated yes.
+    static boolean load(File file) {
+        long start = System.nanoTime();
+        long commandsLoaded = 0;
+        long validOffset = 0;
+        Client client = new Client(null, null);
+        // Replies are suppressed, as on a link from a master
+        client.master = true;
+        RespParser parser = new RespParser();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    buffer = ensure(buffer, Math.max(buffer.capacity(), parser.pendingBulkBytes()));
+                }
+                int read = in.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                buffer.flip();
+                while (true) {
+                    RespCommand command = parser.parse(buffer);
+                    if (command == null) {
+                        break;
+                    }
+                    validOffset += command.frameLength;
+                    if (command.argc > 0) {
+                        Main.processCommand(client, command);
+                        commandsLoaded++;
+                    }
+                }
+                buffer.compact();
+            }
+            if (validOffset < in.size()) {
+                System.out.println("!!! Warning: short read while loading the AOF file " + file
+                        + "!!! Truncating it to " + validOffset + " bytes");
+                in.truncate(validOffset);
+            }
+        } catch (RespParser.ProtocolException e) {
+            System.out.println("Bad file format reading the append only file " + file + ": " + e.getMessage());
+            return false;
+        } catch (IOException e) {
+            System.out.println("Error reading the AOF file " + file + ": " + e.getMessage());
+            return false;
+        }
+        Persistence.dirty.set(0);
+        System.out.println("DB loaded from append only file: " + commandsLoaded + " commands in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return true;
+    }
+
+    // Starts a rewrite thread, or schedules one for when the running save finishes
+    static boolean startRewrite() {
+        if (!Persistence.startAofRewrite()) {
+            rewriteScheduled = true;
+            return false;
+        }
+        rewriteScheduled = false;
+        rewriteStartedAt = System.currentTimeMillis();
+        Thread rewriter = new Thread(() -> {
+            try {
+                lastRewriteOk = instance.rewrite();
+            } finally {
+                lastRewriteSeconds = (System.currentTimeMillis() - rewriteStartedAt) / 1000;
+                rewriteStartedAt = -1;
+                Persistence.aofRewriteInProgress = false;
+            }
+        }, "aof-rewrite");
+        rewriter.setDaemon(true);
+        rewriter.start();
+        return true;
+    }
+
+    // Writes the smallest command sequence that rebuilds the dataset, appends the commands that ran
+    // meanwhile and swaps the new file in
+    private boolean rewrite() {
+        long start = System.nanoTime();
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = new File(directory, "temp-rewriteaof-" + ProcessHandle.current().pid() + ".aof");
+        FileChannel out = null;
+        try {
+            out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            FileChannel target = out;
+            long now = System.currentTimeMillis();
+            ByteBuffer[] output = {ByteBuffer.allocate(256 * 1024)};
+            Main.keyspace.snapshot(new Keyspace.SnapshotSink() {
+                @Override
+                public void begin() {
+                    synchronized (Aof.this) {
+                        rewriteBuffer = ByteBuffer.allocate(64 * 1024);
+                    }
+                }
+
+                @Override
+                public void entry(String key, Object value, long expireAt) {
+                    for (RespCommand command : rebuild(key, value, expireAt, now)) {
+                        byte[] frame = Main.encode(command);
+                        output[0] = ensure(output[0], frame.length);
+                        output[0].put(frame);
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    if (output[0].position() >= 128 * 1024) {
+                        writeAll(target, output[0]);
+                    }
+                }
+            });
+            writeAll(out, output[0]);
+
+            // Catch up with commands that ran during the walk without stopping the world
+            for (int i = 0; i < 3; i++) {
+                writeAll(out, takeRewriteBuffer());
+            }
+            long size;
+            Main.keyspace.lockAll();
+            try {
+                synchronized (this) {
+                    writeAll(out, rewriteBuffer);
+                    rewriteBuffer = null;
+                    out.force(false);
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    // Everything still waiting for the old file is already in the new one
+                    pending.clear();
+                    nextChannel = out;
+                    size = out.size();
+                    currentSize = size;
+                    baseSize = size;
+                    syncedSize = size;
+                    durableOffset = appendedOffset;
+                    notifyAll();
+                }
+            } finally {
+                Main.keyspace.unlockAll();
+            }
+            System.out.println("Background AOF rewrite finished successfully: " + size + " bytes in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException e) {
+            System.out.println("Background AOF rewrite failed: " + e.getMessage());
+            synchronized (this) {
+                rewriteBuffer = null;
+            }
+            closeQuietly(out);
+            temp.delete();
+            return false;
+        }
+    }
+
+    private synchronized ByteBuffer takeRewriteBuffer() {
+        ByteBuffer taken = rewriteBuffer;
+        rewriteBuffer = ByteBuffer.allocate(taken.capacity());
+        return taken;
+    }
+
+    static ArrayList<RespCommand> rebuild(String key, Object value, long expireAt, long now) {
+        ArrayList<RespCommand> commands = new ArrayList<>();
+        if (expireAt != Keyspace.NO_EXPIRE && expireAt <= now) {
+            return commands;
+        }
+        if (StringValue.isString(value)) {
+            String string = StringValue.string(value);
+            commands.add(expireAt == Keyspace.NO_EXPIRE
+                    ? RespCommand.of("SET", key, string)
+                    : RespCommand.of("SET", key, string, "PXAT", String.valueOf(expireAt)));
+            return commands;
+        }
+        if (value instanceof QuickList list) {
+            Iterator<String> elements = list.iterator();
+            for (long from = 0; from < list.size(); from += REWRITE_ITEMS_PER_COMMAND) {
+                int count = (int) Math.min(list.size() - from, REWRITE_ITEMS_PER_COMMAND);
+                String[] args = new String[2 + count];
+                args[0] = "RPUSH";
+                args[1] = key;
+                for (int i = 0; i < count; i++) {
+                    args[2 + i] = elements.next();
+                }
+                commands.add(RespCommand.of(args));
+            }
+        } else {
+            Stream stream = (Stream) value;
+            Stream.Entry last = null;
+            for (int node = 0; node < stream.nodeCount(); node++) {
+                for (Stream.Entry entry : stream.nodeEntries(node)) {
+                    String[] args = new String[3 + entry.fields.length];
+                    args[0] = "XADD";
+                    args[1] = key;
+                    args[2] = Stream.formatId(entry.ms, entry.seq);
+                    System.arraycopy(entry.fields, 0, args, 3, entry.fields.length);
+                    commands.add(RespCommand.of(args));
+                    last = entry;
+                }
+            }
+            // Trimmed streams remember a last ID beyond their entries. An empty one is created by adding
+            // its last ID and trimming it away in the same command, as Redis rewrites it.
+            String lastId = Stream.formatId(stream.lastMs, stream.lastSeq);
+            if (last == null) {
+                commands.add(RespCommand.of("XADD", key, "MAXLEN", "0", lastId, "x", "y"));
+            } else if (last.ms != stream.lastMs || last.seq != stream.lastSeq) {
+                commands.add(RespCommand.of("XSETID", key, lastId));
+            }
+        }
+        if (expireAt != Keyspace.NO_EXPIRE) {
+            commands.add(RespCommand.of("PEXPIREAT", key, String.valueOf(expireAt)));
+        }
+        return commands;
+    }
+
+    // Auto rewrite once the log has grown by auto-aof-rewrite-percentage since the last rewrite
+    static void cron() {
+        Aof aof = instance;
+        if (aof == null || Persistence.aofRewriteInProgress) {
+            return;
+        }
+        if (rewriteScheduled && !Persistence.saving) {
+            startRewrite();
+            return;
+        }
+        int percentage = Config.getInt("auto-aof-rewrite-percentage");
+        long minSize = Long.parseLong(Config.get("auto-aof-rewrite-min-size"));
+        long base = Math.max(aof.baseSize, 1);
+        if (percentage > 0 && aof.currentSize >= minSize && (aof.currentSize - base) * 100 / base >= percentage) {
+            System.out.println("Starting automatic rewriting of AOF on " + (aof.currentSize - base) * 100 / base + "% growth");
+            startRewrite();
+        }
+    }
+
+    static String info() {
+        Aof aof = instance;
+        StringBuilder info = new StringBuilder()
+                .append("aof_enabled:").append(aof != null ? 1 : 0).append("\r\n")
+                .append("aof_rewrite_in_progress:").append(Persistence.aofRewriteInProgress ? 1 : 0).append("\r\n")
+                .append("aof_rewrite_scheduled:").append(rewriteScheduled ? 1 : 0).append("\r\n")
+                .append("aof_last_rewrite_time_sec:").append(lastRewriteSeconds).append("\r\n")
+                .append("aof_last_bgrewrite_status:").append(lastRewriteOk ? "ok" : "err").append("\r\n")
+                .append("aof_last_write_status:").append(lastWriteOk ? "ok" : "err").append("\r\n");
+        if (aof != null) {
+            info.append("aof_current_size:").append(aof.currentSize).append("\r\n")
+                    .append("aof_base_size:").append(aof.baseSize).append("\r\n");
+        }
+        return info.toString();
+    }
+
+    private static void writeAll(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int length) {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing AOF file: " + e.getMessage());
+        }
+    }
+}
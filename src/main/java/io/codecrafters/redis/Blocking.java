@@ -0,0 +1,338 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Clients blocked on keys by BLPOP, BRPOP, BLMOVE and XREAD BLOCK. Every key has a FIFO of waiters,
+// guarded by the key's stripe. A push or XADD marks the key ready; once that command has been
+// propagated, dispatch serves the waiters right there on the writer's thread: list waiters oldest
+// first, each taking one element atomically with the push, and every stream reader that is behind.
+// The reply is read under the stripe and written on the waiter's event loop.
+public class Blocking {
+    // One registration of a blocked client on one of its keys. Whoever moves the client's blockState
+    // from blockId to 0 first, a serving push, the timeout or a disconnect, owns the outcome; the
+    // registrations left on other keys go stale and are skipped.
+    static final class Waiter {
+        final Client client;
+        final long blockId;
+        final boolean popLeft;
+        // BLMOVE only
+        final String destination;
+        final boolean pushLeft;
+        // XREAD only: the reader wants entries after this ID, at most count of them (0 for all)
+        final boolean stream;
+        final long afterMs;
+        final long afterSeq;
+        final long count;
+
+        Waiter(Client client, long blockId, boolean popLeft, String destination, boolean pushLeft) {
+            this.client = client;
+            this.blockId = blockId;
+            this.popLeft = popLeft;
+            this.destination = destination;
+            this.pushLeft = pushLeft;
+            this.stream = false;
+            this.afterMs = 0;
+            this.afterSeq = 0;
+            this.count = 0;
+        }
+
+        Waiter(Client client, long blockId, long afterMs, long afterSeq, long count) {
+            this.client = client;
+            this.blockId = blockId;
+            this.popLeft = false;
+            this.destination = null;
+            this.pushLeft = false;
+            this.stream = true;
+            this.afterMs = afterMs;
+            this.afterSeq = afterSeq;
+            this.count = count;
+        }
+    }
+
+    static final ConcurrentHashMap<String, ArrayDeque<Waiter>> waiters = new ConcurrentHashMap<>();
+    private static final AtomicLong nextBlockId = new AtomicLong();
+
+    // Parses a timeout in seconds into an absolute deadline, 0 for none; writes the error and returns
+    // -1 if it is invalid
+    static long parseTimeout(Client client, RespCommand command, int index) {
+        double seconds;
+        try {
+            seconds = Double.parseDouble(command.string(index));
+        } catch (NumberFormatException e) {
+            seconds = Double.NaN;
+        }
+        if (Double.isNaN(seconds) || Double.isInfinite(seconds)) {
+            client.writeError("ERR timeout is not a float or out of range");
+            return -1;
+        }
+        if (seconds < 0) {
+            client.writeError("ERR timeout is negative");
+            return -1;
+        }
+        long millis = (long) (seconds * 1000);
+        return millis == 0 ? 0 : System.currentTimeMillis() + millis;
+    }
+
+    // Parks the client until one of keys gets an element or timeoutAt passes. Called by the command
+    // handler on the client's loop, with the stripes of keys held.
+    static void block(Client client, RespCommand args, String[] keys, long timeoutAt,
+                      boolean popLeft, String destination, boolean pushLeft) {
+        long blockId = begin(client, args, keys, timeoutAt);
+        Waiter waiter = new Waiter(client, blockId, popLeft, destination, pushLeft);
+        for (String key : keys) {
+            waiters.computeIfAbsent(key, k -> new ArrayDeque<>()).add(waiter);
+        }
+    }
+
+    // Parks an XREAD until a stream among keys gets an entry after the matching ID
+    static void blockForStreams(Client client, RespCommand args, String[] keys, long[] afterMs, long[] afterSeq,
+                                long count, long timeoutAt) {
+        long blockId = begin(client, args, keys, timeoutAt);
+        for (int i = 0; i < keys.length; i++) {
+            waiters.computeIfAbsent(keys[i], k -> new ArrayDeque<>())
+                    .add(new Waiter(client, blockId, afterMs[i], afterSeq[i], count));
+        }
+    }
+
+    private static long begin(Client client, RespCommand args, String[] keys, long timeoutAt) {
+        long blockId = nextBlockId.incrementAndGet();
+        client.blockedOn = Main.commands.lookup(args);
+        client.blockedArgs = args.copy();
+        client.blockedSince = System.currentTimeMillis();
+        client.blockedKeys = keys;
+        client.blockState.set(blockId);
+        if (timeoutAt > 0) {
+            client.loop.addTimeout(client, blockId, timeoutAt);
+        }
+        return blockId;
+    }
+
+    // Serves the waiters of every key the client's last command pushed to. Called by dispatch after
+    // propagation, still holding the command's stripes.
+    static void serveReadyKeys(Client client) {
+        for (int i = 0; i < client.readyKeys.size(); i++) {
+            serveKey(client.readyKeys.get(i));
+        }
+        client.readyKeys.clear();
+    }
+
+    // With the key's stripe held: hands elements to the oldest live waiters while the list has any,
+    // or new entries to every reader of the stream that is behind
+    static void serveKey(String key) {
+        ArrayDeque<Waiter> queue = waiters.get(key);
+        if (queue == null) {
+            return;
+        }
+        Object value = Main.keyspace.get(key);
+        if (value instanceof Stream stream) {
+            serveStreamReaders(key, stream, queue);
+        } else if (value instanceof QuickList) {
+            serveListWaiters(key, queue);
+        }
+        if (queue.isEmpty()) {
+            waiters.remove(key, queue);
+        }
+    }
+
+    private static void serveListWaiters(String key, ArrayDeque<Waiter> queue) {
+        // Readers of a stream that was replaced by a list keep waiting for a stream
+        ArrayList<Waiter> readers = null;
+        while (!queue.isEmpty()) {
+            Object value = Main.keyspace.get(key);
+            if (!(value instanceof QuickList list) || list.isEmpty()) {
+                break;
+            }
+            Waiter waiter = queue.pollFirst();
+            if (waiter.client.blockState.get() != waiter.blockId) {
+                continue;
+            }
+            if (waiter.stream) {
+                if (readers == null) {
+                    readers = new ArrayList<>();
+                }
+                readers.add(waiter);
+                continue;
+            }
+            if (waiter.destination == null) {
+                if (waiter.client.blockState.compareAndSet(waiter.blockId, 0)) {
+                    servePop(key, waiter);
+                }
+                continue;
+            }
+            // BLMOVE also needs the destination's stripe. Taking it in arbitrary order could deadlock,
+            // so if it is busy the waiter's own loop retries the whole command instead.
+            if (!Main.keyspace.tryLock(waiter.destination)) {
+                queue.addFirst(waiter);
+                waiter.client.loop.execute(() -> retry(waiter.client, waiter.blockId));
+                break;
+            }
+            try {
+                if (waiter.client.blockState.compareAndSet(waiter.blockId, 0)) {
+                    serveMove(key, waiter);
+                }
+            } finally {
+                Main.keyspace.unlock(waiter.destination);
+            }
+        }
+        if (readers != null) {
+            queue.addAll(readers);
+        }
+    }
+
+    private static void serveStreamReaders(String key, Stream stream, ArrayDeque<Waiter> queue) {
+        Iterator<Waiter> it = queue.iterator();
+        while (it.hasNext()) {
+            Waiter waiter = it.next();
+            if (waiter.client.blockState.get() != waiter.blockId) {
+                it.remove();
+                continue;
+            }
+            if (!waiter.stream || Stream.compare(stream.lastMs, stream.lastSeq, waiter.afterMs, waiter.afterSeq) <= 0) {
+                continue;
+            }
+            ArrayList<Stream.Entry> entries = StreamCommands.entriesAfter(stream, waiter.afterMs, waiter.afterSeq, waiter.count);
+            if (entries.isEmpty() || !waiter.client.blockState.compareAndSet(waiter.blockId, 0)) {
+                continue;
+            }
+            it.remove();
+            Client client = waiter.client;
+            client.loop.execute(() -> resume(client, () -> {
+                client.writeArrayHeader(1);
+                client.writeArrayHeader(2);
+                client.writeBulk(key);
+                StreamCommands.writeEntries(client, entries);
+            }));
+        }
+    }
+
+    private static void servePop(String key, Waiter waiter) {
+        String element = ListCommands.popElement(key, waiter.popLeft);
+        Main.signalModifiedKey(null, key);
+        Main.propagateEffect(RespCommand.of(waiter.popLeft ? "LPOP" : "RPOP", key));
+        Client client = waiter.client;
+        client.loop.execute(() -> {
+            if (client.closed) {
+                giveBack(key, element, waiter.popLeft);
+            } else {
+                resume(client, () -> {
+                    client.writeArrayHeader(2);
+                    client.writeBulk(key);
+                    client.writeBulk(element);
+                });
+            }
+        });
+    }
+
+    private static void serveMove(String source, Waiter waiter) {
+        Client client = waiter.client;
+        Object destination = Main.keyspace.get(waiter.destination);
+        if (destination != null && !(destination instanceof QuickList)) {
+            client.loop.execute(() -> resume(client, () -> client.writeError(new Keyspace.WrongTypeException().getMessage())));
+            return;
+        }
+        String element = ListCommands.moveElement(source, waiter.destination, waiter.popLeft, waiter.pushLeft);
+        Main.signalModifiedKey(null, source);
+        Main.signalModifiedKey(null, waiter.destination);
+        Main.propagateEffect(RespCommand.of("LMOVE", source, waiter.destination,
+                waiter.popLeft ? "LEFT" : "RIGHT", waiter.pushLeft ? "LEFT" : "RIGHT"));
+        client.loop.execute(() -> resume(client, () -> client.writeBulk(element)));
+        serveKey(waiter.destination);
+    }
+
+    // On the waiter's loop: writes the reply, records the command and continues with any commands
+    // pipelined after it
+    private static void resume(Client client, Runnable reply) {
+        Command command = client.blockedOn;
+        RespCommand args = client.blockedArgs;
+        unblock(client);
+        long start = System.nanoTime();
+        long errorsBefore = client.errorReplies;
+        reply.run();
+        Main.recordBlockedCall(client, command, args, System.nanoTime() - start, client.errorReplies != errorsBefore);
+        client.processInput();
+    }
+
+    // Re-runs a BLMOVE whose destination was busy when its source got an element
+    private static void retry(Client client, long blockId) {
+        if (client.closed || client.blockState.get() != blockId) {
+            return;
+        }
+        Main.call(client, client.blockedOn, client.blockedArgs);
+        if (client.blockedOn == null) {
+            client.processInput();
+        }
+    }
+
+    // An element popped for a client that disconnected before the reply left goes back where it was
+    private static void giveBack(String key, String element, boolean left) {
+        int[] stripes = {Keyspace.stripe(key)};
+        Main.keyspace.lock(stripes);
+        try {
+            QuickList list = Main.keyspace.getListForWrite(key, true);
+            if (left) {
+                list.pushHead(element);
+            } else {
+                list.pushTail(element);
+            }
+            Main.signalModifiedKey(null, key);
+            Main.propagateEffect(RespCommand.of(left ? "LPUSH" : "RPUSH", key, element));
+            serveKey(key);
+        } catch (Keyspace.WrongTypeException e) {
+            System.out.println("Dropped element for disconnected client: " + key + " is no longer a list");
+        } finally {
+            Main.keyspace.unlock(stripes);
+        }
+    }
+
+    // On the client's loop, once its blockState is 0: drops its registrations and clears the state
+    static void unblock(Client client) {
+        if (client.blockedKeys != null) {
+            for (String key : client.blockedKeys) {
+                int[] stripes = {Keyspace.stripe(key)};
+                Main.keyspace.lock(stripes);
+                try {
+                    ArrayDeque<Waiter> queue = waiters.get(key);
+                    if (queue != null) {
+                        queue.removeIf(waiter -> waiter.client == client);
+                        if (queue.isEmpty()) {
+                            waiters.remove(key, queue);
+                        }
+                    }
+                } finally {
+                    Main.keyspace.unlock(stripes);
+                }
+            }
+            client.blockedKeys = null;
+        }
+        Main.unblock(client);
+    }
+
+    // Timer expiry on the client's loop; a no-op if the client was served first
+    static void timeout(Client client, long blockId) {
+        if (client.closed || !client.blockState.compareAndSet(blockId, 0)) {
+            return;
+        }
+        Command command = client.blockedOn;
+        RespCommand args = client.blockedArgs;
+        unblock(client);
+        long start = System.nanoTime();
+        if (command.name.equals("blmove")) {
+            client.writeNull();
+        } else {
+            client.writeNullArray();
+        }
+        Main.recordBlockedCall(client, command, args, System.nanoTime() - start, false);
+        client.processInput();
+    }
+
+    // Called when a blocked client disconnects
+    static void disconnect(Client client) {
+        if (client.blockState.getAndSet(0) != 0) {
+            unblock(client);
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Client {
+    // Once this much output is pending, stop reading and executing until the peer drains it
+    static final int OUTPUT_HIGH_WATER = 1024 * 1024;
+    static final byte[] NULL_BULK = "$-1\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    static final byte[] NULL_ARRAY = "*-1\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    static final byte[] RESP3_NULL = "_\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    static final AtomicLong nextId = new AtomicLong(1);
+    // Every open connection by id, for CLIENT LIST and INFO clients
+    static final ConcurrentHashMap<Long, Client> clients = new ConcurrentHashMap<>();
+
+    final long id = nextId.getAndIncrement();
+    final long createdAt = System.currentTimeMillis();
+    // ip:port of both ends, empty for the clients benchmarks and the AOF loader make without a socket
+    final String address;
+    final String localAddress;
+    // Set by CLIENT SETNAME
+    String name = "";
+    // For CLIENT LIST; written by the client's loop and read from any, so they may be a moment stale
+    long lastInteraction = createdAt;
+    String lastCommand = "NULL";
+    // Error replies sent, so dispatch can count a command that replied with one as failed
+    long errorReplies = 0;
+    // Channels and patterns subscribed to; while there are any, only pub/sub commands are accepted
+    final HashSet<String> channels = new HashSet<>();
+    final HashSet<String> patterns = new HashSet<>();
+    // When the pending output of a subscriber first went over the soft limit, or 0
+    long softLimitSince = 0;
+    // Set while the loop has this client queued for a flush at the end of its turn
+    boolean flushScheduled = false;
+    // RESP version chosen with HELLO; 3 gets RESP3 nulls, maps and out-of-band pushes
+    int protocol = 2;
+    // CLIENT TRACKING state, see Tracking. cachingOverride is CLIENT CACHING yes (1) or no (-1)
+    // for the next command only.
+    volatile boolean tracking = false;
+    boolean trackingBcast = false;
+    boolean trackingOptIn = false;
+    boolean trackingOptOut = false;
+    boolean trackingNoLoop = false;
+    long trackingRedirect = 0;
+    final HashSet<String> trackingPrefixes = new HashSet<>();
+    int cachingOverride = 0;
+
+    final EventLoop loop;
+    final SocketChannel channel;
+    SelectionKey selectionKey;
+    // Both buffers are kept in write mode: position marks the end of pending data
+    ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+    ByteBuffer writeBuffer = ByteBuffer.allocate(16 * 1024);
+    boolean closed = false;
+    // Connection from our master when running as a replica: replies are not sent back
+    boolean master = false;
+    // Set once this connection is a replica of ours, after PSYNC
+    Replication.Replica replica;
+    // From REPLCONF listening-port, for INFO, and REPLCONF capa eof: takes a diskless full sync
+    int listeningPort;
+    boolean capaEof = false;
+    // Master offset after this client's last propagated write, which WAIT waits for replicas to reach
+    long writeOffset = 0;
+    final RespParser parser = new RespParser();
+
+    ArrayList<RespCommand> bufferedCommands = new ArrayList<>();
+    boolean encounteredMulti = false;
+    boolean executingMulti = false;
+    // Set when a command was rejected while queuing; EXEC then discards the whole transaction
+    boolean multiError = false;
+    // WATCHed keys and their versions at the time; EXEC fails if any of them changed
+    final HashMap<String, Long> watchedKeys = new HashMap<>();
+    // Effects of the writes of the running transaction, propagated together when it is done
+    final ArrayList<byte[]> multiEffects = new ArrayList<>();
+    // Bumped by handlers that modify the dataset; dispatch uses it to decide on propagation
+    long changes = 0;
+    // Set by handlers whose effect replicates as a different command, e.g. BLPOP as LPOP
+    RespCommand propagateAs;
+    // AOF offset of this client's last write; replies wait for it under appendfsync always
+    long aofOffset = 0;
+
+    // Commands parsed for another shard and not sent yet, see Sharding
+    Sharding.Batch forwardBatch;
+    // Set while the client's commands run on the shard that owns their keys. Until they are back
+    // no input is processed and the output belongs to that shard: deliveries are held and a close
+    // waits.
+    boolean forwarded = false;
+    final ArrayList<byte[]> heldDeliveries = new ArrayList<>();
+    boolean closeWhenBack = false;
+
+    // Set while the client waits on BLPOP/WAIT; no further input is processed until it clears
+    Command blockedOn;
+    RespCommand blockedArgs;
+    long blockedSince;
+    // Time the blocked command has run so far, recorded in its stats together with the run that replies
+    long blockedNanos;
+    // List keys a BLPOP/BRPOP/BLMOVE waits on, and the id of that block while it is still pending.
+    // Other threads serving the client race its timeout and disconnect to CAS the id to 0.
+    String[] blockedKeys;
+    final AtomicLong blockState = new AtomicLong();
+    // Keys this command pushed to that have blocked clients; served by dispatch once it propagated
+    final ArrayList<String> readyKeys = new ArrayList<>();
+    private final byte[] digits = new byte[20];
+
+    Client(EventLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+        this.address = channel == null ? "" : addressOf(channel, false);
+        this.localAddress = channel == null ? "" : addressOf(channel, true);
+    }
+
+    private static String addressOf(SocketChannel channel, boolean local) {
+        try {
+            InetSocketAddress address = (InetSocketAddress) (local ? channel.getLocalAddress() : channel.getRemoteAddress());
+            return address.getAddress().getHostAddress() + ":" + address.getPort();
+        } catch (IOException | RuntimeException e) {
+            return "?";
+        }
+    }
+
+    void onReadable() {
+        try {
+            if (!readBuffer.hasRemaining()) {
+                readBuffer = grow(readBuffer, Math.max(readBuffer.capacity(), parser.pendingBulkBytes()));
+            }
+            int read = channel.read(readBuffer);
+            if (read == -1) {
+                close();
+                return;
+            }
+            Stats.netInputBytes.add(read);
+            lastInteraction = System.currentTimeMillis();
+            processInput();
+        } catch (IOException e) {
+            System.out.println("Client processing error: " + e.getMessage());
+            close();
+        }
+    }
+
+    // Runs every complete command in the read buffer, then writes all their replies at once
+    void processInput() {
+        boolean more = true;
+        while (more) {
+            readBuffer.flip();
+            try {
+                while (blockedOn == null && !forwarded && !closed && writeBuffer.position() < OUTPUT_HIGH_WATER) {
+                    int start = readBuffer.position();
+                    RespCommand command = parser.parse(readBuffer);
+                    if (command == null) {
+                        break;
+                    }
+                    if (forwardBatch != null && !Sharding.joins(this, command)) {
+                        if (forwardBatch.commands.size() >= Sharding.MIN_HANDOVER) {
+                            // Parsed again once the batch before it is back
+                            readBuffer.position(start);
+                            break;
+                        }
+                        // A short run amid a pipeline costs more to hand over than to run here
+                        Sharding.run(this, forwardBatch);
+                        forwardBatch = null;
+                    }
+                    if (command.argc > 0) {
+                        try {
+                            Main.processCommand(this, command);
+                        } catch (RuntimeException e) {
+                            System.out.println("Command execution error: " + e);
+                            writeError("ERR " + e.getClass().getSimpleName());
+                        }
+                    }
+                    if (master) {
+                        Main.offset += readBuffer.position() - start;
+                    }
+                }
+                if (forwardBatch != null) {
+                    Sharding.dispatch(this);
+                }
+            } catch (RespParser.ProtocolException e) {
+                // The commands before the bad frame still run, here
+                if (forwardBatch != null) {
+                    Sharding.run(this, forwardBatch);
+                    forwardBatch = null;
+                }
+                writeError("ERR " + e.getMessage());
+                flush();
+                close();
+            }
+            boolean throttled = !forwarded && writeBuffer.position() >= OUTPUT_HIGH_WATER;
+            readBuffer.compact();
+            flush();
+            // A fast peer may already have drained the batch that made us stop
+            more = throttled && !closed && blockedOn == null && writeBuffer.position() < OUTPUT_HIGH_WATER;
+        }
+    }
+
+    void onWritable() {
+        if (forwarded) {
+            return;
+        }
+        boolean throttled = writeBuffer.position() >= OUTPUT_HIGH_WATER;
+        flush();
+        if (replica != null && !closed && writeBuffer.position() < OUTPUT_HIGH_WATER) {
+            Replication.send(replica);
+        }
+        if (throttled && !closed && writeBuffer.position() < OUTPUT_HIGH_WATER) {
+            processInput();
+        }
+    }
+
+    void write(String response) {
+        write(response.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    void write(byte[] response) {
+        if (!master) {
+            append(response);
+        }
+    }
+
+    void writeSimple(String status) {
+        write("+" + status + "\r\n");
+    }
+
+    // The message carries its own error code, e.g. "ERR syntax error"
+    void writeError(String message) {
+        errorReplies++;
+        Stats.errorReplies.increment();
+        write("-" + message + "\r\n");
+    }
+
+    void writeInteger(long value) {
+        writeNumber((byte) ':', value);
+    }
+
+    void writeArrayHeader(int length) {
+        writeNumber((byte) '*', length);
+    }
+
+    // A map of length pairs; RESP2 has no maps and gets the pairs as a flat array
+    void writeMapHeader(int length) {
+        writeNumber(protocol >= 3 ? (byte) '%' : (byte) '*', protocol >= 3 ? length : 2L * length);
+    }
+
+    // Out-of-band data such as pub/sub messages; an array in RESP2
+    void writePushHeader(int length) {
+        writeNumber(protocol >= 3 ? (byte) '>' : (byte) '*', length);
+    }
+
+    void writeBulk(String value) {
+        writeBulk(value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    void writeBulk(byte[] value) {
+        if (master) {
+            return;
+        }
+        writeNumber((byte) '$', value.length);
+        ensureWritable(value.length + 2);
+        writeBuffer.put(value).put((byte) '\r').put((byte) '\n');
+    }
+
+    void writeBulkOrNull(byte[] value) {
+        if (value == null) {
+            writeNull();
+        } else {
+            writeBulk(value);
+        }
+    }
+
+    // A string value from the keyspace, or a null bulk for null. Integers are printed straight into
+    // the buffer instead of being turned into bytes first.
+    void writeBulkValue(Object value) {
+        if (!(value instanceof Long number)) {
+            writeBulkOrNull((byte[]) value);
+            return;
+        }
+        if (master) {
+            return;
+        }
+        writeNumber((byte) '$', StringValue.length(number));
+        ensureWritable(22);
+        writeDigits(number);
+        writeBuffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    void writeNull() {
+        write(protocol >= 3 ? RESP3_NULL : NULL_BULK);
+    }
+
+    void writeNullArray() {
+        write(protocol >= 3 ? RESP3_NULL : NULL_ARRAY);
+    }
+
+    private void writeNumber(byte prefix, long value) {
+        if (master) {
+            return;
+        }
+        ensureWritable(24);
+        writeBuffer.put(prefix);
+        writeDigits(value);
+        writeBuffer.put((byte) '\r').put((byte) '\n');
+    }
+
+    private void writeDigits(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeBuffer.put(Long.toString(value).getBytes(StandardCharsets.ISO_8859_1));
+        } else {
+            if (value < 0) {
+                writeBuffer.put((byte) '-');
+                value = -value;
+            }
+            int i = digits.length;
+            do {
+                digits[--i] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            writeBuffer.put(digits, i, digits.length - i);
+        }
+    }
+
+    private void ensureWritable(int length) {
+        if (writeBuffer.remaining() < length) {
+            writeBuffer = grow(writeBuffer, length);
+        }
+    }
+
+    // Writes even on the master link, used for REPLCONF ACK
+    void append(byte[] bytes) {
+        ensureWritable(bytes.length);
+        writeBuffer.put(bytes);
+    }
+
+    void append(byte[] bytes, int from, int length) {
+        ensureWritable(length);
+        writeBuffer.put(bytes, from, length);
+    }
+
+    int pendingOutput() {
+        return writeBuffer.position();
+    }
+
+    // Hands over the output not yet written, for a full sync to send ahead of the snapshot
+    byte[] takeOutput() {
+        byte[] pending = Arrays.copyOf(writeBuffer.array(), writeBuffer.position());
+        writeBuffer.clear();
+        return pending;
+    }
+
+    String remoteHost() {
+        try {
+            return ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        } catch (IOException | RuntimeException e) {
+            return "?";
+        }
+    }
+
+    int subscriptions() {
+        return channels.size() + patterns.size();
+    }
+
+    // A published message or tracking invalidation, on the client's own loop. It is written out at
+    // the end of the loop's turn, together with whatever else was published to this client
+    // meanwhile. A subscriber that does not read fast enough is disconnected rather than let its
+    // output grow without bound.
+    void deliver(byte[] frame) {
+        if (closed) {
+            return;
+        }
+        if (forwarded) {
+            heldDeliveries.add(frame);
+            return;
+        }
+        if (subscriptions() > 0 && PubSub.overLimit(this, (long) writeBuffer.position() + frame.length)) {
+            System.out.println("Closing subscriber " + address + " over the pubsub output buffer limit");
+            close();
+            return;
+        }
+        append(frame);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            loop.flushAtEndOfTurn(this);
+        }
+    }
+
+    // Safe to call from any thread: the bytes are written on the client's own loop
+    void send(byte[] bytes) {
+        if (loop.inLoop()) {
+            append(bytes);
+            flush();
+        } else {
+            loop.execute(() -> {
+                append(bytes);
+                flush();
+            });
+        }
+    }
+
+    void flush() {
+        if (closed || forwarded || writeBuffer.position() == 0 || (replica != null && replica.syncing)) {
+            return;
+        }
+        Aof.awaitDurable(aofOffset);
+        writeBuffer.flip();
+        try {
+            Stats.netOutputBytes.add(channel.write(writeBuffer));
+        } catch (IOException e) {
+            System.out.println("Client write error: " + e.getMessage());
+            close();
+            return;
+        }
+        writeBuffer.compact();
+        if (selectionKey != null && selectionKey.isValid()) {
+            int pending = writeBuffer.position();
+            int ops = pending > 0 ? SelectionKey.OP_WRITE : 0;
+            if (pending < OUTPUT_HIGH_WATER) {
+                ops |= SelectionKey.OP_READ;
+            }
+            selectionKey.interestOps(ops);
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        if (forwarded) {
+            closeWhenBack = true;
+            return;
+        }
+        closed = true;
+        clients.remove(id);
+        PubSub.disconnect(this);
+        Tracking.disable(this);
+        if (replica != null) {
+            Replication.detach(this);
+        }
+        if (master && channel != null) {
+            Replication.connectToMaster();
+        }
+        Blocking.disconnect(this);
+        if (selectionKey != null) {
+            selectionKey.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing client socket: " + e.getMessage());
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int extra) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
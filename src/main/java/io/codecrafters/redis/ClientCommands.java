@@ -0,0 +1,251 @@
+package io.codecrafters.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class ClientCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("client", -2, Command.ADMIN, 0, 0, 0, ClientCommands::client));
+        table.register(new Command("hello", -1, Command.FAST | Command.NO_QUEUE, 0, 0, 0, ClientCommands::hello));
+    }
+
+    // HELLO [protover [AUTH username password] [SETNAME name]]: switches the connection's protocol
+    // and describes the server. There are no users or passwords, so AUTH accepts anything, like
+    // Redis' default user without requirepass.
+    static void hello(Client client, RespCommand command) {
+        int protocol = client.protocol;
+        if (command.argc > 1) {
+            long requested;
+            try {
+                requested = command.parseLong(1);
+            } catch (NumberFormatException e) {
+                client.writeError("ERR Protocol version is not an integer or out of range");
+                return;
+            }
+            if (requested != 2 && requested != 3) {
+                client.writeError("NOPROTO unsupported protocol version");
+                return;
+            }
+            protocol = (int) requested;
+        }
+        String name = null;
+        for (int i = 2; i < command.argc; i++) {
+            if (command.equalsIgnoreCase(i, "auth") && i + 2 < command.argc) {
+                i += 2;
+            } else if (command.equalsIgnoreCase(i, "setname") && i + 1 < command.argc) {
+                name = command.string(++i);
+                if (!validName(name)) {
+                    client.writeError("ERR Client names cannot contain spaces, newlines or special characters.");
+                    return;
+                }
+            } else {
+                client.writeError("ERR Syntax error in HELLO option '" + command.string(i) + "'");
+                return;
+            }
+        }
+        client.protocol = protocol;
+        if (name != null) {
+            client.name = name;
+        }
+        client.writeMapHeader(7);
+        client.writeBulk("server");
+        client.writeBulk("redis");
+        client.writeBulk("version");
+        client.writeBulk("7.2.0");
+        client.writeBulk("proto");
+        client.writeInteger(protocol);
+        client.writeBulk("id");
+        client.writeInteger(client.id);
+        client.writeBulk("mode");
+        client.writeBulk("standalone");
+        client.writeBulk("role");
+        client.writeBulk(Main.serverRole.equals("master") ? "master" : "replica");
+        client.writeBulk("modules");
+        client.writeArrayHeader(0);
+    }
+
+    private static boolean validName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) <= ' ' || name.charAt(i) > '~') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // CLIENT LIST | INFO | ID | SETNAME name | GETNAME | TRACKING on|off [...] | CACHING yes|no
+    static void client(Client client, RespCommand command) {
+        if (command.equalsIgnoreCase(1, "tracking") && command.argc >= 3) {
+            tracking(client, command);
+        } else if (command.equalsIgnoreCase(1, "caching") && command.argc == 3) {
+            caching(client, command);
+        } else if (command.equalsIgnoreCase(1, "list") && command.argc == 2) {
+            List<Client> all = new ArrayList<>(Client.clients.values());
+            all.sort(Comparator.comparingLong(c -> c.id));
+            StringBuilder list = new StringBuilder();
+            long now = System.currentTimeMillis();
+            for (Client c : all) {
+                describe(list, c, now);
+            }
+            client.writeBulk(list.toString());
+        } else if (command.equalsIgnoreCase(1, "info") && command.argc == 2) {
+            StringBuilder info = new StringBuilder();
+            describe(info, client, System.currentTimeMillis());
+            client.writeBulk(info.toString());
+        } else if (command.equalsIgnoreCase(1, "id") && command.argc == 2) {
+            client.writeInteger(client.id);
+        } else if (command.equalsIgnoreCase(1, "setname") && command.argc == 3) {
+            String name = command.string(2);
+            if (!validName(name)) {
+                client.writeError("ERR Client names cannot contain spaces, newlines or special characters.");
+                return;
+            }
+            client.name = name;
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(1, "getname") && command.argc == 2) {
+            client.writeBulkOrNull(client.name.isEmpty() ? null : client.name.getBytes(StandardCharsets.ISO_8859_1));
+        } else {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for '" + command.string(1) + "'. Try CLIENT HELP.");
+        }
+    }
+
+    // CLIENT TRACKING on|off [REDIRECT id] [PREFIX prefix ...] [BCAST] [OPTIN] [OPTOUT] [NOLOOP].
+    // Turning it on again changes the options; prefixes add to the ones the client has.
+    private static void tracking(Client client, RespCommand command) {
+        boolean on;
+        if (command.equalsIgnoreCase(2, "on")) {
+            on = true;
+        } else if (command.equalsIgnoreCase(2, "off")) {
+            on = false;
+        } else {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        long redirect = 0;
+        boolean bcast = false;
+        boolean optIn = false;
+        boolean optOut = false;
+        boolean noLoop = false;
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 3; i < command.argc; i++) {
+            if (command.equalsIgnoreCase(i, "redirect") && i + 1 < command.argc) {
+                try {
+                    redirect = command.parseLong(++i);
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return;
+                }
+            } else if (command.equalsIgnoreCase(i, "prefix") && i + 1 < command.argc) {
+                prefixes.add(command.string(++i));
+            } else if (command.equalsIgnoreCase(i, "bcast")) {
+                bcast = true;
+            } else if (command.equalsIgnoreCase(i, "optin")) {
+                optIn = true;
+            } else if (command.equalsIgnoreCase(i, "optout")) {
+                optOut = true;
+            } else if (command.equalsIgnoreCase(i, "noloop")) {
+                noLoop = true;
+            } else {
+                client.writeError("ERR syntax error");
+                return;
+            }
+        }
+        if (!on) {
+            Tracking.disable(client);
+            client.writeSimple("OK");
+            return;
+        }
+        String error = null;
+        if (!bcast && !prefixes.isEmpty()) {
+            error = "ERR PREFIX option requires BCAST mode to be enabled";
+        } else if (client.tracking && client.trackingBcast != bcast) {
+            error = "ERR You can't switch BCAST mode on/off before disabling tracking for this client, and then re-enabling it with a different mode.";
+        } else if (optIn && optOut) {
+            error = "ERR You can't use both OPTIN and OPTOUT";
+        } else if (bcast && (optIn || optOut)) {
+            error = "ERR OPTIN and OPTOUT are not compatible with BCAST";
+        } else if (redirect != 0 && redirect != client.id && !Client.clients.containsKey(redirect)) {
+            error = "ERR The client ID you want redirect to does not exist";
+        } else if (bcast) {
+            String overlap = Tracking.overlap(client, prefixes);
+            if (overlap != null) {
+                error = "ERR Prefix " + overlap + " overlap with another provided prefix. Prefixes for a single client must not overlap.";
+            }
+        }
+        if (error != null) {
+            client.writeError(error);
+            return;
+        }
+        client.trackingRedirect = redirect == client.id ? 0 : redirect;
+        client.trackingOptIn = optIn;
+        client.trackingOptOut = optOut;
+        client.trackingNoLoop = noLoop;
+        Tracking.enable(client, bcast, prefixes);
+        client.writeSimple("OK");
+    }
+
+    // CLIENT CACHING yes|no: whether the next command's reads are tracked, in OPTIN or OPTOUT mode
+    private static void caching(Client client, RespCommand command) {
+        if (!client.tracking) {
+            client.writeError("ERR CLIENT CACHING can be called only when the client is in tracking mode with OPTIN or OPTOUT mode enabled");
+        } else if (command.equalsIgnoreCase(2, "yes") && client.trackingOptIn) {
+            client.cachingOverride = 1;
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(2, "no") && client.trackingOptOut) {
+            client.cachingOverride = -1;
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(2, "yes") || command.equalsIgnoreCase(2, "no")) {
+            client.writeError("ERR CLIENT CACHING " + command.string(2).toUpperCase()
+                    + " is only valid when tracking is enabled in " + (command.equalsIgnoreCase(2, "yes") ? "OPTIN" : "OPTOUT") + " mode.");
+        } else {
+            client.writeError("ERR syntax error");
+        }
+    }
+
+    // One CLIENT LIST line. Fields of clients on other loops are read without their loop, so they
+    // may be a moment out of date, which is all a listing needs.
+    private static void describe(StringBuilder line, Client c, long now) {
+        line.append("id=").append(c.id)
+                .append(" addr=").append(c.address)
+                .append(" laddr=").append(c.localAddress)
+                .append(" name=").append(c.name)
+                .append(" age=").append((now - c.createdAt) / 1000)
+                .append(" idle=").append((now - c.lastInteraction) / 1000)
+                .append(" flags=").append(flags(c))
+                .append(" db=0")
+                .append(" sub=").append(c.channels.size())
+                .append(" psub=").append(c.patterns.size())
+                .append(" multi=").append(c.encounteredMulti ? c.bufferedCommands.size() : -1)
+                .append(" watch=").append(c.watchedKeys.size())
+                .append(" qbuf=").append(c.readBuffer.position())
+                .append(" omem=").append(c.pendingOutput())
+                .append(" resp=").append(c.protocol)
+                .append(" cmd=").append(c.lastCommand)
+                .append("\n");
+    }
+
+    private static String flags(Client c) {
+        StringBuilder flags = new StringBuilder();
+        if (c.master) {
+            flags.append('M');
+        }
+        if (c.replica != null) {
+            flags.append('S');
+        }
+        if (c.encounteredMulti) {
+            flags.append('x');
+        }
+        if (c.blockedOn != null) {
+            flags.append('b');
+        }
+        if (c.subscriptions() > 0) {
+            flags.append('P');
+        }
+        if (c.tracking) {
+            flags.append('t');
+        }
+        return flags.length() == 0 ? "N" : flags.toString();
+    }
+}
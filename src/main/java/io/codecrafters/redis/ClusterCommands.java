@@ -0,0 +1,53 @@
+package io.codecrafters.redis;
+
+public class ClusterCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("cluster", -2, 0, 0, 0, 0, ClusterCommands::cluster));
+    }
+
+    // CLUSTER KEYSLOT key | SHARDS. There is a single node; SHARDS lists the shards of shard mode as
+    // Redis Cluster would list its shards, each with this server as its only node.
+    static void cluster(Client client, RespCommand command) {
+        if (command.equalsIgnoreCase(1, "keyslot") && command.argc == 3) {
+            client.writeInteger(Sharding.slot(command.string(2)));
+        } else if (command.equalsIgnoreCase(1, "shards") && command.argc == 2) {
+            if (!Sharding.ENABLED) {
+                client.writeError("ERR This instance has cluster support disabled");
+                return;
+            }
+            shards(client);
+        } else {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for '" + command.string(1) + "'. Try CLUSTER HELP.");
+        }
+    }
+
+    private static void shards(Client client) {
+        long offset = Main.serverRole.equals("master") ? Replication.masterOffset() : Main.offset;
+        String ip = client.localAddress.isEmpty() ? "127.0.0.1" : client.localAddress.substring(0, client.localAddress.lastIndexOf(':'));
+        client.writeArrayHeader(Sharding.SHARDS);
+        for (int shard = 0; shard < Sharding.SHARDS; shard++) {
+            client.writeMapHeader(2);
+            client.writeBulk("slots");
+            client.writeArrayHeader(2);
+            client.writeInteger(Sharding.firstSlot(shard));
+            client.writeInteger(Sharding.firstSlot(shard + 1) - 1);
+            client.writeBulk("nodes");
+            client.writeArrayHeader(1);
+            client.writeMapHeader(7);
+            client.writeBulk("id");
+            client.writeBulk(String.format("%040x", shard));
+            client.writeBulk("port");
+            client.writeInteger(Config.getInt("port"));
+            client.writeBulk("ip");
+            client.writeBulk(ip);
+            client.writeBulk("endpoint");
+            client.writeBulk(ip);
+            client.writeBulk("role");
+            client.writeBulk(Main.serverRole.equals("master") ? "master" : "replica");
+            client.writeBulk("replication-offset");
+            client.writeInteger(offset);
+            client.writeBulk("health");
+            client.writeBulk("online");
+        }
+    }
+}
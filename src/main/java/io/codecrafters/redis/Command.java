@@ -0,0 +1,115 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Metadata for one command: how it is dispatched, validated, reported by COMMAND INFO and propagated
+public class Command {
+    static final int WRITE = 1;
+    static final int READONLY = 1 << 1;
+    static final int FAST = 1 << 2;
+    static final int ADMIN = 1 << 3;
+    static final int BLOCKING = 1 << 4;
+    static final int NO_MULTI = 1 << 5;
+    // Executed immediately inside MULTI instead of being queued (MULTI/EXEC/DISCARD/WATCH)
+    static final int NO_QUEUE = 1 << 6;
+    // May grow the dataset, so refused while over maxmemory when eviction cannot make room
+    static final int DENYOOM = 1 << 7;
+    // Accepted while the client is subscribed to channels or patterns
+    static final int SUBSCRIBER = 1 << 8;
+
+    interface Handler {
+        void execute(Client client, RespCommand command);
+    }
+
+    // For commands whose keys move around, like XREAD's after STREAMS
+    interface KeyFinder {
+        int[] positions(RespCommand args);
+    }
+
+    final String name;
+    // Positive: exact argument count including the name; negative: at least -arity
+    final int arity;
+    final int flags;
+    final int firstKey;
+    final int lastKey;
+    final int keyStep;
+    final Handler handler;
+    KeyFinder keyFinder;
+
+    // INFO commandstats and latencystats; LongAdder so that loops running the same command in
+    // parallel do not contend on one counter
+    final LongAdder calls = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder rejectedCalls = new LongAdder();
+    final LongAdder failedCalls = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    Command(String name, int arity, int flags, int firstKey, int lastKey, int keyStep, Handler handler) {
+        this.name = name;
+        this.arity = arity;
+        this.flags = flags;
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.keyStep = keyStep;
+        this.handler = handler;
+    }
+
+    Command movableKeys(KeyFinder keyFinder) {
+        this.keyFinder = keyFinder;
+        return this;
+    }
+
+    void recordCall(long elapsed, boolean failed) {
+        calls.increment();
+        nanos.add(elapsed);
+        latency.record(elapsed);
+        if (failed) {
+            failedCalls.increment();
+        }
+    }
+
+    void resetStats() {
+        calls.reset();
+        nanos.reset();
+        rejectedCalls.reset();
+        failedCalls.reset();
+        latency.reset();
+    }
+
+    boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    boolean checkArity(int argc) {
+        return arity > 0 ? argc == arity : argc >= -arity;
+    }
+
+    // Positions of the key arguments in a concrete invocation
+    int[] keyPositions(int argc) {
+        if (firstKey == 0) {
+            return new int[0];
+        }
+        int last = lastKey < 0 ? argc + lastKey : lastKey;
+        int[] positions = new int[Math.max(0, (last - firstKey) / keyStep + 1)];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = firstKey + i * keyStep;
+        }
+        return positions;
+    }
+
+    List<String> flagNames() {
+        List<String> names = new ArrayList<>();
+        if (has(WRITE)) names.add("write");
+        if (has(READONLY)) names.add("readonly");
+        if (has(FAST)) names.add("fast");
+        if (has(ADMIN)) names.add("admin");
+        if (has(BLOCKING)) names.add("blocking");
+        if (has(NO_MULTI)) names.add("no_multi");
+        if (has(DENYOOM)) names.add("denyoom");
+        if (has(SUBSCRIBER)) names.add("pubsub");
+        if (keyFinder != null) names.add("movablekeys");
+        return names;
+    }
+}
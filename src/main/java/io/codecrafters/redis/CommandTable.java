@@ -0,0 +1,92 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Open-addressing table keyed by the case-folded command name. Lookups hash the name bytes
+// straight out of the read buffer, so dispatch neither allocates nor scans a chain of names.
+public class CommandTable {
+    private Command[] slots = new Command[256];
+    private int size = 0;
+
+    void register(Command command) {
+        if ((size + 1) * 2 > slots.length) {
+            resize();
+        }
+        insert(slots, command);
+        size++;
+    }
+
+    Command lookup(RespCommand command) {
+        byte[] buffer = command.buffer;
+        int from = command.base + command.offsets[0];
+        int length = command.lengths[0];
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + lower(buffer[from + i]);
+        }
+        int mask = slots.length - 1;
+        for (int i = spread(hash) & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (command.equalsIgnoreCase(0, slots[i].name)) {
+                return slots[i];
+            }
+        }
+        return null;
+    }
+
+    Command lookup(String name) {
+        String lowerName = name.toLowerCase();
+        int mask = slots.length - 1;
+        for (int i = spread(lowerName.hashCode()) & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (slots[i].name.equals(lowerName)) {
+                return slots[i];
+            }
+        }
+        return null;
+    }
+
+    List<Command> all() {
+        List<Command> commands = new ArrayList<>(size);
+        for (Command command : slots) {
+            if (command != null) {
+                commands.add(command);
+            }
+        }
+        return commands;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        Command[] bigger = new Command[slots.length * 2];
+        for (Command command : slots) {
+            if (command != null) {
+                insert(bigger, command);
+            }
+        }
+        slots = bigger;
+    }
+
+    private static void insert(Command[] table, Command command) {
+        int mask = table.length - 1;
+        int i = spread(command.name.hashCode()) & mask;
+        while (table[i] != null) {
+            if (table[i].name.equals(command.name)) {
+                throw new IllegalArgumentException("Duplicate command " + command.name);
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = command;
+    }
+
+    // Matches String.hashCode() for lower-case ASCII names
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
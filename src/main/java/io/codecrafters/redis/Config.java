@@ -0,0 +1,92 @@
+package io.codecrafters.redis;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Config {
+    static final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+
+    static {
+        values.put("port", "6379");
+        // Data files live in dir, as in Redis: the working directory unless --dir is given
+        values.put("dir", ".");
+        values.put("dbfilename", "dump.rdb");
+        values.put("replicaof", "");
+        values.put("io-threads", "1");
+        // Event loops that each own a range of hash slots, see Sharding; replaces io-threads. 0 is off.
+        values.put("shards", "0");
+        // "<seconds> <changes> ..." pairs; empty disables automatic snapshots
+        values.put("save", "");
+        values.put("appendonly", "no");
+        values.put("appendfilename", "appendonly.aof");
+        // always: fsync before replying, shared by every command in the batch; everysec; no
+        values.put("appendfsync", "everysec");
+        values.put("auto-aof-rewrite-percentage", "100");
+        values.put("auto-aof-rewrite-min-size", String.valueOf(64 * 1024 * 1024));
+        // Per list node: -1 to -5 for 4 to 64 KiB, or a positive element count
+        values.put("list-max-listpack-size", "-2");
+        values.put("stream-node-max-bytes", "4096");
+        values.put("stream-node-max-entries", "100");
+        // Bytes, with Redis' units (1k = 1000, 1kb = 1024, up to gb); 0 for no limit
+        values.put("maxmemory", "0");
+        // noeviction, allkeys-lru, volatile-lru, allkeys-lfu, volatile-lfu, allkeys-random,
+        // volatile-random or volatile-ttl
+        values.put("maxmemory-policy", "noeviction");
+        values.put("maxmemory-samples", "5");
+        values.put("lfu-log-factor", "10");
+        values.put("lfu-decay-time", "1");
+        // Replication stream kept for replicas that fall behind; also bounds how far behind they may fall
+        values.put("repl-backlog-size", "1mb");
+        // Microseconds; negative disables the slow log, 0 logs every command
+        values.put("slowlog-log-slower-than", "10000");
+        values.put("slowlog-max-len", "128");
+        // Keys CLIENT TRACKING remembers readers for, across all clients
+        values.put("tracking-table-max-keys", "1000000");
+        // "<class> <hard limit> <soft limit> <soft seconds>" per client class; only pubsub is enforced
+        values.put("client-output-buffer-limit", "normal 0 0 0 pubsub 32mb 8mb 60");
+    }
+
+    // Accepts "--name value" pairs, e.g. --port 6380 --replicaof "localhost 6379"
+    static void parse(String[] args) {
+        int i = 0;
+        while (i < args.length) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                values.put(args[i].substring(2).toLowerCase(), args[i + 1]);
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    static String get(String name) {
+        return values.getOrDefault(name, "");
+    }
+
+    static int getInt(String name) {
+        return Integer.parseInt(get(name));
+    }
+
+    // The data file named by a parameter like dbfilename or appendfilename, inside dir. Everything
+    // that reads or writes one resolves it here, so the loader finds what SAVE and the AOF wrote.
+    static File dataFile(String name) {
+        return new File(get("dir"), get(name));
+    }
+
+    static long getBytes(String name) {
+        return parseBytes(get(name));
+    }
+
+    // A size like "100mb", as Redis' memtoll reads it
+    static long parseBytes(String size) {
+        String value = size.toLowerCase();
+        String[] units = {"gb", "mb", "kb", "g", "m", "k", "b"};
+        long[] multipliers = {1L << 30, 1L << 20, 1L << 10, 1_000_000_000L, 1_000_000L, 1_000L, 1L};
+        for (int i = 0; i < units.length; i++) {
+            if (value.endsWith(units[i])) {
+                return Long.parseLong(value.substring(0, value.length() - units[i].length())) * multipliers[i];
+            }
+        }
+        return Long.parseLong(value);
+    }
+}
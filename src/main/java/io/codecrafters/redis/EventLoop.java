@@ -0,0 +1,211 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EventLoop implements Runnable {
+    static final AtomicInteger nextLoop = new AtomicInteger();
+
+    final int id;
+    final Selector selector;
+    final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Clear only while the loop may be about to sleep in select. A task handed over while it is set
+    // is picked up without waking the selector, whose wakeup is a system call; shards hand each
+    // other a task for every command they forward.
+    private final AtomicBoolean awake = new AtomicBoolean();
+    // Clients parked on WAIT; retried every turn of the loop
+    final ArrayList<Client> blockedClients = new ArrayList<>();
+    // Subscribers that were published to during this turn, flushed once when it ends
+    private final ArrayList<Client> pendingFlush = new ArrayList<>();
+    // Deadlines of clients blocked on list keys, earliest first; only touched by this loop
+    private final PriorityQueue<Timeout> timeouts = new PriorityQueue<>(Comparator.comparingLong(t -> t.at));
+    Thread thread;
+
+    private static final class Timeout {
+        final Client client;
+        final long blockId;
+        final long at;
+
+        Timeout(Client client, long blockId, long at) {
+            this.client = client;
+            this.blockId = blockId;
+            this.at = at;
+        }
+    }
+
+    EventLoop(int id) throws IOException {
+        this.id = id;
+        this.selector = Selector.open();
+    }
+
+    void start() {
+        thread = new Thread(this, "event-loop-" + id);
+        thread.start();
+    }
+
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (!inLoop() && awake.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    void flushAtEndOfTurn(Client client) {
+        pendingFlush.add(client);
+    }
+
+    void addTimeout(Client client, long blockId, long at) {
+        timeouts.add(new Timeout(client, blockId, at));
+    }
+
+    void listen(ServerSocketChannel serverChannel) {
+        execute(() -> {
+            try {
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                System.out.println("Listen error: " + e.getMessage());
+            }
+        });
+    }
+
+    // Hands a connected channel to this loop; pending holds bytes already read off the socket
+    void register(SocketChannel channel, ByteBuffer pending, boolean master) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                Client client = new Client(this, channel);
+                client.master = master;
+                Client.clients.put(client.id, client);
+                Stats.connectionsReceived.increment();
+                if (master) {
+                    Replication.linkEstablished(client);
+                }
+                client.selectionKey = channel.register(selector, SelectionKey.OP_READ, client);
+                if (pending != null && pending.hasRemaining()) {
+                    client.readBuffer.put(pending);
+                    client.processInput();
+                }
+            } catch (IOException e) {
+                System.out.println("Register error: " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                // Tasks added after this check find the flag clear and wake the select
+                awake.set(false);
+                if (tasks.isEmpty()) {
+                    selector.select(selectTimeout());
+                } else {
+                    selector.selectNow();
+                }
+                awake.set(true);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        client.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        client.onWritable();
+                    }
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                if (!blockedClients.isEmpty()) {
+                    retryBlocked();
+                }
+                expireTimeouts();
+                if (!pendingFlush.isEmpty()) {
+                    flushPending();
+                }
+            } catch (IOException e) {
+                System.out.println("Event loop error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop target = Main.loops[Math.floorMod(nextLoop.getAndIncrement(), Main.loops.length)];
+            target.register(channel, null, false);
+        }
+    }
+
+    // Sleeps until the next block deadline; WAIT still needs polling
+    private long selectTimeout() {
+        long timeout = blockedClients.isEmpty() ? 0 : 100;
+        Timeout next = timeouts.peek();
+        if (next != null) {
+            long untilNext = Math.max(1, next.at - System.currentTimeMillis());
+            timeout = timeout == 0 ? untilNext : Math.min(timeout, untilNext);
+        }
+        return timeout;
+    }
+
+    // Entries of clients that were served or disconnected first are dropped by Blocking.timeout
+    private void expireTimeouts() {
+        long now = System.currentTimeMillis();
+        while (!timeouts.isEmpty() && timeouts.peek().at <= now) {
+            Timeout timeout = timeouts.poll();
+            Blocking.timeout(timeout.client, timeout.blockId);
+        }
+    }
+
+    private void flushPending() {
+        for (Client client : pendingFlush) {
+            client.flushScheduled = false;
+            client.flush();
+        }
+        pendingFlush.clear();
+    }
+
+    private void retryBlocked() {
+        Iterator<Client> it = blockedClients.iterator();
+        ArrayList<Client> resumed = new ArrayList<>();
+        while (it.hasNext()) {
+            Client client = it.next();
+            if (client.closed || Main.retryBlocked(client)) {
+                it.remove();
+                resumed.add(client);
+            }
+        }
+        for (Client client : resumed) {
+            if (!client.closed) {
+                client.processInput();
+            }
+        }
+    }
+}
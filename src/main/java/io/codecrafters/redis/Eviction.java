@@ -0,0 +1,212 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// maxmemory enforcement, after Redis' evict.c. Before a command runs, keys are evicted while the
+// keyspace's memory estimate is over maxmemory. There is no global LRU list: every entry carries a
+// small clock or counter in its lru field, eviction samples a few keys from a random stripe, and a
+// pool of the best candidates seen so far carries over between rounds, which makes the sampled
+// choice close to true LRU/LFU at a fraction of the cost.
+//
+// In LRU mode the field is the access time in milliseconds, wrapping every 49 days; Redis has only
+// 24 bits there and counts seconds, which cannot tell apart keys touched within the same second.
+// In LFU mode it holds the time of the last decrement in minutes (16 bits) above a logarithmic
+// access counter (8 bits), which grows more slowly the higher it is and loses one every
+// lfu-decay-time minutes of disuse.
+public class Eviction {
+    enum Policy {
+        NOEVICTION, ALLKEYS_LRU, VOLATILE_LRU, ALLKEYS_LFU, VOLATILE_LFU, ALLKEYS_RANDOM, VOLATILE_RANDOM, VOLATILE_TTL;
+
+        final String configName = name().toLowerCase().replace('_', '-');
+
+        static Policy parse(String name) {
+            for (Policy policy : values()) {
+                if (policy.configName.equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Invalid maxmemory-policy: " + name);
+        }
+
+        boolean volatileOnly() {
+            return name().startsWith("VOLATILE");
+        }
+    }
+
+    static final long MAXMEMORY = Config.getBytes("maxmemory");
+    static final Policy POLICY = Policy.parse(Config.get("maxmemory-policy"));
+    static final int SAMPLES = Config.getInt("maxmemory-samples");
+    static final int LFU_LOG_FACTOR = Config.getInt("lfu-log-factor");
+    static final int LFU_DECAY_TIME = Config.getInt("lfu-decay-time");
+    static final boolean LFU = POLICY == Policy.ALLKEYS_LFU || POLICY == Policy.VOLATILE_LFU;
+
+    static final int LFU_INIT_VAL = 5;
+    static final int POOL_SIZE = 16;
+
+    static final AtomicLong evictedKeys = new AtomicLong();
+
+    // Serializes eviction, which owns the pool. Taken with no stripe held.
+    private static final ReentrantLock lock = new ReentrantLock();
+    // Candidates by ascending score, the best at the end
+    private static final String[] poolKeys = new String[POOL_SIZE];
+    private static final long[] poolScores = new long[POOL_SIZE];
+    private static int poolSize = 0;
+
+    static int lruClock() {
+        return (int) System.currentTimeMillis();
+    }
+
+    // lru of a new entry; an overwritten key keeps its LFU history, as in Redis
+    static int initialLru(Keyspace.Entry old) {
+        if (!LFU) {
+            return lruClock();
+        }
+        return old != null ? old.lru : lfuTime() << 8 | LFU_INIT_VAL;
+    }
+
+    // Records an access, with the key's stripe held
+    static void touch(Keyspace.Entry entry) {
+        if (!LFU) {
+            entry.lru = lruClock();
+            return;
+        }
+        int counter = lfuLogIncrement(lfuDecrement(entry));
+        entry.lru = lfuTime() << 8 | counter;
+    }
+
+    // Milliseconds since the last access; unsigned, so one wrap of the clock is allowed for
+    static long idleMillis(Keyspace.Entry entry) {
+        return Integer.toUnsignedLong(lruClock() - entry.lru);
+    }
+
+    private static int lfuTime() {
+        return (int) (System.currentTimeMillis() / 60_000) & 0xFFFF;
+    }
+
+    // The counter after the decay owed since its last decrement
+    static int lfuDecrement(Keyspace.Entry entry) {
+        int last = entry.lru >>> 8;
+        int counter = entry.lru & 0xFF;
+        int now = lfuTime();
+        int elapsed = now >= last ? now - last : 0xFFFF - last + now;
+        int periods = LFU_DECAY_TIME > 0 ? elapsed / LFU_DECAY_TIME : 0;
+        return periods > counter ? 0 : counter - periods;
+    }
+
+    private static int lfuLogIncrement(int counter) {
+        if (counter == 255) {
+            return 255;
+        }
+        double base = Math.max(0, counter - LFU_INIT_VAL);
+        double p = 1.0 / (base * LFU_LOG_FACTOR + 1);
+        return ThreadLocalRandom.current().nextDouble() < p ? counter + 1 : counter;
+    }
+
+    // Called before a command runs, with no stripe held. Evicts until the estimate is back under
+    // maxmemory; false if it is still over because the policy allows nothing to be evicted.
+    static boolean makeRoom() {
+        if (MAXMEMORY == 0 || Main.keyspace.usedMemory() <= MAXMEMORY) {
+            return true;
+        }
+        if (POLICY == Policy.NOEVICTION) {
+            return false;
+        }
+        lock.lock();
+        try {
+            while (Main.keyspace.usedMemory() > MAXMEMORY) {
+                if (!evictOne()) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean evictOne() {
+        boolean volatileOnly = POLICY.volatileOnly();
+        if ((volatileOnly ? Main.keyspace.expiresSize() : Main.keyspace.size()) == 0) {
+            return false;
+        }
+        if (POLICY == Policy.ALLKEYS_RANDOM || POLICY == Policy.VOLATILE_RANDOM) {
+            ArrayList<String> sampled = new ArrayList<>(1);
+            Main.keyspace.sample(1, volatileOnly, entry -> sampled.add(entry.key));
+            return !sampled.isEmpty() && Main.keyspace.evict(sampled.get(0), volatileOnly);
+        }
+        // Keys that disappeared since they were pooled are dropped and the next best one is tried
+        for (int attempt = 0; attempt < 16; attempt++) {
+            Main.keyspace.sample(SAMPLES, volatileOnly, entry -> offer(entry.key, score(entry)));
+            while (poolSize > 0) {
+                String key = poolKeys[--poolSize];
+                poolKeys[poolSize] = null;
+                if (Main.keyspace.evict(key, volatileOnly)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Higher is a better candidate
+    private static long score(Keyspace.Entry entry) {
+        if (POLICY == Policy.VOLATILE_TTL) {
+            return Long.MAX_VALUE - entry.expireAt;
+        }
+        return LFU ? 255 - lfuDecrement(entry) : idleMillis(entry);
+    }
+
+    // Inserts a candidate in score order; when the pool is full it only gets in by beating the worst
+    private static void offer(String key, long score) {
+        for (int i = 0; i < poolSize; i++) {
+            if (poolKeys[i].equals(key)) {
+                return;
+            }
+        }
+        int at = 0;
+        while (at < poolSize && poolScores[at] < score) {
+            at++;
+        }
+        if (poolSize == POOL_SIZE) {
+            if (at == 0) {
+                return;
+            }
+            // Drop the worst and shift the lower part down
+            System.arraycopy(poolKeys, 1, poolKeys, 0, at - 1);
+            System.arraycopy(poolScores, 1, poolScores, 0, at - 1);
+            at--;
+        } else {
+            System.arraycopy(poolKeys, at, poolKeys, at + 1, poolSize - at);
+            System.arraycopy(poolScores, at, poolScores, at + 1, poolSize - at);
+            poolSize++;
+        }
+        poolKeys[at] = key;
+        poolScores[at] = score;
+    }
+
+    static String info() {
+        return "# Memory\r\n"
+                + "used_memory:" + Main.keyspace.usedMemory() + "\r\n"
+                + "used_memory_human:" + human(Main.keyspace.usedMemory()) + "\r\n"
+                + "maxmemory:" + MAXMEMORY + "\r\n"
+                + "maxmemory_human:" + human(MAXMEMORY) + "\r\n"
+                + "maxmemory_policy:" + POLICY.configName + "\r\n";
+    }
+
+    private static String human(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+        String[] units = {"K", "M", "G", "T"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format("%.2f%s", value, units[unit]);
+    }
+}
@@ -0,0 +1,153 @@
+package io.codecrafters.redis;
+
+import java.util.Arrays;
+
+// Glob patterns as KEYS and SCAN MATCH take them, with the rules of Redis' stringmatchlen: * and ?,
+// [abc], [^abc] and [a-z] classes, and \ to escape the next character. A pattern is compiled once per
+// command into tokens, so matching never re-parses it. The shapes tooling sends most, "*", a literal
+// and "prefix*", skip the matcher entirely.
+public class Glob {
+    private static final int LITERAL = 0;
+    private static final int ANY_ONE = 1;
+    private static final int ANY_RUN = 2;
+    private static final int CLASS = 3;
+
+    private final int[] kinds;
+    private final char[] literals;
+    // Per class token, a 256-bit set over Latin-1, which is every char a key can hold
+    private final long[][] classes;
+    // Set when the pattern is all literals, optionally followed by one *
+    private final String prefix;
+    private final boolean exact;
+
+    private Glob(int[] kinds, char[] literals, long[][] classes) {
+        this.kinds = kinds;
+        this.literals = literals;
+        this.classes = classes;
+        int length = kinds.length;
+        int literalCount = 0;
+        while (literalCount < length && kinds[literalCount] == LITERAL) {
+            literalCount++;
+        }
+        if (literalCount == length || (literalCount == length - 1 && kinds[literalCount] == ANY_RUN)) {
+            prefix = new String(literals, 0, literalCount);
+            exact = literalCount == length;
+        } else {
+            prefix = null;
+            exact = false;
+        }
+    }
+
+    static Glob compile(String pattern) {
+        int length = pattern.length();
+        int[] kinds = new int[length];
+        char[] literals = new char[length];
+        long[][] classes = new long[length][];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                // Runs of * match the same as one
+                if (n == 0 || kinds[n - 1] != ANY_RUN) {
+                    kinds[n++] = ANY_RUN;
+                }
+            } else if (c == '?') {
+                kinds[n++] = ANY_ONE;
+            } else if (c == '[') {
+                long[] set = new long[4];
+                i = parseClass(pattern, i + 1, set);
+                kinds[n] = CLASS;
+                classes[n++] = set;
+            } else {
+                if (c == '\\' && i + 1 < length) {
+                    c = pattern.charAt(++i);
+                }
+                kinds[n] = LITERAL;
+                literals[n++] = c;
+            }
+        }
+        return new Glob(Arrays.copyOf(kinds, n), Arrays.copyOf(literals, n), Arrays.copyOf(classes, n));
+    }
+
+    // Reads a class body starting after '[' into set; returns the index of the closing ']', or the
+    // last index if the class is unterminated, which Redis accepts as ending the class
+    private static int parseClass(String pattern, int i, long[] set) {
+        boolean negate = i < pattern.length() && pattern.charAt(i) == '^';
+        if (negate) {
+            i++;
+        }
+        int length = pattern.length();
+        while (i < length && pattern.charAt(i) != ']') {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                add(set, pattern.charAt(++i), pattern.charAt(i));
+            } else if (i + 2 < length && pattern.charAt(i + 1) == '-') {
+                char end = pattern.charAt(i + 2);
+                add(set, (char) Math.min(c, end), (char) Math.max(c, end));
+                i += 2;
+            } else {
+                add(set, c, c);
+            }
+            i++;
+        }
+        if (negate) {
+            for (int w = 0; w < set.length; w++) {
+                set[w] = ~set[w];
+            }
+        }
+        return Math.min(i, length - 1);
+    }
+
+    private static void add(long[] set, char from, char to) {
+        for (int c = from; c <= to && c < 256; c++) {
+            set[c >>> 6] |= 1L << c;
+        }
+    }
+
+    // A key the pattern can only match exactly, or null; KEYS then looks it up instead of walking
+    String literal() {
+        return exact ? prefix : null;
+    }
+
+    boolean matches(String s) {
+        if (prefix != null) {
+            return exact ? s.equals(prefix) : s.startsWith(prefix);
+        }
+        // Greedy, backtracking to the last * only: every other token takes exactly one character,
+        // so no earlier choice needs revisiting and the match is O(pattern * string) at worst
+        int p = 0;
+        int i = 0;
+        int starP = -1;
+        int starI = 0;
+        int length = kinds.length;
+        while (i < s.length()) {
+            if (p < length && kinds[p] != ANY_RUN && matchesOne(p, s.charAt(i))) {
+                p++;
+                i++;
+            } else if (p < length && kinds[p] == ANY_RUN) {
+                starP = p++;
+                starI = i;
+            } else if (starP >= 0) {
+                p = starP + 1;
+                i = ++starI;
+            } else {
+                return false;
+            }
+        }
+        while (p < length && kinds[p] == ANY_RUN) {
+            p++;
+        }
+        return p == length;
+    }
+
+    private boolean matchesOne(int p, char c) {
+        switch (kinds[p]) {
+            case LITERAL:
+                return literals[p] == c;
+            case ANY_ONE:
+                return true;
+            default:
+                return c < 256 && (classes[p][c >>> 6] & (1L << c)) != 0;
+        }
+    }
+}
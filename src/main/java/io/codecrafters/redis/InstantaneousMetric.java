@@ -0,0 +1,32 @@
+package io.codecrafters.redis;
+
+// Per-second rate of a growing counter, averaged over the last SAMPLES calls to track(). The cron
+// thread tracks every 100 ms, so rates cover the last 1.6 s like Redis' instantaneous_* fields.
+public class InstantaneousMetric {
+    static final int SAMPLES = 16;
+
+    private final long[] samples = new long[SAMPLES];
+    private int index = 0;
+    private long lastTime = System.currentTimeMillis();
+    private long lastValue = 0;
+
+    synchronized void track(long value) {
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastTime;
+        if (elapsed <= 0) {
+            return;
+        }
+        samples[index] = (value - lastValue) * 1000 / elapsed;
+        index = (index + 1) % SAMPLES;
+        lastTime = now;
+        lastValue = value;
+    }
+
+    synchronized long perSecond() {
+        long sum = 0;
+        for (long sample : samples) {
+            sum += sample;
+        }
+        return sum / SAMPLES;
+    }
+}
@@ -0,0 +1,712 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// The database. Values are byte[] or Long for strings (see StringValue), QuickList for lists and
+// Stream for streams. Keys are guarded by lock stripes chosen by key hash: dispatch holds the
+// stripes of a command's keys while it runs, so single-key commands are atomic and commands on
+// unrelated keys run in parallel. Every mutation stamps the entry with a new version, which is what
+// lets a snapshot see a point-in-time view while commands keep running.
+//
+// Expiry is an absolute deadline in milliseconds on the entry. Each stripe also indexes its keys
+// that have one, so the active expire cycle can sample them without scanning the whole table, and
+// all of its keys, so eviction can sample those.
+//
+// Memory is an estimate kept per entry and summed. Strings are accounted as they are stored; lists
+// and streams handed out for in-place changes are accounted again when their stripe is unlocked.
+public class Keyspace {
+    static class WrongTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        WrongTypeException() {
+            super("WRONGTYPE Operation against a key holding the wrong kind of value", null, false, false);
+        }
+    }
+
+    // Receives a point-in-time copy of the keyspace, see snapshot()
+    interface SnapshotSink {
+        // Called with every stripe held, at the instant the snapshot is taken
+        default void begin() {
+        }
+
+        // Called with the key's stripe held; values must not be retained past the call.
+        // expireAt is an absolute unix time in milliseconds, or NO_EXPIRE.
+        void entry(String key, Object value, long expireAt);
+
+        // Called between batches without any stripe held, where the sink can do its I/O
+        void flush() throws IOException;
+    }
+
+    static final long NO_EXPIRE = -1;
+    static final int SNAPSHOT_BATCH_SIZE = 256;
+    // Power of two, well above the core count so unrelated keys rarely share a stripe
+    static final int STRIPES = 1024;
+    static final int STRIPE_BITS = Integer.numberOfTrailingZeros(STRIPES);
+    // SCAN gives up on a step after this many stripes per key asked for, however few keys it found
+    static final int SCAN_STRIPES_PER_KEY = 10;
+
+    // Active expire cycle, after Redis' activeExpireCycle: keys sampled per stripe per round, and the
+    // share of expired keys in a sample above which the stripe is worth another round
+    static final int EXPIRE_SAMPLE_SIZE = 20;
+    static final int EXPIRE_REPEAT_PERCENT = 10;
+
+    static class Entry {
+        final String key;
+        Object value;
+        long expireAt = NO_EXPIRE;
+        long version;
+        // Epoch of the last snapshot that has already written this entry
+        long savedEpoch;
+        // Position in the stripe's expire index, -1 when the key has no deadline
+        int expireSlot = -1;
+        // Position in the stripe's index of all keys, -1 once the entry left the keyspace
+        int slot = -1;
+        // LRU clock or LFU counter, see Eviction
+        int lru;
+        // Estimated bytes, as last added to usedMemory
+        long size;
+
+        Entry(String key, Object value, long version) {
+            this.key = key;
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    static class Stripe extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        final ArrayList<Entry> volatileEntries = new ArrayList<>();
+        final ArrayList<Entry> entries = new ArrayList<>();
+        // Entries whose values were handed out for in-place changes since the stripe was locked
+        final ArrayList<Entry> resized = new ArrayList<>();
+    }
+
+    final ConcurrentHashMap<String, Entry> data = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger expiresCount = new AtomicInteger();
+    private final LongAdder usedMemory = new LongAdder();
+    private int expireCursor = 0;
+
+    final AtomicLong expiredKeys = new AtomicLong();
+    final AtomicLong expireCycleMillis = new AtomicLong();
+
+    // Non-zero while a snapshot is being written. Entries with a version up to the epoch belong to the
+    // snapshot; the first change to one of them before the saver reaches it keeps a copy here.
+    private volatile long snapshotEpoch = 0;
+    private ConcurrentHashMap<String, Entry> preImages = new ConcurrentHashMap<>();
+
+    Keyspace() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // In shard mode by hash slot, 16 slots to a stripe, so that with a shard count that divides the
+    // stripe count every stripe holds the keys of a single shard
+    static int stripe(String key) {
+        if (Sharding.ENABLED) {
+            return Sharding.slot(key) * STRIPES / Sharding.SLOTS;
+        }
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // Stripes of the keys command would touch, per its key positions
+    static int[] stripes(Command command, RespCommand args) {
+        int[] positions;
+        if (command.keyFinder != null) {
+            positions = command.keyFinder.positions(args);
+        } else if (command.firstKey == 0) {
+            return new int[0];
+        } else if (command.firstKey == command.lastKey) {
+            return command.firstKey < args.argc ? new int[]{stripe(args.string(command.firstKey))} : new int[0];
+        } else {
+            positions = command.keyPositions(args.argc);
+        }
+        int[] stripes = new int[positions.length];
+        int count = 0;
+        for (int position : positions) {
+            if (position < args.argc) {
+                stripes[count++] = stripe(args.string(position));
+            }
+        }
+        return distinct(stripes, count);
+    }
+
+    // Sorts and dedups the first count stripes; locking in this order cannot deadlock
+    static int[] distinct(int[] stripes, int count) {
+        Arrays.sort(stripes, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || stripes[unique - 1] != stripes[i]) {
+                stripes[unique++] = stripes[i];
+            }
+        }
+        return unique == stripes.length ? stripes : Arrays.copyOf(stripes, unique);
+    }
+
+    void lock(int[] stripes) {
+        for (int stripe : stripes) {
+            this.stripes[stripe].lock();
+        }
+    }
+
+    void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            settle(this.stripes[stripes[i]]);
+            this.stripes[stripes[i]].unlock();
+        }
+    }
+
+    // For taking one more stripe while already holding others, where waiting could deadlock
+    boolean tryLock(String key) {
+        return stripes[stripe(key)].tryLock();
+    }
+
+    void unlock(String key) {
+        settle(stripes[stripe(key)]);
+        stripes[stripe(key)].unlock();
+    }
+
+    void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            settle(stripes[i]);
+            stripes[i].unlock();
+        }
+    }
+
+    // Re-accounts the values changed in place under the stripe
+    private void settle(Stripe stripe) {
+        ArrayList<Entry> resized = stripe.resized;
+        for (int i = 0; i < resized.size(); i++) {
+            Entry entry = resized.get(i);
+            if (entry.slot != -1) {
+                account(entry);
+            }
+        }
+        resized.clear();
+    }
+
+    private void account(Entry entry) {
+        long size = memoryUsage(entry);
+        usedMemory.add(size - entry.size);
+        entry.size = size;
+    }
+
+    private void markResized(Entry entry) {
+        ArrayList<Entry> resized = stripes[stripe(entry.key)].resized;
+        if (resized.isEmpty() || resized.get(resized.size() - 1) != entry) {
+            resized.add(entry);
+        }
+    }
+
+    long usedMemory() {
+        return usedMemory.sum();
+    }
+
+    // The accessors below must be called with the key's stripe held
+
+    // Looks a key up, deleting it first if its deadline has passed. Replicas leave the deletion to
+    // their master, which sends an explicit DEL: they hide the key from their own clients but not
+    // from the master's commands, so that DEL still finds it.
+    Entry lookup(String key) {
+        Entry entry = peek(key);
+        if (entry != null) {
+            Eviction.touch(entry);
+        }
+        return entry;
+    }
+
+    // As lookup, but not counted as an access for eviction, as OBJECT and MEMORY look at keys
+    Entry peek(String key) {
+        Entry entry = data.get(key);
+        if (entry == null || entry.expireAt == NO_EXPIRE || System.currentTimeMillis() < entry.expireAt) {
+            return entry;
+        }
+        if (Main.serverRole.equals("master")) {
+            expire(entry);
+            return null;
+        }
+        Client client = Main.currentClient.get();
+        return client != null && client.master ? entry : null;
+    }
+
+    // Version of a live key for WATCH, 0 if there is none. Every change stores a new version, and a
+    // key created again after a delete gets a new one as well.
+    long watchVersion(String key) {
+        Entry entry = peek(key);
+        return entry == null ? 0 : entry.version;
+    }
+
+    Object get(String key) {
+        Entry entry = lookup(key);
+        return entry == null ? null : entry.value;
+    }
+
+    // A string value, byte[] or Long
+    Object getString(String key) {
+        Object value = get(key);
+        if (value != null && !StringValue.isString(value)) {
+            throw new WrongTypeException();
+        }
+        return value;
+    }
+
+    QuickList getList(String key) {
+        Object value = get(key);
+        if (value != null && !(value instanceof QuickList)) {
+            throw new WrongTypeException();
+        }
+        return (QuickList) value;
+    }
+
+    // Returns the list for in-place modification, creating it if asked to
+    QuickList getListForWrite(String key, boolean create) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            QuickList list = new QuickList();
+            markResized(put(key, list, NO_EXPIRE));
+            return list;
+        }
+        if (!(entry.value instanceof QuickList)) {
+            throw new WrongTypeException();
+        }
+        preserve(entry);
+        entry.version = version.incrementAndGet();
+        markResized(entry);
+        return (QuickList) entry.value;
+    }
+
+    Stream getStream(String key) {
+        Object value = get(key);
+        if (value != null && !(value instanceof Stream)) {
+            throw new WrongTypeException();
+        }
+        return (Stream) value;
+    }
+
+    // Returns the stream for in-place modification, creating it if asked to
+    Stream getStreamForWrite(String key, boolean create) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            Stream stream = new Stream();
+            markResized(put(key, stream, NO_EXPIRE));
+            return stream;
+        }
+        if (!(entry.value instanceof Stream)) {
+            throw new WrongTypeException();
+        }
+        preserve(entry);
+        entry.version = version.incrementAndGet();
+        markResized(entry);
+        return (Stream) entry.value;
+    }
+
+    // Stores value with no deadline, as SET does
+    void put(String key, Object value) {
+        put(key, value, NO_EXPIRE);
+    }
+
+    Entry put(String key, Object value, long expireAt) {
+        Entry old = data.get(key);
+        Entry entry = new Entry(key, value, version.incrementAndGet());
+        entry.lru = Eviction.initialLru(old);
+        if (old != null) {
+            preserve(old);
+            unlinkExpire(old);
+            // The new entry takes the old one's place in the index
+            stripes[stripe(key)].entries.set(old.slot, entry);
+            entry.slot = old.slot;
+            old.slot = -1;
+            usedMemory.add(-old.size);
+        } else {
+            ArrayList<Entry> index = stripes[stripe(key)].entries;
+            entry.slot = index.size();
+            index.add(entry);
+        }
+        data.put(key, entry);
+        if (expireAt != NO_EXPIRE) {
+            entry.expireAt = expireAt;
+            linkExpire(entry);
+        }
+        account(entry);
+        return entry;
+    }
+
+    // Replaces the value of a live key in place and keeps its deadline, as INCR does
+    void update(String key, Object value) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            put(key, value);
+            return;
+        }
+        preserve(entry);
+        entry.value = value;
+        entry.version = version.incrementAndGet();
+        account(entry);
+    }
+
+    Object remove(String key) {
+        Entry entry = data.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        preserve(entry);
+        unlinkExpire(entry);
+        unlink(entry);
+        return entry.value;
+    }
+
+    // Removes every key, for a replica about to load a full copy of its master's; the caller holds
+    // every stripe
+    void clear() {
+        for (String key : new ArrayList<>(data.keySet())) {
+            remove(key);
+        }
+    }
+
+    // Deadline of a live key, NO_EXPIRE if it has none
+    long getExpire(String key) {
+        Entry entry = lookup(key);
+        return entry == null ? NO_EXPIRE : entry.expireAt;
+    }
+
+    // Sets or clears (NO_EXPIRE) the deadline of a live key; returns false if there is no such key
+    boolean setExpire(String key, long expireAt) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.expireAt == expireAt) {
+            return true;
+        }
+        preserve(entry);
+        entry.version = version.incrementAndGet();
+        if (expireAt == NO_EXPIRE) {
+            unlinkExpire(entry);
+            entry.expireAt = NO_EXPIRE;
+        } else {
+            entry.expireAt = expireAt;
+            linkExpire(entry);
+        }
+        account(entry);
+        return true;
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    // Estimated heap bytes of a key, as MEMORY USAGE reports them: its map node and table slot, the
+    // entry, the key and the value, assuming compressed oops and 8-byte alignment
+    static long memoryUsage(Entry entry) {
+        // Map node and slot, the entry, its slot in the index of all keys and the key string
+        long bytes = 32 + 8 + 64 + 4 + 24 + StringValue.align(16 + entry.key.length());
+        if (entry.expireSlot != -1) {
+            bytes += 4;
+        }
+        Object value = entry.value;
+        if (value instanceof QuickList list) {
+            return bytes + list.memoryUsage();
+        }
+        return bytes + (value instanceof Stream stream ? stream.memoryUsage() : StringValue.memoryUsage(value));
+    }
+
+    int expiresSize() {
+        return expiresCount.get();
+    }
+
+    // Deletes a key whose deadline has passed and sends the deletion on to the AOF and replicas
+    private void expire(Entry entry) {
+        if (data.remove(entry.key, entry)) {
+            preserve(entry);
+            unlinkExpire(entry);
+            unlink(entry);
+            expiredKeys.incrementAndGet();
+            Main.propagateExpired(entry.key);
+        }
+    }
+
+    private void linkExpire(Entry entry) {
+        if (entry.expireSlot == -1) {
+            ArrayList<Entry> index = stripes[stripe(entry.key)].volatileEntries;
+            entry.expireSlot = index.size();
+            index.add(entry);
+            expiresCount.incrementAndGet();
+        }
+    }
+
+    // Takes a deleted entry out of the index of all keys and out of the memory estimate
+    private void unlink(Entry entry) {
+        ArrayList<Entry> index = stripes[stripe(entry.key)].entries;
+        Entry last = index.remove(index.size() - 1);
+        if (last != entry) {
+            index.set(entry.slot, last);
+            last.slot = entry.slot;
+        }
+        entry.slot = -1;
+        usedMemory.add(-entry.size);
+    }
+
+    // Swap-remove, so the index stays dense for sampling
+    private void unlinkExpire(Entry entry) {
+        if (entry.expireSlot != -1) {
+            ArrayList<Entry> index = stripes[stripe(entry.key)].volatileEntries;
+            Entry last = index.remove(index.size() - 1);
+            if (last != entry) {
+                index.set(entry.expireSlot, last);
+                last.expireSlot = entry.expireSlot;
+            }
+            entry.expireSlot = -1;
+            expiresCount.decrementAndGet();
+        }
+    }
+
+    // One step of SCAN from cursor, with no stripe held: passes live entries to visitor, each under
+    // its stripe's lock, until count entries were looked at or the walk ends, and returns the cursor
+    // to continue from, 0 once every stripe has been walked. The cursor holds the stripe in its low
+    // bits and, above them, how many of that stripe's entries are still to be visited.
+    //
+    // A stripe is walked from its last entry down. A removal moves the last entry into the hole,
+    // which can only take an entry from the visited part into the unvisited part, and new entries
+    // are appended to the visited part, so a key present for the whole walk is returned at least
+    // once, as SCAN promises. Stripes never split or merge, so there is no rehashing to survive.
+    // With mayWait false, as inside EXEC where other stripes are held, a stripe that cannot be had
+    // at once ends the step early instead of risking a deadlock.
+    long scan(long cursor, int count, boolean mayWait, Consumer<Entry> visitor) {
+        int index = (int) (cursor & (STRIPES - 1));
+        long remaining = cursor >>> STRIPE_BITS;
+        long now = System.currentTimeMillis();
+        int visited = 0;
+        int stripesLeft = (int) Math.min(STRIPES, (long) count * SCAN_STRIPES_PER_KEY);
+        while (index < STRIPES && visited < count && stripesLeft-- > 0) {
+            Stripe stripe = stripes[index];
+            if (mayWait) {
+                stripe.lock();
+            } else if (!stripe.tryLock()) {
+                break;
+            }
+            try {
+                ArrayList<Entry> entries = stripe.entries;
+                int next = remaining == 0 ? entries.size() : (int) Math.min(remaining, entries.size());
+                while (next > 0 && visited < count) {
+                    Entry entry = entries.get(--next);
+                    visited++;
+                    if (entry.expireAt == NO_EXPIRE || now < entry.expireAt) {
+                        visitor.accept(entry);
+                    }
+                }
+                remaining = next;
+            } finally {
+                stripe.unlock();
+            }
+            if (remaining == 0) {
+                index++;
+            }
+        }
+        return index == STRIPES ? 0 : remaining << STRIPE_BITS | index;
+    }
+
+    // For eviction, with no stripe held: passes count random entries to visitor, each under its
+    // stripe's lock, taking them from consecutive stripes starting at a random one. Only keys with a
+    // deadline if volatileOnly.
+    void sample(int count, boolean volatileOnly, Consumer<Entry> visitor) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(STRIPES);
+        int taken = 0;
+        for (int i = 0; i < STRIPES && taken < count; i++) {
+            Stripe stripe = stripes[(start + i) & (STRIPES - 1)];
+            ArrayList<Entry> index = volatileOnly ? stripe.volatileEntries : stripe.entries;
+            // An unlocked peek to skip empty stripes; checked again under the lock
+            if (index.isEmpty()) {
+                continue;
+            }
+            stripe.lock();
+            try {
+                int n = Math.min(count - taken, index.size());
+                for (int j = 0; j < n; j++) {
+                    visitor.accept(index.get(random.nextInt(index.size())));
+                }
+                taken += n;
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    // Deletes a key chosen for eviction if it is still there (with a deadline if volatileOnly) and
+    // sends the deletion on to the AOF and replicas. Called with no stripe held.
+    boolean evict(String key, boolean volatileOnly) {
+        Stripe stripe = stripes[stripe(key)];
+        stripe.lock();
+        try {
+            Entry entry = data.get(key);
+            if (entry == null || (volatileOnly && entry.expireAt == NO_EXPIRE)) {
+                return false;
+            }
+            remove(key);
+            Eviction.evictedKeys.incrementAndGet();
+            Main.signalModifiedKey(null, key);
+            Main.propagateEffect(RespCommand.of("DEL", key));
+            return true;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    // Samples keys with a deadline stripe by stripe and deletes the expired ones, repeating on a
+    // stripe while its samples keep coming back mostly expired. Stops when the time budget is spent
+    // and resumes from the same place on the next call. Only the cron thread calls this.
+    void activeExpireCycle(long budgetMicros) {
+        if (expiresCount.get() == 0 || !Main.serverRole.equals("master")) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + budgetMicros * 1000;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int visited = 0; visited < STRIPES && System.nanoTime() < deadline; visited++) {
+            Stripe stripe = stripes[expireCursor];
+            expireCursor = (expireCursor + 1) & (STRIPES - 1);
+            if (stripe.volatileEntries.isEmpty()) {
+                continue;
+            }
+            stripe.lock();
+            try {
+                int expired;
+                do {
+                    ArrayList<Entry> index = stripe.volatileEntries;
+                    long now = System.currentTimeMillis();
+                    expired = 0;
+                    for (int i = 0; i < EXPIRE_SAMPLE_SIZE && !index.isEmpty(); i++) {
+                        Entry entry = index.get(random.nextInt(index.size()));
+                        if (now >= entry.expireAt) {
+                            expire(entry);
+                            expired++;
+                        }
+                    }
+                } while (expired * 100 > EXPIRE_SAMPLE_SIZE * EXPIRE_REPEAT_PERCENT && System.nanoTime() < deadline);
+            } finally {
+                stripe.unlock();
+            }
+        }
+        expireCycleMillis.addAndGet((System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Feeds every key as of this instant to sink. Keys are visited in small batches under their
+    // stripes, so commands keep running in between; the epoch makes sure each key is seen as it was
+    // at the start. Only one snapshot can run at a time.
+    void snapshot(SnapshotSink sink) throws IOException {
+        long epoch;
+        lockAll();
+        try {
+            epoch = beginSnapshot();
+            sink.begin();
+        } finally {
+            unlockAll();
+        }
+
+        Map<String, Entry> remaining;
+        try {
+            Iterator<String> keys = data.keySet().iterator();
+            ArrayList<String> batch = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+            while (keys.hasNext()) {
+                batch.clear();
+                while (keys.hasNext() && batch.size() < SNAPSHOT_BATCH_SIZE) {
+                    batch.add(keys.next());
+                }
+                for (String key : batch) {
+                    Stripe stripe = stripes[stripe(key)];
+                    stripe.lock();
+                    try {
+                        Entry entry = snapshotEntry(key, epoch);
+                        if (entry != null) {
+                            sink.entry(key, entry.value, entry.expireAt);
+                        }
+                    } finally {
+                        stripe.unlock();
+                    }
+                }
+                sink.flush();
+            }
+        } finally {
+            lockAll();
+            try {
+                remaining = endSnapshot();
+            } finally {
+                unlockAll();
+            }
+        }
+        // Keys deleted or replaced before the walk reached them
+        for (Entry entry : remaining.values()) {
+            sink.entry(entry.key, entry.value, entry.expireAt);
+            sink.flush();
+        }
+    }
+
+    private void preserve(Entry entry) {
+        if (snapshotEpoch != 0 && entry.version <= snapshotEpoch && entry.savedEpoch != snapshotEpoch) {
+            Entry copy = new Entry(entry.key, copyOf(entry.value), entry.version);
+            copy.expireAt = entry.expireAt;
+            preImages.putIfAbsent(entry.key, copy);
+        }
+    }
+
+    // String values are immutable, lists and streams are changed in place
+    private static Object copyOf(Object value) {
+        if (value instanceof QuickList list) {
+            return list.copy();
+        }
+        return value instanceof Stream stream ? stream.copy() : value;
+    }
+
+    // Snapshot protocol behind snapshot(). Beginning and ending need every stripe, reading an entry
+    // needs the key's stripe.
+
+    private long beginSnapshot() {
+        snapshotEpoch = version.incrementAndGet();
+        return snapshotEpoch;
+    }
+
+    // Entry of key as of the snapshot, or null if it did not exist then or was already written
+    private Entry snapshotEntry(String key, long epoch) {
+        Entry entry = data.get(key);
+        if (entry != null && entry.version <= epoch) {
+            entry.savedEpoch = epoch;
+            return entry;
+        }
+        return preImages.remove(key);
+    }
+
+    // Ends the snapshot and hands over the pre-images of keys the saver never reached
+    private Map<String, Entry> endSnapshot() {
+        Map<String, Entry> remaining = preImages;
+        snapshotEpoch = 0;
+        preImages = new ConcurrentHashMap<>();
+        return remaining;
+    }
+}
@@ -0,0 +1,202 @@
+package io.codecrafters.redis;
+
+// Commands that work on keys of any type: deletion, existence, expiry and introspection
+public class KeyspaceCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("del", -2, Command.WRITE, 1, -1, 1, KeyspaceCommands::del));
+        table.register(new Command("exists", -2, Command.READONLY | Command.FAST, 1, -1, 1, KeyspaceCommands::exists));
+        table.register(new Command("expire", -3, Command.WRITE | Command.FAST, 1, 1, 1, KeyspaceCommands::expire));
+        table.register(new Command("pexpire", -3, Command.WRITE | Command.FAST, 1, 1, 1, KeyspaceCommands::pexpire));
+        table.register(new Command("expireat", -3, Command.WRITE | Command.FAST, 1, 1, 1, KeyspaceCommands::expireat));
+        table.register(new Command("pexpireat", -3, Command.WRITE | Command.FAST, 1, 1, 1, KeyspaceCommands::pexpireat));
+        table.register(new Command("ttl", 2, Command.READONLY | Command.FAST, 1, 1, 1, KeyspaceCommands::ttl));
+        table.register(new Command("pttl", 2, Command.READONLY | Command.FAST, 1, 1, 1, KeyspaceCommands::pttl));
+        table.register(new Command("expiretime", 2, Command.READONLY | Command.FAST, 1, 1, 1, KeyspaceCommands::expiretime));
+        table.register(new Command("pexpiretime", 2, Command.READONLY | Command.FAST, 1, 1, 1, KeyspaceCommands::pexpiretime));
+        table.register(new Command("persist", 2, Command.WRITE | Command.FAST, 1, 1, 1, KeyspaceCommands::persist));
+        table.register(new Command("object", -2, Command.READONLY, 2, 2, 1, KeyspaceCommands::object));
+    }
+
+    static void del(Client client, RespCommand command) {
+        int deleted = 0;
+        for (int i = 1; i < command.argc; i++) {
+            String key = command.string(i);
+            if (Main.keyspace.lookup(key) != null) {
+                Main.keyspace.remove(key);
+                Main.signalModifiedKey(client, key);
+                deleted++;
+            }
+        }
+        client.writeInteger(deleted);
+    }
+
+    static void exists(Client client, RespCommand command) {
+        int found = 0;
+        for (int i = 1; i < command.argc; i++) {
+            if (Main.keyspace.lookup(command.string(i)) != null) {
+                found++;
+            }
+        }
+        client.writeInteger(found);
+    }
+
+    static void expire(Client client, RespCommand command) {
+        expireGeneric(client, command, System.currentTimeMillis(), 1000);
+    }
+
+    static void pexpire(Client client, RespCommand command) {
+        expireGeneric(client, command, System.currentTimeMillis(), 1);
+    }
+
+    static void expireat(Client client, RespCommand command) {
+        expireGeneric(client, command, 0, 1000);
+    }
+
+    static void pexpireat(Client client, RespCommand command) {
+        expireGeneric(client, command, 0, 1);
+    }
+
+    // Replicates as PEXPIREAT, or DEL when the deadline is already in the past, so replicas and the
+    // AOF end up with the same absolute deadline whenever they apply it
+    private static void expireGeneric(Client client, RespCommand command, long base, long unit) {
+        String key = command.string(1);
+        long when;
+        try {
+            when = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        boolean nx = false, xx = false, gt = false, lt = false;
+        for (int i = 3; i < command.argc; i++) {
+            if (command.equalsIgnoreCase(i, "nx")) {
+                nx = true;
+            } else if (command.equalsIgnoreCase(i, "xx")) {
+                xx = true;
+            } else if (command.equalsIgnoreCase(i, "gt")) {
+                gt = true;
+            } else if (command.equalsIgnoreCase(i, "lt")) {
+                lt = true;
+            } else {
+                client.writeError("ERR Unsupported option " + command.string(i));
+                return;
+            }
+        }
+        if (nx && (xx || gt || lt)) {
+            client.writeError("ERR NX and XX, GT or LT options at the same time are not compatible");
+            return;
+        }
+        if (gt && lt) {
+            client.writeError("ERR GT and LT options at the same time are not compatible");
+            return;
+        }
+        try {
+            when = Math.addExact(Math.multiplyExact(when, unit), base);
+        } catch (ArithmeticException e) {
+            client.writeError("ERR invalid expire time in '" + command.string(0).toLowerCase() + "' command");
+            return;
+        }
+
+        Keyspace.Entry entry = Main.keyspace.lookup(key);
+        if (entry == null) {
+            client.writeInteger(0);
+            return;
+        }
+        long current = entry.expireAt;
+        boolean hasExpire = current != Keyspace.NO_EXPIRE;
+        // A key without a deadline counts as never expiring for GT and LT
+        if ((nx && hasExpire) || (xx && !hasExpire) || (gt && (!hasExpire || when <= current)) || (lt && hasExpire && when >= current)) {
+            client.writeInteger(0);
+            return;
+        }
+        if (when <= System.currentTimeMillis() && Main.serverRole.equals("master")) {
+            Main.keyspace.remove(key);
+            client.propagateAs = RespCommand.of("DEL", key);
+        } else {
+            Main.keyspace.setExpire(key, when);
+            client.propagateAs = RespCommand.of("PEXPIREAT", key, String.valueOf(when));
+        }
+        Main.signalModifiedKey(client, key);
+        client.writeInteger(1);
+    }
+
+    static void ttl(Client client, RespCommand command) {
+        ttlGeneric(client, command, false, false);
+    }
+
+    static void pttl(Client client, RespCommand command) {
+        ttlGeneric(client, command, true, false);
+    }
+
+    static void expiretime(Client client, RespCommand command) {
+        ttlGeneric(client, command, false, true);
+    }
+
+    static void pexpiretime(Client client, RespCommand command) {
+        ttlGeneric(client, command, true, true);
+    }
+
+    // -2 for a missing key, -1 for a key without a deadline
+    private static void ttlGeneric(Client client, RespCommand command, boolean millis, boolean absolute) {
+        Keyspace.Entry entry = Main.keyspace.lookup(command.string(1));
+        if (entry == null) {
+            client.writeInteger(-2);
+            return;
+        }
+        if (entry.expireAt == Keyspace.NO_EXPIRE) {
+            client.writeInteger(-1);
+            return;
+        }
+        long value = absolute ? entry.expireAt : Math.max(0, entry.expireAt - System.currentTimeMillis());
+        if (!millis) {
+            value = absolute ? value / 1000 : (value + 500) / 1000;
+        }
+        client.writeInteger(value);
+    }
+
+    static void persist(Client client, RespCommand command) {
+        String key = command.string(1);
+        if (Main.keyspace.getExpire(key) == Keyspace.NO_EXPIRE) {
+            client.writeInteger(0);
+            return;
+        }
+        Main.keyspace.setExpire(key, Keyspace.NO_EXPIRE);
+        Main.signalModifiedKey(client, key);
+        client.writeInteger(1);
+    }
+
+    // OBJECT ENCODING | IDLETIME | FREQ key. Encodings are int, embstr or raw for strings, as Redis
+    // names them. IDLETIME needs an LRU policy and FREQ an LFU one, since the entry keeps only one.
+    static void object(Client client, RespCommand command) {
+        boolean encoding = command.equalsIgnoreCase(1, "encoding");
+        boolean idletime = command.equalsIgnoreCase(1, "idletime");
+        boolean freq = command.equalsIgnoreCase(1, "freq");
+        if (!(encoding || idletime || freq) || command.argc != 3) {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for 'object' command");
+            return;
+        }
+        Keyspace.Entry entry = Main.keyspace.peek(command.string(2));
+        Object value = entry == null ? null : entry.value;
+        if (value == null) {
+            client.writeNull();
+        } else if (idletime) {
+            if (Eviction.LFU) {
+                client.writeError("ERR An LFU maxmemory policy is selected, idle time not tracked. Please note that when switching between policies at runtime LRU and LFU data will take some time to adjust.");
+            } else {
+                client.writeInteger(Eviction.idleMillis(entry) / 1000);
+            }
+        } else if (freq) {
+            if (!Eviction.LFU) {
+                client.writeError("ERR An LFU maxmemory policy is not selected, access frequency not tracked. Please note that when switching between policies at runtime LRU and LFU data will take some time to adjust.");
+            } else {
+                client.writeInteger(Eviction.lfuDecrement(entry));
+            }
+        } else if (value instanceof QuickList) {
+            client.writeBulk("quicklist");
+        } else if (value instanceof Stream) {
+            client.writeBulk("stream");
+        } else {
+            client.writeBulk(StringValue.encoding(value));
+        }
+    }
+}
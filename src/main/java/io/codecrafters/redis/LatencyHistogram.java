@@ -0,0 +1,106 @@
+package io.codecrafters.redis;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Command latencies in nanoseconds, bucketed the way HdrHistogram does: values below 16 get a bucket
+// each, and every power of two above that is split into 16 buckets, so a reported value is within
+// 1/16 of the real one. Recording is one array increment, with no allocation or locking, so it can
+// sit on the dispatch path of every command.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // 2^46 ns is about 19 hours; anything slower lands in the last bucket
+    private static final int MAX_EXPONENT = 46;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void record(long nanos) {
+        counts.incrementAndGet(index(nanos));
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    private static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index >>> SUB_BITS) + SUB_BITS - 1;
+        return (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << (exponent - SUB_BITS);
+    }
+
+    private static long highestValue(int index) {
+        return index == BUCKETS - 1 ? Long.MAX_VALUE : lowestValue(index + 1) - 1;
+    }
+
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // The highest value of the bucket holding the given percentile, in nanoseconds, like HdrHistogram's
+    // valueAtPercentile; 0 when nothing was recorded
+    long valueAtPercentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(BUCKETS - 1);
+    }
+
+    // Cumulative counts at 1, 2, 4, ... microseconds, up to the first bound that covers every call,
+    // as LATENCY HISTOGRAM reports them: even entries are bounds, odd entries counts
+    long[] cumulativeMicros() {
+        long total = count();
+        long[] bounds = new long[2 * 64];
+        int n = 0;
+        long seen = 0;
+        int i = 0;
+        for (long micros = 1; n < bounds.length && (seen < total || n == 0); micros <<= 1) {
+            long limit = micros * 1000;
+            while (i < BUCKETS && highestValue(i) <= limit) {
+                seen += counts.get(i++);
+            }
+            bounds[n++] = micros;
+            bounds[n++] = seen;
+            if (i == BUCKETS) {
+                break;
+            }
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+
+    // Adds another histogram's counts to this one, e.g. to combine histograms kept per thread
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+}
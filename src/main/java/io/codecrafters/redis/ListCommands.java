@@ -0,0 +1,331 @@
+package io.codecrafters.redis;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+public class ListCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("rpush", -3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, ListCommands::rpush));
+        table.register(new Command("lpush", -3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, ListCommands::lpush));
+        table.register(new Command("lrange", 4, Command.READONLY, 1, 1, 1, ListCommands::lrange));
+        table.register(new Command("llen", 2, Command.READONLY | Command.FAST, 1, 1, 1, ListCommands::llen));
+        table.register(new Command("lindex", 3, Command.READONLY, 1, 1, 1, ListCommands::lindex));
+        table.register(new Command("lset", 4, Command.WRITE | Command.DENYOOM, 1, 1, 1, ListCommands::lset));
+        table.register(new Command("ltrim", 4, Command.WRITE, 1, 1, 1, ListCommands::ltrim));
+        table.register(new Command("lpop", -2, Command.WRITE | Command.FAST, 1, 1, 1, ListCommands::lpop));
+        table.register(new Command("rpop", -2, Command.WRITE | Command.FAST, 1, 1, 1, ListCommands::rpop));
+        table.register(new Command("lmove", 5, Command.WRITE | Command.DENYOOM, 1, 2, 1, ListCommands::lmove));
+        table.register(new Command("blpop", -3, Command.WRITE | Command.BLOCKING, 1, -2, 1, ListCommands::blpop));
+        table.register(new Command("brpop", -3, Command.WRITE | Command.BLOCKING, 1, -2, 1, ListCommands::brpop));
+        table.register(new Command("blmove", 6, Command.WRITE | Command.DENYOOM | Command.BLOCKING, 1, 2, 1, ListCommands::blmove));
+    }
+
+    static void rpush(Client client, RespCommand command) {
+        String key = command.string(1);
+        QuickList list = Main.keyspace.getListForWrite(key, true);
+        for (int i = 2; i < command.argc; i++) {
+            list.pushTail(command.string(i));
+        }
+        Main.signalModifiedKey(client, key);
+        Main.signalKeyAsReady(client, key);
+        client.writeInteger(list.size());
+    }
+
+    static void lpush(Client client, RespCommand command) {
+        String key = command.string(1);
+        QuickList list = Main.keyspace.getListForWrite(key, true);
+        for (int i = 2; i < command.argc; i++) {
+            list.pushHead(command.string(i));
+        }
+        Main.signalModifiedKey(client, key);
+        Main.signalKeyAsReady(client, key);
+        client.writeInteger(list.size());
+    }
+
+    static void lrange(Client client, RespCommand command) {
+        long startRange, endRange;
+        try {
+            startRange = command.parseLong(2);
+            endRange = command.parseLong(3);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        QuickList list = Main.keyspace.getList(command.string(1));
+        long size = list == null ? 0 : list.size();
+        if (startRange < 0) startRange = Math.max(0, size + startRange);
+        if (endRange < 0) endRange = size + endRange;
+        endRange = Math.min(endRange, size - 1);
+        if (startRange > endRange) {
+            client.writeArrayHeader(0);
+            return;
+        }
+        client.writeArrayHeader((int) (endRange - startRange + 1));
+        Iterator<String> elements = list.iterator(startRange);
+        for (long i = startRange; i <= endRange; i++) {
+            client.writeBulk(elements.next());
+        }
+    }
+
+    static void llen(Client client, RespCommand command) {
+        QuickList list = Main.keyspace.getList(command.string(1));
+        client.writeInteger(list == null ? 0 : list.size());
+    }
+
+    static void lindex(Client client, RespCommand command) {
+        long index;
+        try {
+            index = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        QuickList list = Main.keyspace.getList(command.string(1));
+        if (list != null && index < 0) {
+            index += list.size();
+        }
+        if (list == null || index < 0 || index >= list.size()) {
+            client.writeNull();
+            return;
+        }
+        client.writeBulk(list.get(index));
+    }
+
+    static void lset(Client client, RespCommand command) {
+        String key = command.string(1);
+        long index;
+        try {
+            index = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        QuickList list = Main.keyspace.getListForWrite(key, false);
+        if (list == null) {
+            client.writeError("ERR no such key");
+            return;
+        }
+        if (index < 0) {
+            index += list.size();
+        }
+        if (index < 0 || index >= list.size()) {
+            client.writeError("ERR index out of range");
+            return;
+        }
+        list.set(index, command.string(3));
+        Main.signalModifiedKey(client, key);
+        client.writeSimple("OK");
+    }
+
+    // Keeps [start, stop]; out of range bounds are clamped and an empty range deletes the key
+    static void ltrim(Client client, RespCommand command) {
+        String key = command.string(1);
+        long start, stop;
+        try {
+            start = command.parseLong(2);
+            stop = command.parseLong(3);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        QuickList list = Main.keyspace.getListForWrite(key, false);
+        if (list == null) {
+            client.writeSimple("OK");
+            return;
+        }
+        long size = list.size();
+        if (start < 0) start = Math.max(0, size + start);
+        if (stop < 0) stop = size + stop;
+        if (start > stop || start >= size) {
+            Main.keyspace.remove(key);
+        } else {
+            stop = Math.min(stop, size - 1);
+            list.trimHead(start);
+            list.trimTail(size - 1 - stop);
+        }
+        Main.signalModifiedKey(client, key);
+        client.writeSimple("OK");
+    }
+
+    static void lpop(Client client, RespCommand command) {
+        pop(client, command, true);
+    }
+
+    static void rpop(Client client, RespCommand command) {
+        pop(client, command, false);
+    }
+
+    private static void pop(Client client, RespCommand command, boolean left) {
+        String key = command.string(1);
+        long count = 1;
+        if (command.argc == 3) {
+            try {
+                count = command.parseLong(2);
+            } catch (NumberFormatException e) {
+                count = -1;
+            }
+            if (count < 0) {
+                client.writeError("ERR value is out of range, must be positive");
+                return;
+            }
+        } else if (command.argc > 3) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        QuickList list = Main.keyspace.getListForWrite(key, false);
+        if (list == null) {
+            if (command.argc == 2) {
+                client.writeNull();
+            } else {
+                client.writeNullArray();
+            }
+            return;
+        }
+        if (command.argc == 2) {
+            client.writeBulk(popElement(key, left));
+        } else {
+            int popped = (int) Math.min(count, list.size());
+            client.writeArrayHeader(popped);
+            for (int i = 0; i < popped; i++) {
+                client.writeBulk(popElement(key, left));
+            }
+            // LPOP key 0 changes nothing, so there is nothing to propagate or invalidate
+            if (popped == 0) {
+                return;
+            }
+        }
+        Main.signalModifiedKey(client, key);
+    }
+
+    // LMOVE source destination LEFT | RIGHT LEFT | RIGHT
+    static void lmove(Client client, RespCommand command) {
+        String source = command.string(1);
+        String destination = command.string(2);
+        int fromLeft = parseSide(command, 3);
+        int toLeft = parseSide(command, 4);
+        if (fromLeft < 0 || toLeft < 0) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        QuickList list = Main.keyspace.getList(source);
+        Main.keyspace.getList(destination);
+        if (list == null) {
+            client.writeNull();
+            return;
+        }
+        client.writeBulk(moveElement(source, destination, fromLeft == 1, toLeft == 1));
+        Main.signalModifiedKey(client, source);
+        Main.signalModifiedKey(client, destination);
+        Main.signalKeyAsReady(client, destination);
+    }
+
+    // 1 for LEFT, 0 for RIGHT, -1 for anything else
+    private static int parseSide(RespCommand command, int index) {
+        if (command.equalsIgnoreCase(index, "left")) {
+            return 1;
+        }
+        return command.equalsIgnoreCase(index, "right") ? 0 : -1;
+    }
+
+    // Removes and returns an end element of a non-empty list, deleting the key once it is empty
+    static String popElement(String key, boolean left) {
+        QuickList list = Main.keyspace.getListForWrite(key, false);
+        String element = left ? list.popHead() : list.popTail();
+        if (list.isEmpty()) {
+            Main.keyspace.remove(key);
+        }
+        return element;
+    }
+
+    // Pops from a non-empty source and pushes onto destination, which must be a list or missing
+    static String moveElement(String source, String destination, boolean fromLeft, boolean toLeft) {
+        String element = popElement(source, fromLeft);
+        QuickList target = Main.keyspace.getListForWrite(destination, true);
+        if (toLeft) {
+            target.pushHead(element);
+        } else {
+            target.pushTail(element);
+        }
+        return element;
+    }
+
+    static void blpop(Client client, RespCommand command) {
+        blockingPop(client, command, true);
+    }
+
+    static void brpop(Client client, RespCommand command) {
+        blockingPop(client, command, false);
+    }
+
+    // Pops from the first non-empty key, otherwise parks the client in Blocking until a push to any of
+    // them hands it an element or the timeout passes. Replicates as the plain pop it turned into.
+    private static void blockingPop(Client client, RespCommand command, boolean left) {
+        long timeoutAt = Blocking.parseTimeout(client, command, command.argc - 1);
+        if (timeoutAt < 0) {
+            return;
+        }
+        for (int i = 1; i < command.argc - 1; i++) {
+            String key = command.string(i);
+            QuickList list = Main.keyspace.getList(key);
+            if (list != null && !list.isEmpty()) {
+                String element = popElement(key, left);
+                Main.signalModifiedKey(client, key);
+                client.propagateAs = RespCommand.of(left ? "LPOP" : "RPOP", key);
+                client.writeArrayHeader(2);
+                client.writeBulk(key);
+                client.writeBulk(element);
+                return;
+            }
+        }
+        if (client.executingMulti) {
+            client.writeNullArray();
+            return;
+        }
+        LinkedHashSet<String> keys = new LinkedHashSet<>();
+        for (int i = 1; i < command.argc - 1; i++) {
+            keys.add(command.string(i));
+        }
+        Blocking.block(client, command, keys.toArray(new String[0]), timeoutAt, left, null, false);
+    }
+
+    // BLMOVE source destination LEFT | RIGHT LEFT | RIGHT timeout
+    static void blmove(Client client, RespCommand command) {
+        String source = command.string(1);
+        String destination = command.string(2);
+        int fromLeft = parseSide(command, 3);
+        int toLeft = parseSide(command, 4);
+        if (fromLeft < 0 || toLeft < 0) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        // Re-run by Blocking while still blocked, when the destination's stripe was busy at the push
+        long blockId = client.blockState.get();
+        if (blockId != 0) {
+            QuickList list = Main.keyspace.getList(source);
+            if (list == null || list.isEmpty() || !client.blockState.compareAndSet(blockId, 0)) {
+                return;
+            }
+            Blocking.unblock(client);
+        } else {
+            long timeoutAt = Blocking.parseTimeout(client, command, 5);
+            if (timeoutAt < 0) {
+                return;
+            }
+            QuickList list = Main.keyspace.getList(source);
+            Main.keyspace.getList(destination);
+            if (list == null || list.isEmpty()) {
+                if (client.executingMulti) {
+                    client.writeNull();
+                } else {
+                    Blocking.block(client, command, new String[]{source}, timeoutAt, fromLeft == 1, destination, toLeft == 1);
+                }
+                return;
+            }
+        }
+        client.writeBulk(moveElement(source, destination, fromLeft == 1, toLeft == 1));
+        Main.signalModifiedKey(client, source);
+        Main.signalModifiedKey(client, destination);
+        Main.signalKeyAsReady(client, destination);
+        client.propagateAs = RespCommand.of("LMOVE", source, destination, command.string(3), command.string(4));
+    }
+}
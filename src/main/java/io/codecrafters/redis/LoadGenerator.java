@@ -0,0 +1,697 @@
+package io.codecrafters.redis;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+// A load generator in the spirit of redis-benchmark, shipped in the server jar:
+//
+//   java -jar codecrafters-redis.jar benchmark [options]
+//
+// Each connection runs on its own thread with blocking I/O and sends -P commands at a time. Every
+// reply is timed from the moment its batch was written, so a pipelined command's latency includes
+// the commands queued ahead of it, as redis-benchmark reports it. With --replay, the connections
+// send the commands of a file instead: RESP frames (an AOF, a capture) or inline commands, or JSON
+// lines holding an array of arguments or an object with an "args" array or a "command" string.
+public class LoadGenerator {
+    static final List<String> TESTS = List.of("set", "get", "incr", "rpush", "lpop", "blpop", "xadd");
+    static final double[] PERCENTILES = {50, 99, 99.9};
+
+    static final String USAGE = String.join("\n",
+            "Usage: benchmark [options]",
+            "  -h <host>               server host (127.0.0.1)",
+            "  -p <port>               server port (6379)",
+            "  -c <clients>            parallel connections (50)",
+            "  -n <requests>           requests per test (100000; with --replay, the file once per connection)",
+            "  -P <pipeline>           commands sent at a time per connection (1)",
+            "  -t <tests>              comma-separated, of " + String.join(",", TESTS) + " (all)",
+            "  -r <keys>               key space size (100000)",
+            "  -d <bytes>              value size, or the largest with --value-dist (3)",
+            "  --key-dist <dist>       uniform or zipf (uniform)",
+            "  --value-dist <dist>     fixed, uniform or zipf, zipf favouring small values (fixed)",
+            "  --zipf-theta <theta>    skew of zipf, 0 < theta < 1 (0.99)",
+            "  --replay <file>         send the commands of the file instead of the tests",
+            "  --seed <seed>           random seed (fixed, so runs draw the same keys)",
+            "  -q                      one line per test");
+
+    String host = "127.0.0.1";
+    int port = 6379;
+    int clients = 50;
+    long requests = -1;
+    int pipeline = 1;
+    List<String> tests = TESTS;
+    long keys = 100_000;
+    int valueSize = 3;
+    String keyDist = "uniform";
+    String valueDist = "fixed";
+    double zipfTheta = 0.99;
+    String replay;
+    long seed = 0x5eed;
+    boolean quiet = false;
+
+    Distribution keyDistribution;
+    Distribution valueDistribution;
+    byte[] value;
+
+    public static void main(String[] args) {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        try {
+            generator.run();
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-q")) {
+                quiet = true;
+                continue;
+            }
+            if (option.equals("--help")) {
+                throw new IllegalArgumentException("");
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            try {
+                switch (option) {
+                    case "-h" -> host = value;
+                    case "-p" -> port = Integer.parseInt(value);
+                    case "-c" -> clients = Integer.parseInt(value);
+                    case "-n" -> requests = Long.parseLong(value);
+                    case "-P" -> pipeline = Integer.parseInt(value);
+                    case "-t" -> tests = Arrays.asList(value.toLowerCase().split(","));
+                    case "-r" -> keys = Long.parseLong(value);
+                    case "-d" -> valueSize = Integer.parseInt(value);
+                    case "--key-dist" -> keyDist = value.toLowerCase();
+                    case "--value-dist" -> valueDist = value.toLowerCase();
+                    case "--zipf-theta" -> zipfTheta = Double.parseDouble(value);
+                    case "--replay" -> replay = value;
+                    case "--seed" -> seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + option + ": " + value);
+            }
+        }
+        if (clients < 1 || pipeline < 1 || keys < 1 || valueSize < 1 || requests < -1) {
+            throw new IllegalArgumentException("-c, -P, -r and -d must be positive, and -n not negative");
+        }
+        if (zipfTheta <= 0 || zipfTheta >= 1) {
+            throw new IllegalArgumentException("--zipf-theta must be between 0 and 1");
+        }
+        for (String test : tests) {
+            if (!TESTS.contains(test)) {
+                throw new IllegalArgumentException("Unknown test " + test);
+            }
+        }
+        keyDistribution = distribution(keyDist, keys, "--key-dist");
+        valueDistribution = valueDist.equals("fixed") ? random -> valueSize - 1 : distribution(valueDist, valueSize, "--value-dist");
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+    }
+
+    private Distribution distribution(String name, long items, String option) {
+        if (name.equals("uniform")) {
+            return random -> random.nextLong(items);
+        }
+        if (name.equals("zipf")) {
+            Zipf zipf = new Zipf(items, zipfTheta);
+            return random -> zipf.next(random.nextDouble());
+        }
+        throw new IllegalArgumentException("Unknown distribution for " + option + ": " + name);
+    }
+
+    void run() throws IOException, InterruptedException {
+        if (replay != null) {
+            List<byte[]> commands = load(Path.of(replay));
+            if (commands.isEmpty()) {
+                throw new IOException("No commands in " + replay);
+            }
+            long total = requests == -1 ? (long) commands.size() * clients : requests;
+            report("replay " + Path.of(replay).getFileName() + " (" + commands.size() + " commands)",
+                    run(total, null, connection -> connection.replay(commands)), total);
+            return;
+        }
+        long total = requests == -1 ? 100_000 : requests;
+        for (String test : tests) {
+            // BLPOP pops from a list of the connection's own, filled beforehand so it never blocks
+            Workload prepare = test.equals("blpop") ? connection -> connection.fill("blpop:" + connection.index) : null;
+            report(test.toUpperCase(), run(total, prepare, connection -> connection.test(test)), total);
+        }
+    }
+
+    // Per test: the connections, their histograms combined, the wall time and the errors seen
+    static final class Result {
+        final LatencyHistogram latency = new LatencyHistogram();
+        long nanos;
+        long errors;
+        String firstError;
+    }
+
+    interface Workload {
+        void run(Connection connection) throws IOException;
+    }
+
+    // Connects and prepares first, then starts every connection at once and times until the last one
+    // is done
+    private Result run(long total, Workload prepare, Workload workload) throws IOException, InterruptedException {
+        List<Connection> connections = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            long share = total / clients + (i < total % clients ? 1 : 0);
+            connections.add(new Connection(i, share, new SplittableRandom(seed + i)));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(clients);
+        IOException[] failure = new IOException[1];
+        for (Connection connection : connections) {
+            if (prepare != null) {
+                prepare.run(connection);
+            }
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    workload.run(connection);
+                } catch (IOException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "benchmark-" + connection.index);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        Result result = new Result();
+        result.nanos = System.nanoTime() - begin;
+        for (Connection connection : connections) {
+            connection.close();
+            result.latency.add(connection.latency);
+            result.errors += connection.errors;
+            if (result.firstError == null) {
+                result.firstError = connection.firstError;
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return result;
+    }
+
+    private void report(String name, Result result, long total) {
+        double seconds = result.nanos / 1e9;
+        double perSecond = total / seconds;
+        StringBuilder latencies = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            latencies.append(" p").append(Stats.formatPercentile(percentile)).append("=")
+                    .append(String.format("%.3f", result.latency.valueAtPercentile(percentile) / 1e6));
+        }
+        if (quiet) {
+            System.out.printf("%s: %.2f requests per second,%s msec%n", name, perSecond, latencies);
+        } else {
+            System.out.printf("====== %s ======%n", name);
+            System.out.printf("  %d requests completed in %.2f seconds%n", total, seconds);
+            System.out.printf("  %d parallel clients, pipeline %d%n", clients, pipeline);
+            if (replay == null) {
+                System.out.printf("  %s keys over %d, %s values of %d bytes%s%n", keyDist, keys, valueDist, valueSize,
+                        valueDist.equals("fixed") ? "" : " at most");
+            }
+            System.out.printf("  %.2f requests per second, %d errors%n", perSecond, result.errors);
+            System.out.printf("  latency in msec:%s max=%.3f%n%n", latencies, result.latency.valueAtPercentile(100) / 1e6);
+        }
+        if (result.firstError != null) {
+            System.out.println("  first error: " + result.firstError);
+        }
+    }
+
+    // One connection and its share of the requests
+    final class Connection {
+        final int index;
+        final long share;
+        final SplittableRandom random;
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        final ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+        final LatencyHistogram latency = new LatencyHistogram();
+        long errors;
+        String firstError;
+
+        Connection(int index, long share, SplittableRandom random) throws IOException {
+            this.index = index;
+            this.share = share;
+            this.random = random;
+            this.socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            this.in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            this.out = socket.getOutputStream();
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+
+        void test(String test) throws IOException {
+            long sent = 0;
+            while (sent < share) {
+                int count = (int) Math.min(pipeline, share - sent);
+                batch.reset();
+                for (int i = 0; i < count; i++) {
+                    append(test);
+                }
+                send(count);
+                sent += count;
+            }
+        }
+
+        void replay(List<byte[]> commands) throws IOException {
+            long sent = 0;
+            int next = 0;
+            while (sent < share) {
+                int count = (int) Math.min(pipeline, share - sent);
+                batch.reset();
+                for (int i = 0; i < count; i++) {
+                    batch.write(commands.get(next));
+                    next = (next + 1) % commands.size();
+                }
+                send(count);
+                sent += count;
+            }
+        }
+
+        // One element per request of this connection's share
+        void fill(String list) throws IOException {
+            for (long pushed = 0; pushed < share; pushed += 1000) {
+                int chunk = (int) Math.min(1000, share - pushed);
+                batch.reset();
+                for (int i = 0; i < chunk; i++) {
+                    header('*', 3);
+                    bulk("RPUSH");
+                    bulk(list);
+                    value();
+                }
+                batch.writeTo(out);
+                for (int i = 0; i < chunk; i++) {
+                    readReply();
+                }
+            }
+        }
+
+        private void send(int count) throws IOException {
+            long sentAt = System.nanoTime();
+            batch.writeTo(out);
+            for (int i = 0; i < count; i++) {
+                readReply();
+                latency.record(System.nanoTime() - sentAt);
+            }
+        }
+
+        private void append(String test) {
+            long key = keyDistribution.next(random);
+            switch (test) {
+                case "set" -> {
+                    header('*', 3);
+                    bulk("SET");
+                    bulk("key:" + key);
+                    value();
+                }
+                case "get" -> {
+                    header('*', 2);
+                    bulk("GET");
+                    bulk("key:" + key);
+                }
+                case "incr" -> {
+                    header('*', 2);
+                    bulk("INCR");
+                    bulk("counter:" + key);
+                }
+                case "rpush" -> {
+                    header('*', 3);
+                    bulk("RPUSH");
+                    bulk("list:" + key);
+                    value();
+                }
+                case "lpop" -> {
+                    header('*', 2);
+                    bulk("LPOP");
+                    bulk("list:" + key);
+                }
+                case "blpop" -> {
+                    header('*', 3);
+                    bulk("BLPOP");
+                    bulk("blpop:" + index);
+                    bulk("1");
+                }
+                case "xadd" -> {
+                    header('*', 5);
+                    bulk("XADD");
+                    bulk("stream:" + key);
+                    bulk("*");
+                    bulk("field");
+                    value();
+                }
+                default -> throw new IllegalArgumentException(test);
+            }
+        }
+
+        private void header(char type, long length) {
+            batch.write(type);
+            byte[] digits = Long.toString(length).getBytes(StandardCharsets.ISO_8859_1);
+            batch.write(digits, 0, digits.length);
+            batch.write('\r');
+            batch.write('\n');
+        }
+
+        private void bulk(String arg) {
+            byte[] bytes = arg.getBytes(StandardCharsets.ISO_8859_1);
+            bulk(bytes, bytes.length);
+        }
+
+        private void bulk(byte[] bytes, int length) {
+            header('$', length);
+            batch.write(bytes, 0, length);
+            batch.write('\r');
+            batch.write('\n');
+        }
+
+        private void value() {
+            bulk(value, (int) valueDistribution.next(random) + 1);
+        }
+
+        // Reads one reply whole, counting error replies, nested ones included
+        private void readReply() throws IOException {
+            int type = in.read();
+            if (type == -1) {
+                throw new IOException("Connection closed by the server");
+            }
+            String line = readLine();
+            switch (type) {
+                case '-' -> {
+                    errors++;
+                    if (firstError == null) {
+                        firstError = line;
+                    }
+                }
+                case '$' -> {
+                    long length = Long.parseLong(line);
+                    if (length >= 0) {
+                        in.skipNBytes(length + 2);
+                    }
+                }
+                case '*', '>', '~' -> {
+                    long length = Long.parseLong(line);
+                    for (long i = 0; i < length; i++) {
+                        readReply();
+                    }
+                }
+                case '%' -> {
+                    long length = Long.parseLong(line);
+                    for (long i = 0; i < 2 * length; i++) {
+                        readReply();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) {
+                    throw new IOException("Connection closed by the server");
+                }
+                line.append((char) b);
+            }
+            in.read();
+            return line.toString();
+        }
+    }
+
+    interface Distribution {
+        // A value in [0, items)
+        long next(SplittableRandom random);
+    }
+
+    // Zipfian ranks as YCSB draws them (Gray et al., "Quickly Generating Billion-Record Synthetic
+    // Databases"): rank 0 is the most frequent, and theta near 1 makes a few ranks take most draws
+    static final class Zipf {
+        final long items;
+        final double theta;
+        final double zetan;
+        final double alpha;
+        final double eta;
+
+        Zipf(long items, double theta) {
+            this.items = items;
+            this.theta = theta;
+            this.zetan = zeta(items, theta);
+            this.alpha = 1 / (1 - theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+        long next(double u) {
+            double uz = u * zetan;
+            if (uz < 1) {
+                return 0;
+            }
+            if (uz < 1 + Math.pow(0.5, theta)) {
+                return Math.min(1, items - 1);
+            }
+            return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+    }
+
+    // The commands of a replay file, each encoded as a RESP frame
+    static List<byte[]> load(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(".jsonl")) {
+            return loadJsonLines(file);
+        }
+        byte[] data = Files.readAllBytes(file);
+        if (data.length > 0 && data[data.length - 1] != '\n') {
+            // An inline command on the last line needs its newline to be complete
+            data = Arrays.copyOf(data, data.length + 1);
+            data[data.length - 1] = '\n';
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        RespParser parser = new RespParser();
+        List<byte[]> commands = new ArrayList<>();
+        RespCommand command;
+        while ((command = parser.parse(buffer)) != null) {
+            if (command.argc > 0) {
+                commands.add(Main.encode(command));
+            }
+        }
+        if (buffer.hasRemaining()) {
+            System.err.println("Ignoring " + buffer.remaining() + " bytes of an incomplete command at the end of " + file);
+        }
+        return commands;
+    }
+
+    private static List<byte[]> loadJsonLines(Path file) throws IOException {
+        List<byte[]> commands = new ArrayList<>();
+        int skipped = 0;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> args = null;
+            try {
+                args = argsOf(new Json(line).value());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                // Not JSON; counted with the lines that hold no command
+            }
+            if (args == null || args.isEmpty()) {
+                skipped++;
+                continue;
+            }
+            commands.add(Main.encode(RespCommand.of(args.toArray(new String[0]))));
+        }
+        if (skipped > 0) {
+            System.err.println("Skipped " + skipped + " lines of " + file + " without a command");
+        }
+        return commands;
+    }
+
+    // ["SET", "k", "v"], {"args": [...]} or {"command": "SET k v"}
+    @SuppressWarnings("unchecked")
+    private static List<String> argsOf(Object value) {
+        if (value instanceof Map<?, ?> object) {
+            if (object.get("args") instanceof List<?> list) {
+                value = list;
+            } else if (object.get("command") instanceof String command) {
+                return Arrays.asList(command.trim().split("\\s+"));
+            } else {
+                return null;
+            }
+        }
+        if (!(value instanceof List<?> list)) {
+            return null;
+        }
+        List<String> args = new ArrayList<>();
+        for (Object arg : (List<Object>) list) {
+            if (arg instanceof Map || arg instanceof List || arg == null) {
+                return null;
+            }
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    // Just enough JSON for replay lines. Numbers and literals are kept as their text, so an
+    // argument like 1.50 is sent as written.
+    static final class Json {
+        private final String text;
+        private int at;
+
+        Json(String text) {
+            this.text = text;
+        }
+
+        Object value() {
+            skipSpace();
+            if (at == text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            char c = text.charAt(at);
+            if (c == '{') {
+                at++;
+                Map<String, Object> object = new LinkedHashMap<>();
+                skipSpace();
+                if (peek() == '}') {
+                    at++;
+                    return object;
+                }
+                while (true) {
+                    skipSpace();
+                    String name = string();
+                    skipSpace();
+                    expect(':');
+                    object.put(name, value());
+                    skipSpace();
+                    if (peek() == ',') {
+                        at++;
+                    } else {
+                        expect('}');
+                        return object;
+                    }
+                }
+            }
+            if (c == '[') {
+                at++;
+                List<Object> array = new ArrayList<>();
+                skipSpace();
+                if (peek() == ']') {
+                    at++;
+                    return array;
+                }
+                while (true) {
+                    array.add(value());
+                    skipSpace();
+                    if (peek() == ',') {
+                        at++;
+                    } else {
+                        expect(']');
+                        return array;
+                    }
+                }
+            }
+            if (c == '"') {
+                return string();
+            }
+            int start = at;
+            while (at < text.length() && ",]} \t".indexOf(text.charAt(at)) == -1) {
+                at++;
+            }
+            String literal = text.substring(start, at);
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                if (at == text.length()) {
+                    throw new IllegalArgumentException("Unterminated JSON string");
+                }
+                char c = text.charAt(at++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = text.charAt(at++);
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'u' -> {
+                        value.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        at += 4;
+                    }
+                    default -> value.append(escaped);
+                }
+            }
+        }
+
+        private char peek() {
+            return at < text.length() ? text.charAt(at) : 0;
+        }
+
+        private void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected '" + c + "' at " + at + " of JSON");
+            }
+            at++;
+        }
+
+        private void skipSpace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+
+// LZF as used for compressed strings in RDB files
+public class Lzf {
+    static byte[] decompress(byte[] input, int outputLength) throws IOException {
+        byte[] output = new byte[outputLength];
+        int ip = 0;
+        int op = 0;
+        try {
+            while (ip < input.length) {
+                int ctrl = input[ip++] & 0xFF;
+                if (ctrl < 32) {
+                    // Literal run of ctrl + 1 bytes
+                    ctrl++;
+                    System.arraycopy(input, ip, output, op, ctrl);
+                    ip += ctrl;
+                    op += ctrl;
+                } else {
+                    // Back reference into the output produced so far
+                    int length = ctrl >> 5;
+                    int ref = op - ((ctrl & 0x1f) << 8) - 1;
+                    if (length == 7) {
+                        length += input[ip++] & 0xFF;
+                    }
+                    ref -= input[ip++] & 0xFF;
+                    length += 2;
+                    for (int i = 0; i < length; i++) {
+                        output[op++] = output[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZF data");
+        }
+        if (op != outputLength) {
+            throw new IOException("LZF length mismatch");
+        }
+        return output;
+    }
+}
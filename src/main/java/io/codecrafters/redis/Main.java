@@ -0,0 +1,511 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class Main {
+    // Replication offset of the stream processed from our master. Only the master link's loop
+    // advances it, but INFO and the cron's REPLCONF ACK read it from other threads.
+    static volatile long offset = 0;
+    static final Keyspace keyspace = new Keyspace();
+    static String serverRole = "master";
+    static EventLoop[] loops;
+    static final CommandTable commands = new CommandTable();
+    static final byte[] MULTI_FRAME = encode(RespCommand.of("MULTI"));
+    static final byte[] EXEC_FRAME = encode(RespCommand.of("EXEC"));
+    static final InstantaneousMetric expiredPerSecond = new InstantaneousMetric();
+    // Client whose command is running on this thread
+    static final ThreadLocal<Client> currentClient = new ThreadLocal<>();
+    static final ScheduledExecutorService cron = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "server-cron");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static void main(String[] args) {
+        // The same jar runs the load generator: benchmark [options]
+        if (args.length > 0 && args[0].equals("benchmark")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        System.out.println("Logs from your program will appear here!");
+        Config.parse(args);
+        registerCommands();
+        loadData();
+        ServerSocketChannel serverChannel = null;
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.bind(new InetSocketAddress(Config.getInt("port")));
+
+            loops = new EventLoop[Sharding.ENABLED ? Sharding.SHARDS : Math.max(1, Config.getInt("io-threads"))];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(i);
+                loops[i].start();
+            }
+            loops[0].listen(serverChannel);
+            cron.scheduleAtFixedRate(Main::serverCron, 100, 100, TimeUnit.MILLISECONDS);
+            cron.scheduleAtFixedRate(Persistence::cron, 1, 1, TimeUnit.SECONDS);
+            cron.scheduleAtFixedRate(Aof::cron, 1, 1, TimeUnit.SECONDS);
+            cron.scheduleAtFixedRate(Replication::cron, 1, 1, TimeUnit.SECONDS);
+
+            if (!Config.get("replicaof").isEmpty()) {
+                serverRole = "slave";
+                Replication.connectToMaster();
+            }
+        } catch (IOException e) {
+            System.out.println("Server error: " + e.getMessage());
+            if (serverChannel != null) {
+                try {
+                    serverChannel.close();
+                } catch (IOException ex) {
+                    System.out.println("Error closing server socket: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    // The append-only file is the more complete record, so it wins over the RDB file when enabled
+    static void loadData() {
+        boolean appendOnly = Config.get("appendonly").equalsIgnoreCase("yes");
+        if (appendOnly && Aof.configuredFile().exists()) {
+            if (!Aof.load(Aof.configuredFile())) {
+                System.exit(1);
+            }
+        } else {
+            RdbLoader.loadConfiguredFile();
+        }
+        if (appendOnly) {
+            try {
+                Aof.start();
+            } catch (IOException e) {
+                System.out.println("Can't open the append-only file: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    // Runs the replication handshake in blocking mode, then hands the link to an event loop. A
+    // replica that has been in sync asks to continue from its offset; otherwise, or if the master
+    // no longer has that part of the stream, it gets a full copy of the dataset and loads it first.
+    static void connectToMaster() throws IOException {
+        String[] address = Config.get("replicaof").split(" ");
+        SocketChannel masterChannel = SocketChannel.open(new InetSocketAddress(address[0], Integer.parseInt(address[1])));
+        ByteBuffer masterInput = ByteBuffer.allocate(16 * 1024);
+        masterInput.flip();
+
+        writeFully(masterChannel, RespCommand.of("PING"));
+        String reply = readLine(masterChannel, masterInput);
+        if (reply.equals("+PONG")) {
+            writeFully(masterChannel, RespCommand.of("REPLCONF", "listening-port", Config.get("port")));
+            reply = readLine(masterChannel, masterInput);
+        }
+        if (reply.equals("+OK")) {
+            writeFully(masterChannel, RespCommand.of("REPLCONF", "capa", "eof", "capa", "psync2"));
+            reply = readLine(masterChannel, masterInput);
+        }
+        if (!reply.equals("+OK")) {
+            masterChannel.close();
+            throw new IOException("Unexpected handshake reply: " + reply);
+        }
+        String replid = Replication.masterReplid;
+        if (replid.isEmpty()) {
+            writeFully(masterChannel, RespCommand.of("PSYNC", "?", "-1"));
+        } else {
+            writeFully(masterChannel, RespCommand.of("PSYNC", replid, String.valueOf(offset + 1)));
+        }
+        // +FULLRESYNC <replid> <offset>: the stream that follows the snapshot starts at offset.
+        // +CONTINUE [<replid>]: the stream picks up where ours left off.
+        String[] psync = readLine(masterChannel, masterInput).split(" ");
+        if (psync[0].equals("+CONTINUE")) {
+            if (psync.length == 2) {
+                Replication.masterReplid = psync[1];
+            }
+            System.out.println("Partial resynchronization with the master from offset " + offset);
+        } else if (psync[0].equals("+FULLRESYNC") && psync.length == 3) {
+            long start = System.nanoTime();
+            MasterInput rdb = new MasterInput(masterChannel, masterInput, readLine(masterChannel, masterInput));
+            long keys = RdbLoader.loadFromMaster(rdb);
+            rdb.finish();
+            Replication.masterReplid = psync[1];
+            offset = Long.parseLong(psync[2]);
+            System.out.println("Full resynchronization with the master: " + keys + " keys, " + rdb.bytesRead
+                    + " bytes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (Aof.instance != null) {
+                Aof.startRewrite();
+            }
+        } else {
+            masterChannel.close();
+            throw new IOException("Unexpected PSYNC reply: " + String.join(" ", psync));
+        }
+        loops[0].register(masterChannel, masterInput, true);
+    }
+
+    // The RDB payload of a full sync, read off the master link: first what is left in the handshake
+    // buffer, then the socket. The payload is either "$<length>" bytes long or, from a diskless
+    // master, runs until the random 40-byte mark announced as "$EOF:<mark>" shows up again.
+    static final class MasterInput extends InputStream {
+        static final int EOF_MARK_LENGTH = 40;
+
+        private final SocketChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] eofMark;
+        private final long length;
+        long bytesRead = 0;
+
+        MasterInput(SocketChannel channel, ByteBuffer buffer, String header) throws IOException {
+            this.channel = channel;
+            this.buffer = buffer;
+            if (header.startsWith("$EOF:") && header.length() == 5 + EOF_MARK_LENGTH) {
+                eofMark = header.substring(5).getBytes(StandardCharsets.ISO_8859_1);
+                length = -1;
+            } else if (header.startsWith("$")) {
+                eofMark = null;
+                length = Long.parseLong(header.substring(1));
+            } else {
+                throw new IOException("Bad RDB payload header: " + header);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                fill(channel, buffer);
+            }
+            bytesRead++;
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int from, int count) throws IOException {
+            if (count == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                fill(channel, buffer);
+            }
+            int n = Math.min(count, buffer.remaining());
+            buffer.get(target, from, n);
+            bytesRead += n;
+            return n;
+        }
+
+        // Consumes what follows the RDB's EOF opcode: the rest of a sized payload, or the checksum
+        // and the closing mark, which must match the one announced
+        void finish() throws IOException {
+            if (eofMark == null) {
+                while (bytesRead < length) {
+                    read();
+                }
+                return;
+            }
+            readNBytes(8);
+            if (!Arrays.equals(readNBytes(EOF_MARK_LENGTH), eofMark)) {
+                throw new IOException("RDB payload does not end with its EOF mark");
+            }
+        }
+    }
+
+    private static void writeFully(SocketChannel channel, RespCommand command) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(encode(command));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static String readLine(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (true) {
+            for (int i = buffer.position(); i + 1 < buffer.limit(); i++) {
+                if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n') {
+                    String line = new String(buffer.array(), buffer.position(), i - buffer.position(), StandardCharsets.UTF_8);
+                    buffer.position(i + 2);
+                    return line;
+                }
+            }
+            fill(channel, buffer);
+        }
+    }
+
+    private static void fill(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            throw new IOException("Handshake line too long");
+        }
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read == -1) {
+            throw new IOException("Master closed the connection");
+        }
+    }
+
+    static void registerCommands() {
+        KeyspaceCommands.register(commands);
+        StringCommands.register(commands);
+        ListCommands.register(commands);
+        StreamCommands.register(commands);
+        TransactionCommands.register(commands);
+        ReplicationCommands.register(commands);
+        ServerCommands.register(commands);
+        ClientCommands.register(commands);
+        PubSubCommands.register(commands);
+        ClusterCommands.register(commands);
+    }
+
+    public static void processCommand(Client client, RespCommand args) {
+        Command command = commands.lookup(args);
+        if (command == null) {
+            StringBuilder error = new StringBuilder("ERR unknown command '" + args.string(0) + "', with args beginning with: ");
+            for (int i = 1; i < args.argc; i++) {
+                error.append("'").append(args.string(i)).append("' ");
+            }
+            rejectCommand(client, null, error.toString());
+            return;
+        }
+        if (!command.checkArity(args.argc)) {
+            rejectCommand(client, command, "ERR wrong number of arguments for '" + command.name + "' command");
+            return;
+        }
+        // RESP3 tells pushes from replies, so it has no subscriber mode
+        if (client.subscriptions() > 0 && client.protocol < 3 && !command.has(Command.SUBSCRIBER)) {
+            rejectCommand(client, command, "ERR Can't execute '" + command.name
+                    + "': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT are allowed in this context");
+            return;
+        }
+        if (Eviction.MAXMEMORY > 0 && !client.master && !Eviction.makeRoom() && deniedOnOom(client, command)) {
+            rejectCommand(client, command, "OOM command not allowed when used memory > 'maxmemory'.");
+            return;
+        }
+        if (client.encounteredMulti && !command.has(Command.NO_QUEUE)) {
+            if (command.has(Command.NO_MULTI)) {
+                rejectCommand(client, command, "ERR Command not allowed inside a transaction");
+                return;
+            }
+            client.bufferedCommands.add(args.copy());
+            client.writeSimple("QUEUED");
+            return;
+        }
+        if (Sharding.ENABLED && Sharding.forward(client, command, args)) {
+            return;
+        }
+        call(client, command, args);
+    }
+
+    // A command refused before it ran; inside MULTI that dooms the transaction, as in Redis. command
+    // is null when the name was not found.
+    private static void rejectCommand(Client client, Command command, String error) {
+        if (command != null) {
+            command.rejectedCalls.increment();
+        }
+        if (client.encounteredMulti) {
+            client.multiError = true;
+        }
+        client.writeError(error);
+    }
+
+    // EXEC counts as the commands it would run
+    private static boolean deniedOnOom(Client client, Command command) {
+        if (command.has(Command.DENYOOM)) {
+            return true;
+        }
+        if (command.name.equals("exec") && client.encounteredMulti) {
+            for (RespCommand queued : client.bufferedCommands) {
+                if (commands.lookup(queued).has(Command.DENYOOM)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Runs a validated command, propagates it to replicas if it changed the dataset, and records
+    // how long it took. A command that blocks is recorded once, when it finally replies, with the
+    // time its runs took but not the time it waited; Blocking records those it serves or times out.
+    static void call(Client client, Command command, RespCommand args) {
+        long start = System.nanoTime();
+        long changesBefore = client.changes;
+        long errorsBefore = client.errorReplies;
+        client.lastCommand = command.name;
+        client.propagateAs = null;
+        int[] stripes = Keyspace.stripes(command, args);
+        Client caller = currentClient.get();
+        currentClient.set(client);
+        keyspace.lock(stripes);
+        try {
+            command.handler.execute(client, args);
+            if (client.tracking) {
+                Tracking.afterCommand(client, command, args);
+            }
+            // Still under the key locks, so the log and the replicas see the writes to a key in the
+            // order they ran
+            if (client.changes != changesBefore && command.has(Command.WRITE)) {
+                propagate(client, client.propagateAs != null ? client.propagateAs : args);
+            }
+            // Blocked clients are served after the push itself, so their pops follow it in the log.
+            // Inside EXEC they wait for the whole transaction.
+            if (!client.readyKeys.isEmpty() && !client.executingMulti) {
+                Blocking.serveReadyKeys(client);
+            }
+        } catch (Keyspace.WrongTypeException e) {
+            client.writeError(e.getMessage());
+        } finally {
+            if (!client.executingMulti) {
+                client.readyKeys.clear();
+            }
+            keyspace.unlock(stripes);
+            currentClient.set(caller);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (client.blockedOn == null) {
+            recordBlockedCall(client, command, args, elapsed, client.errorReplies != errorsBefore);
+        } else {
+            client.blockedNanos += elapsed;
+        }
+    }
+
+    // Records a command once it replied, adding the time it ran before it blocked, if it did
+    static void recordBlockedCall(Client client, Command command, RespCommand args, long elapsed, boolean failed) {
+        elapsed += client.blockedNanos;
+        client.blockedNanos = 0;
+        command.recordCall(elapsed, failed);
+        Slowlog.record(client, args, elapsed / 1000);
+    }
+
+    // Feeds the effect of a write to the AOF and the replication stream, encoded once for both.
+    // client is null for writes no command made.
+    static void propagate(Client client, RespCommand effect) {
+        boolean replicating = serverRole.equals("master") && Replication.active();
+        if (Aof.instance == null && !replicating) {
+            return;
+        }
+        byte[] frame = encode(effect);
+        if (client != null && client.executingMulti) {
+            client.multiEffects.add(frame);
+            return;
+        }
+        propagateFrame(client, frame, replicating);
+    }
+
+    // A transaction's effects go out as one contiguous MULTI ... EXEC block, so a replica or an AOF
+    // reload applies them atomically too. A single write needs no wrapping.
+    static void propagateTransaction(Client client) {
+        ArrayList<byte[]> effects = client.multiEffects;
+        if (effects.isEmpty()) {
+            return;
+        }
+        int length = 0;
+        for (byte[] effect : effects) {
+            length += effect.length;
+        }
+        boolean wrap = effects.size() > 1;
+        ByteBuffer block = ByteBuffer.allocate(length + (wrap ? MULTI_FRAME.length + EXEC_FRAME.length : 0));
+        if (wrap) {
+            block.put(MULTI_FRAME);
+        }
+        for (byte[] effect : effects) {
+            block.put(effect);
+        }
+        if (wrap) {
+            block.put(EXEC_FRAME);
+        }
+        effects.clear();
+        propagateFrame(client, block.array(), serverRole.equals("master") && Replication.active());
+    }
+
+    private static void propagateFrame(Client client, byte[] frame, boolean replicating) {
+        Aof.feed(client, frame);
+        if (replicating) {
+            long offset = Replication.feed(frame);
+            if (client != null) {
+                client.writeOffset = offset;
+            }
+        }
+    }
+
+    static byte[] encode(RespCommand args) {
+        StringBuilder frame = new StringBuilder("*" + args.argc + "\r\n");
+        for (int i = 0; i < args.argc; i++) {
+            frame.append("$").append(args.length(i)).append("\r\n").append(args.string(i)).append("\r\n");
+        }
+        return frame.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    // Runs every 100 ms; active expiry may use a quarter of that, as in Redis at hz 10
+    static void serverCron() {
+        try {
+            keyspace.activeExpireCycle(25_000);
+            expiredPerSecond.track(keyspace.expiredKeys.get());
+            Stats.opsPerSecond.track(Stats.commandsProcessed());
+        } catch (RuntimeException e) {
+            System.out.println("Server cron error: " + e);
+        }
+    }
+
+    // Deletions by expiry reach the AOF and replicas as DEL, so they never expire keys on their own
+    static void propagateExpired(String key) {
+        Persistence.dirty.incrementAndGet();
+        if (Tracking.active()) {
+            Tracking.invalidate(null, key);
+        }
+        propagateEffect(RespCommand.of("DEL", key));
+    }
+
+    // For writes made outside any client's command, e.g. serving a blocked client
+    static void propagateEffect(RespCommand effect) {
+        propagate(null, effect);
+    }
+
+    // Called by write handlers once per modified key; client is null for writes no command made
+    static void signalModifiedKey(Client client, String key) {
+        if (client != null) {
+            client.changes++;
+        }
+        Persistence.dirty.incrementAndGet();
+        if (Tracking.active()) {
+            Tracking.invalidate(client, key);
+        }
+    }
+
+    // Called by handlers that added elements to a list, which blocked clients may be waiting for
+    static void signalKeyAsReady(Client client, String key) {
+        if (Blocking.waiters.containsKey(key)) {
+            client.readyKeys.add(key);
+        }
+    }
+
+    // Parks the client on its event loop; the loop re-runs the handler until it unblocks the client.
+    // List commands use Blocking instead, which wakes clients when their keys get elements.
+    static void block(Client client, RespCommand args) {
+        if (client.blockedOn != null) {
+            return;
+        }
+        client.blockedOn = commands.lookup(args);
+        client.blockedArgs = args.copy();
+        client.blockedSince = System.currentTimeMillis();
+        client.loop.blockedClients.add(client);
+    }
+
+    static void unblock(Client client) {
+        client.blockedOn = null;
+        client.blockedArgs = null;
+    }
+
+    static boolean retryBlocked(Client client) {
+        call(client, client.blockedOn, client.blockedArgs);
+        if (client.blockedOn == null) {
+            client.flush();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+package io.codecrafters.redis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// SAVE/BGSAVE state and the "save <seconds> <changes>" rules, checked once a second by the cron thread.
+// The append-only file lives in Aof.
+public class Persistence {
+    // Retry delay after a failed background save, so a full disk does not turn into a save loop
+    static final long RETRY_DELAY_MILLIS = 5000;
+
+    static final AtomicLong dirty = new AtomicLong();
+    static volatile boolean saving = false;
+    static volatile boolean bgsaveInProgress = false;
+    static volatile boolean aofRewriteInProgress = false;
+    static volatile long bgsaveStartedAt = -1;
+    static volatile boolean lastBgsaveOk = true;
+    static volatile long lastBgsaveSeconds = -1;
+    static volatile long lastSaveTime = System.currentTimeMillis();
+    static volatile long lastSaveAttempt = 0;
+
+    static File rdbFile() {
+        return Config.dataFile("dbfilename");
+    }
+
+    // Runs a save on the calling thread. Returns false if another save is running or the save failed.
+    static boolean save() {
+        if (!startSave(false)) {
+            return false;
+        }
+        try {
+            return writeSnapshot();
+        } finally {
+            saving = false;
+        }
+    }
+
+    // Starts a background save, or returns false if a save is already running
+    static boolean bgsave() {
+        if (!startSave(true)) {
+            return false;
+        }
+        bgsaveStartedAt = System.currentTimeMillis();
+        Thread saver = new Thread(() -> {
+            try {
+                lastBgsaveOk = writeSnapshot();
+            } finally {
+                lastBgsaveSeconds = (System.currentTimeMillis() - bgsaveStartedAt) / 1000;
+                bgsaveStartedAt = -1;
+                bgsaveInProgress = false;
+                saving = false;
+            }
+        }, "bgsave");
+        saver.setDaemon(true);
+        saver.start();
+        return true;
+    }
+
+    // A full sync streams a snapshot to a replica's socket; INFO reports it as a background save
+    static boolean startReplicaSync() {
+        if (!startSave(true)) {
+            return false;
+        }
+        bgsaveStartedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    static void endReplicaSync() {
+        bgsaveStartedAt = -1;
+        bgsaveInProgress = false;
+        saving = false;
+    }
+
+    // Saves and AOF rewrites both walk a keyspace snapshot, and only one of those can run at a time
+    private static synchronized boolean startSave(boolean background) {
+        if (saving || aofRewriteInProgress) {
+            return false;
+        }
+        saving = true;
+        bgsaveInProgress = background;
+        return true;
+    }
+
+    static synchronized boolean startAofRewrite() {
+        if (saving || aofRewriteInProgress) {
+            return false;
+        }
+        aofRewriteInProgress = true;
+        return true;
+    }
+
+    private static boolean writeSnapshot() {
+        lastSaveAttempt = System.currentTimeMillis();
+        long dirtyBefore = dirty.get();
+        long start = System.nanoTime();
+        try {
+            RdbWriter writer = RdbWriter.saveToFile(Main.keyspace, rdbFile());
+            dirty.addAndGet(-dirtyBefore);
+            lastSaveTime = System.currentTimeMillis();
+            System.out.println("DB saved on disk: " + writer.keysWritten + " keys, " + writer.bytesWritten
+                    + " bytes in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException e) {
+            System.out.println("Failed saving the DB: " + e.getMessage());
+            return false;
+        }
+    }
+
+    static void cron() {
+        String rules = Config.get("save").trim();
+        if (rules.isEmpty() || saving || aofRewriteInProgress || dirty.get() == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!lastBgsaveOk && now - lastSaveAttempt < RETRY_DELAY_MILLIS) {
+            return;
+        }
+        String[] parts = rules.split("\\s+");
+        for (int i = 0; i + 1 < parts.length; i += 2) {
+            try {
+                long seconds = Long.parseLong(parts[i]);
+                long changes = Long.parseLong(parts[i + 1]);
+                if (dirty.get() >= changes && now - lastSaveTime >= seconds * 1000) {
+                    System.out.println(changes + " changes in " + seconds + " seconds. Saving...");
+                    bgsave();
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                return;
+            }
+        }
+    }
+
+    static String info() {
+        return "# Persistence\r\n"
+                + "rdb_changes_since_last_save:" + dirty.get() + "\r\n"
+                + "rdb_bgsave_in_progress:" + (bgsaveInProgress ? 1 : 0) + "\r\n"
+                + "rdb_last_save_time:" + lastSaveTime / 1000 + "\r\n"
+                + "rdb_last_bgsave_status:" + (lastBgsaveOk ? "ok" : "err") + "\r\n"
+                + "rdb_last_bgsave_time_sec:" + lastBgsaveSeconds + "\r\n"
+                + "rdb_current_bgsave_time_sec:" + (bgsaveStartedAt == -1 ? -1 : (System.currentTimeMillis() - bgsaveStartedAt) / 1000) + "\r\n"
+                + "rdb_last_load_keys_loaded:" + RdbLoader.lastLoadKeys + "\r\n"
+                + "rdb_last_load_time_ms:" + RdbLoader.lastLoadMillis + "\r\n"
+                + Aof.info();
+    }
+}
@@ -0,0 +1,270 @@
+package io.codecrafters.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Channel and pattern subscriptions. Subscribing is rare and publishing frequent, so subscriber
+// lists are copy-on-write and PUBLISH walks them without a lock. A message is encoded once and the
+// same frame is appended to every subscriber's output; subscribers on other event loops get it in
+// one task per loop, and every subscriber is flushed once at the end of its loop's turn.
+public class PubSub {
+    static final byte[] MESSAGE = "message".getBytes(StandardCharsets.ISO_8859_1);
+    static final byte[] PMESSAGE = "pmessage".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    // client-output-buffer-limit for the pubsub class: a subscriber is disconnected once its
+    // pending output passes the hard limit, or stays over the soft limit for that many seconds
+    static final long HARD_LIMIT;
+    static final long SOFT_LIMIT;
+    static final long SOFT_SECONDS;
+
+    static {
+        String[] limit = outputBufferLimit("pubsub");
+        HARD_LIMIT = Config.parseBytes(limit[0]);
+        SOFT_LIMIT = Config.parseBytes(limit[1]);
+        SOFT_SECONDS = Long.parseLong(limit[2]);
+    }
+
+    static final ConcurrentHashMap<String, CopyOnWriteArrayList<Client>> channels = new ConcurrentHashMap<>();
+    static final ConcurrentHashMap<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+    static final class Pattern {
+        final Glob glob;
+        final byte[] name;
+        final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+
+        Pattern(String pattern) {
+            this.glob = Glob.compile(pattern);
+            this.name = pattern.getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    // The "<hard> <soft> <seconds>" triple of a class in "normal 0 0 0 pubsub 32mb 8mb 60 ..."
+    private static String[] outputBufferLimit(String clientClass) {
+        String[] fields = Config.get("client-output-buffer-limit").trim().split("\\s+");
+        for (int i = 0; i + 3 < fields.length; i += 4) {
+            if (fields[i].equalsIgnoreCase(clientClass)) {
+                return new String[] {fields[i + 1], fields[i + 2], fields[i + 3]};
+            }
+        }
+        return new String[] {"0", "0", "0"};
+    }
+
+    // Each returns whether the client was not already (un)subscribed
+    static boolean subscribe(Client client, String channel) {
+        if (!client.channels.add(channel)) {
+            return false;
+        }
+        // Added inside compute, so a concurrent unsubscribe cannot drop the list it is added to
+        channels.compute(channel, (name, clients) -> {
+            clients = clients == null ? new CopyOnWriteArrayList<>() : clients;
+            clients.add(client);
+            return clients;
+        });
+        return true;
+    }
+
+    static boolean unsubscribe(Client client, String channel) {
+        if (!client.channels.remove(channel)) {
+            return false;
+        }
+        channels.computeIfPresent(channel, (name, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+        return true;
+    }
+
+    static boolean psubscribe(Client client, String pattern) {
+        if (!client.patterns.add(pattern)) {
+            return false;
+        }
+        patterns.compute(pattern, (name, subscription) -> {
+            subscription = subscription == null ? new Pattern(name) : subscription;
+            subscription.clients.add(client);
+            return subscription;
+        });
+        return true;
+    }
+
+    static boolean punsubscribe(Client client, String pattern) {
+        if (!client.patterns.remove(pattern)) {
+            return false;
+        }
+        patterns.computeIfPresent(pattern, (name, subscription) -> {
+            subscription.clients.remove(client);
+            return subscription.clients.isEmpty() ? null : subscription;
+        });
+        return true;
+    }
+
+    static void disconnect(Client client) {
+        for (String channel : new ArrayList<>(client.channels)) {
+            unsubscribe(client, channel);
+        }
+        for (String pattern : new ArrayList<>(client.patterns)) {
+            punsubscribe(client, pattern);
+        }
+    }
+
+    // Returns the number of clients the message was sent to
+    static int publish(String channel, byte[] message) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.ISO_8859_1);
+        EventLoop current = currentLoop();
+        Map<EventLoop, List<Client>> remote = null;
+        int receivers = 0;
+        CopyOnWriteArrayList<Client> subscribers = channels.get(channel);
+        if (subscribers != null) {
+            Message frames = new Message(MESSAGE, null, channelBytes, message);
+            for (Client subscriber : subscribers) {
+                remote = deliver(subscriber, frames, current, remote);
+                receivers++;
+            }
+            remote = sendRemote(remote, frames);
+        }
+        if (!patterns.isEmpty()) {
+            for (Pattern pattern : patterns.values()) {
+                if (!pattern.glob.matches(channel)) {
+                    continue;
+                }
+                Message frames = new Message(PMESSAGE, pattern.name, channelBytes, message);
+                for (Client subscriber : pattern.clients) {
+                    remote = deliver(subscriber, frames, current, remote);
+                    receivers++;
+                }
+                remote = sendRemote(remote, frames);
+            }
+        }
+        return receivers;
+    }
+
+    // One message, encoded at most once per protocol: an array for RESP2 subscribers and a push for
+    // RESP3 ones. Both are built on the publishing thread before any other loop sees them.
+    static final class Message {
+        final byte[] kind;
+        final byte[] pattern;
+        final byte[] channel;
+        final byte[] payload;
+        private byte[] array;
+        private byte[] push;
+
+        Message(byte[] kind, byte[] pattern, byte[] channel, byte[] payload) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.channel = channel;
+            this.payload = payload;
+        }
+
+        byte[] frameFor(Client client) {
+            if (client.protocol >= 3) {
+                return push != null ? push : (push = frame('>', kind, pattern, channel, payload));
+            }
+            return array != null ? array : (array = frame('*', kind, pattern, channel, payload));
+        }
+
+        // On another loop, where a client that switched protocol since gets whichever was built
+        byte[] builtFor(Client client) {
+            byte[] frame = client.protocol >= 3 ? push : array;
+            return frame != null ? frame : (push != null ? push : array);
+        }
+    }
+
+    private static EventLoop currentLoop() {
+        if (Main.loops != null) {
+            for (EventLoop loop : Main.loops) {
+                if (loop.inLoop()) {
+                    return loop;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Appends right away on this loop; collects subscribers of other loops to hand over per loop
+    private static Map<EventLoop, List<Client>> deliver(Client subscriber, Message frames, EventLoop current,
+            Map<EventLoop, List<Client>> remote) {
+        byte[] frame = frames.frameFor(subscriber);
+        if (subscriber.loop == current) {
+            subscriber.deliver(frame);
+            return remote;
+        }
+        if (remote == null) {
+            remote = new HashMap<>();
+        }
+        remote.computeIfAbsent(subscriber.loop, loop -> new ArrayList<>()).add(subscriber);
+        return remote;
+    }
+
+    private static Map<EventLoop, List<Client>> sendRemote(Map<EventLoop, List<Client>> remote, Message frames) {
+        if (remote == null) {
+            return null;
+        }
+        for (Map.Entry<EventLoop, List<Client>> batch : remote.entrySet()) {
+            List<Client> clients = batch.getValue();
+            batch.getKey().execute(() -> {
+                for (Client client : clients) {
+                    client.deliver(frames.builtFor(client));
+                }
+            });
+        }
+        return null;
+    }
+
+    // *3 message channel payload, or *4 pmessage pattern channel payload; > instead of * for RESP3
+    static byte[] frame(char type, byte[] kind, byte[] pattern, byte[] channel, byte[] message) {
+        int length = 16 + kind.length + channel.length + message.length + 3 * 16
+                + (pattern == null ? 0 : pattern.length + 16);
+        ByteBuffer frame = ByteBuffer.allocate(length);
+        frame.put((byte) type).put(Integer.toString(pattern == null ? 3 : 4).getBytes(StandardCharsets.ISO_8859_1)).put(CRLF);
+        bulk(frame, kind);
+        if (pattern != null) {
+            bulk(frame, pattern);
+        }
+        bulk(frame, channel);
+        bulk(frame, message);
+        return Arrays.copyOf(frame.array(), frame.position());
+    }
+
+    private static void bulk(ByteBuffer frame, byte[] value) {
+        frame.put((byte) '$').put(Integer.toString(value.length).getBytes(StandardCharsets.ISO_8859_1)).put(CRLF)
+                .put(value).put(CRLF);
+    }
+
+    // Whether a subscriber with this much pending output is too slow to keep
+    static boolean overLimit(Client client, long pending) {
+        if (HARD_LIMIT > 0 && pending > HARD_LIMIT) {
+            return true;
+        }
+        if (SOFT_LIMIT > 0 && pending > SOFT_LIMIT) {
+            long now = System.currentTimeMillis();
+            if (client.softLimitSince == 0) {
+                client.softLimitSince = now;
+            }
+            return now - client.softLimitSince >= SOFT_SECONDS * 1000;
+        }
+        client.softLimitSince = 0;
+        return false;
+    }
+
+    static List<String> activeChannels(Glob pattern) {
+        List<String> active = new ArrayList<>();
+        for (String channel : channels.keySet()) {
+            if (pattern == null || pattern.matches(channel)) {
+                active.add(channel);
+            }
+        }
+        return active;
+    }
+
+    static int subscribers(String channel) {
+        CopyOnWriteArrayList<Client> subscribers = channels.get(channel);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+}
@@ -0,0 +1,104 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PubSubCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("subscribe", -2, Command.SUBSCRIBER, 0, 0, 0, PubSubCommands::subscribe));
+        table.register(new Command("unsubscribe", -1, Command.SUBSCRIBER, 0, 0, 0, PubSubCommands::unsubscribe));
+        table.register(new Command("psubscribe", -2, Command.SUBSCRIBER, 0, 0, 0, PubSubCommands::psubscribe));
+        table.register(new Command("punsubscribe", -1, Command.SUBSCRIBER, 0, 0, 0, PubSubCommands::punsubscribe));
+        table.register(new Command("publish", 3, Command.FAST, 0, 0, 0, PubSubCommands::publish));
+        table.register(new Command("pubsub", -2, 0, 0, 0, 0, PubSubCommands::pubsub));
+    }
+
+    // Each channel or pattern gets its own confirmation, even one the client already had
+    static void subscribe(Client client, RespCommand command) {
+        for (int i = 1; i < command.argc; i++) {
+            String channel = command.string(i);
+            PubSub.subscribe(client, channel);
+            confirm(client, "subscribe", channel);
+        }
+    }
+
+    static void psubscribe(Client client, RespCommand command) {
+        for (int i = 1; i < command.argc; i++) {
+            String pattern = command.string(i);
+            PubSub.psubscribe(client, pattern);
+            confirm(client, "psubscribe", pattern);
+        }
+    }
+
+    // Without arguments, from everything subscribed to; with nothing subscribed, one reply with a
+    // null name
+    static void unsubscribe(Client client, RespCommand command) {
+        List<String> channels = names(client.channels, command);
+        for (String channel : channels) {
+            PubSub.unsubscribe(client, channel);
+            confirm(client, "unsubscribe", channel);
+        }
+    }
+
+    static void punsubscribe(Client client, RespCommand command) {
+        List<String> patterns = names(client.patterns, command);
+        for (String pattern : patterns) {
+            PubSub.punsubscribe(client, pattern);
+            confirm(client, "punsubscribe", pattern);
+        }
+    }
+
+    private static List<String> names(Iterable<String> subscribed, RespCommand command) {
+        List<String> names = new ArrayList<>();
+        if (command.argc > 1) {
+            for (int i = 1; i < command.argc; i++) {
+                names.add(command.string(i));
+            }
+        } else {
+            for (String name : subscribed) {
+                names.add(name);
+            }
+            if (names.isEmpty()) {
+                names.add(null);
+            }
+        }
+        return names;
+    }
+
+    private static void confirm(Client client, String kind, String name) {
+        client.writePushHeader(3);
+        client.writeBulk(kind);
+        if (name == null) {
+            client.writeNull();
+        } else {
+            client.writeBulk(name);
+        }
+        client.writeInteger(client.subscriptions());
+    }
+
+    static void publish(Client client, RespCommand command) {
+        client.writeInteger(PubSub.publish(command.string(1), command.bytes(2)));
+    }
+
+    // PUBSUB CHANNELS [pattern] | NUMSUB [channel ...] | NUMPAT
+    static void pubsub(Client client, RespCommand command) {
+        if (command.equalsIgnoreCase(1, "channels") && command.argc <= 3) {
+            List<String> channels = PubSub.activeChannels(command.argc == 3 ? Glob.compile(command.string(2)) : null);
+            client.writeArrayHeader(channels.size());
+            for (String channel : channels) {
+                client.writeBulk(channel);
+            }
+        } else if (command.equalsIgnoreCase(1, "numsub")) {
+            client.writeArrayHeader((command.argc - 2) * 2);
+            for (int i = 2; i < command.argc; i++) {
+                String channel = command.string(i);
+                client.writeBulk(channel);
+                client.writeInteger(PubSub.subscribers(channel));
+            }
+        } else if (command.equalsIgnoreCase(1, "numpat") && command.argc == 2) {
+            client.writeInteger(PubSub.patterns.size());
+        } else {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for '" + command.string(1) + "'. Try PUBSUB HELP.");
+        }
+    }
+}
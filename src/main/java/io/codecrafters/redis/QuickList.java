@@ -0,0 +1,383 @@
+package io.codecrafters.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// The list value: a doubly linked list of nodes that each pack many elements into one byte array,
+// in the spirit of Redis' quicklist of listpacks. Pushes and pops work on the edge of the end node,
+// index lookups skip whole nodes by their counts, and an element costs its bytes plus two to eight
+// bytes of framing instead of a String and a slot. Elements are Latin-1 strings at the API, like
+// every value, and the list is guarded by its key's stripe like every value.
+public class QuickList implements Iterable<String> {
+    // Negative: -1 to -5 cap each node at 4, 8, 16, 32 or 64 KiB; positive: at that many elements
+    static final int FILL = Config.getInt("list-max-listpack-size");
+    private static final int MIN_NODE_BYTES = 64;
+
+    // Elements live in data[start, end), each framed as header, bytes, trailer. Lengths below 128
+    // take one byte each way. Longer ones take four: the header big-endian and the trailer
+    // little-endian, both with the top bit set on the byte read first, so the list can be walked
+    // from either side.
+    static final class Node {
+        byte[] data;
+        int start;
+        int end;
+        int count;
+        Node prev;
+        Node next;
+
+        Node(int capacity, boolean atHead) {
+            data = new byte[capacity];
+            start = end = atHead ? capacity : 0;
+        }
+
+        int used() {
+            return end - start;
+        }
+    }
+
+    private Node head;
+    private Node tail;
+    private long size;
+    private int nodes;
+    // Kept up to date as nodes come, go and grow, so maxmemory accounting never walks the list
+    private long heapBytes = 32;
+
+    long size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int nodeCount() {
+        return nodes;
+    }
+
+    // Heap bytes of the list object, its nodes and their arrays
+    long memoryUsage() {
+        return heapBytes;
+    }
+
+    private static long nodeBytes(Node node) {
+        return 40 + StringValue.align(16 + node.data.length);
+    }
+
+    void pushHead(String element) {
+        byte[] bytes = element.getBytes(StandardCharsets.ISO_8859_1);
+        int framed = framedLength(bytes.length);
+        if (!fits(head, framed)) {
+            Node node = new Node(Math.max(MIN_NODE_BYTES, framed), true);
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            } else {
+                tail = node;
+            }
+            head = node;
+            nodes++;
+            heapBytes += nodeBytes(node);
+        }
+        Node node = head;
+        if (node.start < framed) {
+            grow(node, framed);
+        }
+        node.start -= framed;
+        writeFramed(node.data, node.start, bytes);
+        node.count++;
+        size++;
+    }
+
+    void pushTail(String element) {
+        byte[] bytes = element.getBytes(StandardCharsets.ISO_8859_1);
+        int framed = framedLength(bytes.length);
+        if (!fits(tail, framed)) {
+            Node node = new Node(Math.max(MIN_NODE_BYTES, framed), false);
+            node.prev = tail;
+            if (tail != null) {
+                tail.next = node;
+            } else {
+                head = node;
+            }
+            tail = node;
+            nodes++;
+            heapBytes += nodeBytes(node);
+        }
+        Node node = tail;
+        if (node.data.length - node.end < framed) {
+            grow(node, framed);
+        }
+        writeFramed(node.data, node.end, bytes);
+        node.end += framed;
+        node.count++;
+        size++;
+    }
+
+    // Both pops expect a non-empty list
+    String popHead() {
+        Node node = head;
+        String element = readForward(node.data, node.start);
+        node.start = skipForward(node.data, node.start);
+        removed(node, 1);
+        return element;
+    }
+
+    String popTail() {
+        Node node = tail;
+        int from = skipBackward(node.data, node.end);
+        String element = readForward(node.data, from);
+        node.end = from;
+        removed(node, 1);
+        return element;
+    }
+
+    // index must be in [0, size)
+    String get(long index) {
+        Cursor cursor = seek(index);
+        return readForward(cursor.node.data, cursor.offset);
+    }
+
+    // index must be in [0, size)
+    void set(long index, String element) {
+        Cursor cursor = seek(index);
+        Node node = cursor.node;
+        byte[] bytes = element.getBytes(StandardCharsets.ISO_8859_1);
+        int oldEnd = skipForward(node.data, cursor.offset);
+        int framed = framedLength(bytes.length);
+        int used = node.used() - (oldEnd - cursor.offset) + framed;
+        byte[] data = new byte[Math.max(MIN_NODE_BYTES, used)];
+        int before = cursor.offset - node.start;
+        System.arraycopy(node.data, node.start, data, 0, before);
+        writeFramed(data, before, bytes);
+        System.arraycopy(node.data, oldEnd, data, before + framed, node.end - oldEnd);
+        heapBytes -= nodeBytes(node);
+        node.data = data;
+        heapBytes += nodeBytes(node);
+        node.start = 0;
+        node.end = used;
+    }
+
+    // Drops count elements from the head; whole nodes are unlinked without being walked
+    void trimHead(long count) {
+        while (count > 0 && count >= head.count) {
+            count -= head.count;
+            removed(head, head.count);
+        }
+        if (count > 0) {
+            Node node = head;
+            for (long i = 0; i < count; i++) {
+                node.start = skipForward(node.data, node.start);
+            }
+            removed(node, (int) count);
+        }
+    }
+
+    void trimTail(long count) {
+        while (count > 0 && count >= tail.count) {
+            count -= tail.count;
+            removed(tail, tail.count);
+        }
+        if (count > 0) {
+            Node node = tail;
+            for (long i = 0; i < count; i++) {
+                node.end = skipBackward(node.data, node.end);
+            }
+            removed(node, (int) count);
+        }
+    }
+
+    // Deep copy for snapshots, which must not see later in-place changes
+    QuickList copy() {
+        QuickList copy = new QuickList();
+        for (Node node = head; node != null; node = node.next) {
+            Node clone = new Node(0, false);
+            clone.data = Arrays.copyOfRange(node.data, node.start, node.end);
+            clone.end = clone.data.length;
+            clone.count = node.count;
+            clone.prev = copy.tail;
+            if (copy.tail != null) {
+                copy.tail.next = clone;
+            } else {
+                copy.head = clone;
+            }
+            copy.tail = clone;
+        }
+        copy.size = size;
+        copy.nodes = nodes;
+        for (Node node = copy.head; node != null; node = node.next) {
+            copy.heapBytes += nodeBytes(node);
+        }
+        return copy;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return iterator(0);
+    }
+
+    // Iterates from index, which may equal size for an empty iteration
+    Iterator<String> iterator(long index) {
+        Cursor cursor = index < size ? seek(index) : new Cursor(null, 0);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.node != null;
+            }
+
+            @Override
+            public String next() {
+                if (cursor.node == null) {
+                    throw new NoSuchElementException();
+                }
+                String element = readForward(cursor.node.data, cursor.offset);
+                cursor.offset = skipForward(cursor.node.data, cursor.offset);
+                if (cursor.offset == cursor.node.end) {
+                    cursor.node = cursor.node.next;
+                    cursor.offset = cursor.node == null ? 0 : cursor.node.start;
+                }
+                return element;
+            }
+        };
+    }
+
+    private static final class Cursor {
+        Node node;
+        int offset;
+
+        Cursor(Node node, int offset) {
+            this.node = node;
+            this.offset = offset;
+        }
+    }
+
+    // Finds an element by skipping whole nodes from the nearer end, then walking inside its node
+    // from the nearer edge
+    private Cursor seek(long index) {
+        Node node;
+        long first;
+        if (index < size / 2) {
+            node = head;
+            first = 0;
+            while (index >= first + node.count) {
+                first += node.count;
+                node = node.next;
+            }
+        } else {
+            node = tail;
+            first = size - node.count;
+            while (index < first) {
+                node = node.prev;
+                first -= node.count;
+            }
+        }
+        int within = (int) (index - first);
+        int offset;
+        if (within < node.count / 2) {
+            offset = node.start;
+            for (int i = 0; i < within; i++) {
+                offset = skipForward(node.data, offset);
+            }
+        } else {
+            offset = node.end;
+            for (int i = node.count; i > within; i--) {
+                offset = skipBackward(node.data, offset);
+            }
+        }
+        return new Cursor(node, offset);
+    }
+
+    private static boolean fits(Node node, int framed) {
+        if (node == null) {
+            return false;
+        }
+        if (FILL > 0) {
+            return node.count < FILL;
+        }
+        return node.used() + framed <= 4096 << (Math.max(1, Math.min(5, -FILL)) - 1);
+    }
+
+    // Makes room for framed more bytes on both sides, so alternating pushes stay amortized O(1)
+    private void grow(Node node, int framed) {
+        int used = node.used();
+        byte[] data = new byte[Math.max(node.data.length * 2, used + 2 * framed)];
+        int start = (data.length - used) / 2;
+        System.arraycopy(node.data, node.start, data, start, used);
+        heapBytes += StringValue.align(16 + data.length) - StringValue.align(16 + node.data.length);
+        node.data = data;
+        node.start = start;
+        node.end = start + used;
+    }
+
+    private void removed(Node node, int count) {
+        node.count -= count;
+        size -= count;
+        if (node.count > 0) {
+            return;
+        }
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        nodes--;
+        heapBytes -= nodeBytes(node);
+    }
+
+    static int framedLength(int length) {
+        return length < 128 ? length + 2 : length + 8;
+    }
+
+    private static void writeFramed(byte[] data, int at, byte[] bytes) {
+        int length = bytes.length;
+        if (length < 128) {
+            data[at++] = (byte) length;
+            System.arraycopy(bytes, 0, data, at, length);
+            data[at + length] = (byte) length;
+            return;
+        }
+        data[at++] = (byte) (0x80 | (length >>> 24));
+        data[at++] = (byte) (length >>> 16);
+        data[at++] = (byte) (length >>> 8);
+        data[at++] = (byte) length;
+        System.arraycopy(bytes, 0, data, at, length);
+        at += length;
+        data[at++] = (byte) length;
+        data[at++] = (byte) (length >>> 8);
+        data[at++] = (byte) (length >>> 16);
+        data[at] = (byte) (0x80 | (length >>> 24));
+    }
+
+    private static int lengthForward(byte[] data, int at) {
+        int first = data[at] & 0xFF;
+        if (first < 0x80) {
+            return first;
+        }
+        return (first & 0x7F) << 24 | (data[at + 1] & 0xFF) << 16 | (data[at + 2] & 0xFF) << 8 | (data[at + 3] & 0xFF);
+    }
+
+    private static String readForward(byte[] data, int at) {
+        int length = lengthForward(data, at);
+        return new String(data, at + (length < 128 ? 1 : 4), length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int skipForward(byte[] data, int at) {
+        return at + framedLength(lengthForward(data, at));
+    }
+
+    // From the end of an element to its start
+    private static int skipBackward(byte[] data, int end) {
+        int last = data[end - 1] & 0xFF;
+        if (last < 0x80) {
+            return end - framedLength(last);
+        }
+        int length = (last & 0x7F) << 24 | (data[end - 2] & 0xFF) << 16 | (data[end - 3] & 0xFF) << 8 | (data[end - 4] & 0xFF);
+        return end - framedLength(length);
+    }
+}
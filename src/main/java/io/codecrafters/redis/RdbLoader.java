@@ -0,0 +1,536 @@
+package io.codecrafters.redis;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+// Decodes an RDB file into the live keyspace. Strings, lists and streams are loaded; other types
+// are parsed and skipped so files written by a full Redis still load.
+public class RdbLoader {
+    static final int OPCODE_FUNCTION2 = 0xF5;
+    static final int OPCODE_MODULE_AUX = 0xF7;
+    static final int OPCODE_IDLE = 0xF8;
+    static final int OPCODE_FREQ = 0xF9;
+    static final int OPCODE_AUX = 0xFA;
+    static final int OPCODE_RESIZEDB = 0xFB;
+    static final int OPCODE_EXPIRETIME_MS = 0xFC;
+    static final int OPCODE_EXPIRETIME = 0xFD;
+    static final int OPCODE_SELECTDB = 0xFE;
+    static final int OPCODE_EOF = 0xFF;
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LIST = 1;
+    static final int TYPE_SET = 2;
+    static final int TYPE_ZSET = 3;
+    static final int TYPE_HASH = 4;
+    static final int TYPE_ZSET_2 = 5;
+    static final int TYPE_HASH_ZIPMAP = 9;
+    static final int TYPE_LIST_ZIPLIST = 10;
+    static final int TYPE_SET_INTSET = 11;
+    static final int TYPE_ZSET_ZIPLIST = 12;
+    static final int TYPE_HASH_ZIPLIST = 13;
+    static final int TYPE_LIST_QUICKLIST = 14;
+    static final int TYPE_STREAM_LISTPACKS = 15;
+    static final int TYPE_HASH_LISTPACK = 16;
+    static final int TYPE_ZSET_LISTPACK = 17;
+    static final int TYPE_LIST_QUICKLIST_2 = 18;
+    static final int TYPE_STREAM_LISTPACKS_2 = 19;
+    static final int TYPE_SET_LISTPACK = 20;
+    static final int TYPE_STREAM_LISTPACKS_3 = 21;
+
+    static final int ENCODING_INT8 = 0;
+    static final int ENCODING_INT16 = 1;
+    static final int ENCODING_INT32 = 2;
+    static final int ENCODING_LZF = 3;
+
+    static final int QUICKLIST_NODE_PLAIN = 1;
+    static final int STREAM_ITEM_FLAG_DELETED = 1;
+    static final int STREAM_ITEM_FLAG_SAMEFIELDS = 2;
+
+    // Stats of the last load, reported in INFO persistence
+    static volatile long lastLoadMillis = 0;
+    static volatile long lastLoadKeys = 0;
+
+    private final InputStream in;
+    private final long now = System.currentTimeMillis();
+    private int version;
+    private long keysLoaded = 0;
+    private long keysExpired = 0;
+    private long keysSkipped = 0;
+
+    RdbLoader(InputStream in) {
+        this.in = in;
+    }
+
+    // Loads dir/dbfilename, the file SAVE writes, if it exists
+    static void loadConfiguredFile() {
+        File file = Persistence.rdbFile();
+        if (!file.exists()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            RdbLoader loader = new RdbLoader(in);
+            loader.load();
+            lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+            lastLoadKeys = loader.keysLoaded;
+            System.out.println("DB loaded from disk: " + loader.keysLoaded + " keys in " + lastLoadMillis + " ms"
+                    + " (" + loader.keysExpired + " expired, " + loader.keysSkipped + " skipped)");
+        } catch (IOException e) {
+            System.out.println("Error loading RDB file " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Replaces the dataset with a full copy read off the master link. Every stripe is held
+    // throughout, as Redis blocks its clients while a replica loads.
+    static long loadFromMaster(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        RdbLoader loader = new RdbLoader(in);
+        Main.keyspace.lockAll();
+        try {
+            Main.keyspace.clear();
+            if (Tracking.active()) {
+                Tracking.invalidateAll();
+            }
+            loader.load();
+        } finally {
+            Main.keyspace.unlockAll();
+        }
+        lastLoadMillis = (System.nanoTime() - start) / 1_000_000;
+        lastLoadKeys = loader.keysLoaded;
+        return loader.keysLoaded;
+    }
+
+    void load() throws IOException {
+        byte[] magic = readBytes(9);
+        String header = new String(magic, StandardCharsets.US_ASCII);
+        if (!header.startsWith("REDIS")) {
+            throw new IOException("Wrong signature");
+        }
+        version = Integer.parseInt(header.substring(5));
+
+        int db = 0;
+        long expireAt = -1;
+        while (true) {
+            int type = readByte();
+            switch (type) {
+                case OPCODE_EOF:
+                    // The trailing CRC64 is not verified
+                    return;
+                case OPCODE_SELECTDB:
+                    db = (int) readLength();
+                    continue;
+                case OPCODE_RESIZEDB:
+                    readLength();
+                    readLength();
+                    continue;
+                case OPCODE_AUX:
+                    readString();
+                    readString();
+                    continue;
+                case OPCODE_EXPIRETIME_MS:
+                    expireAt = readLittleEndian(8);
+                    continue;
+                case OPCODE_EXPIRETIME:
+                    expireAt = readLittleEndian(4) * 1000;
+                    continue;
+                case OPCODE_IDLE:
+                    readLength();
+                    continue;
+                case OPCODE_FREQ:
+                    readByte();
+                    continue;
+                case OPCODE_FUNCTION2:
+                    readString();
+                    continue;
+                case OPCODE_MODULE_AUX:
+                    throw new IOException("Module data is not supported");
+                default:
+                    break;
+            }
+
+            String key = new String(readString(), StandardCharsets.ISO_8859_1);
+            Object value = readValue(type);
+            if (db != 0 || value == null) {
+                // Only database 0 exists here; other databases and unsupported types are skipped
+                keysSkipped++;
+            } else if (expireAt != -1 && expireAt < now) {
+                keysExpired++;
+            } else {
+                store(key, value, expireAt);
+                keysLoaded++;
+            }
+            expireAt = -1;
+        }
+    }
+
+    // expireAt is -1 (Keyspace.NO_EXPIRE) for keys without a deadline
+    private void store(String key, Object value, long expireAt) {
+        if (value instanceof byte[] bytes) {
+            value = StringValue.of(bytes);
+        }
+        Main.keyspace.put(key, value, expireAt);
+    }
+
+    // Returns byte[] for strings, QuickList for lists, Stream for streams, null for skipped types
+    private Object readValue(int type) throws IOException {
+        switch (type) {
+            case TYPE_STRING:
+                return readString();
+            case TYPE_LIST: {
+                long length = readLength();
+                QuickList list = new QuickList();
+                for (long i = 0; i < length; i++) {
+                    list.pushTail(new String(readString(), StandardCharsets.ISO_8859_1));
+                }
+                return list;
+            }
+            case TYPE_LIST_ZIPLIST: {
+                QuickList list = new QuickList();
+                decodeZiplist(readString(), list);
+                return list;
+            }
+            case TYPE_LIST_QUICKLIST: {
+                long nodes = readLength();
+                QuickList list = new QuickList();
+                for (long i = 0; i < nodes; i++) {
+                    decodeZiplist(readString(), list);
+                }
+                return list;
+            }
+            case TYPE_LIST_QUICKLIST_2: {
+                long nodes = readLength();
+                QuickList list = new QuickList();
+                for (long i = 0; i < nodes; i++) {
+                    long container = readLength();
+                    byte[] node = readString();
+                    if (container == QUICKLIST_NODE_PLAIN) {
+                        list.pushTail(new String(node, StandardCharsets.ISO_8859_1));
+                    } else {
+                        decodeListpack(node, list);
+                    }
+                }
+                return list;
+            }
+            case TYPE_STREAM_LISTPACKS, TYPE_STREAM_LISTPACKS_2, TYPE_STREAM_LISTPACKS_3:
+                return readStream(type);
+            default:
+                skipValue(type);
+                return null;
+        }
+    }
+
+    // Each node is a listpack keyed by its master ID: the master entry (count, deleted, master
+    // fields, terminator), then per entry its flags, ID deltas, fields unless it shares the
+    // master's, values and element count. Deleted entries are dropped; consumer groups are skipped.
+    private Stream readStream(int type) throws IOException {
+        Stream stream = new Stream();
+        long nodes = readLength();
+        for (long n = 0; n < nodes; n++) {
+            byte[] nodeKey = readString();
+            long masterMs = bigEndian(nodeKey, 0, 8);
+            long masterSeq = bigEndian(nodeKey, 8, 8);
+            QuickList elements = new QuickList();
+            decodeListpack(readString(), elements);
+            Iterator<String> it = elements.iterator();
+            long count = Long.parseLong(it.next()) + Long.parseLong(it.next());
+            String[] masterFields = new String[Integer.parseInt(it.next())];
+            for (int i = 0; i < masterFields.length; i++) {
+                masterFields[i] = it.next();
+            }
+            it.next();
+            for (long e = 0; e < count; e++) {
+                int flags = Integer.parseInt(it.next());
+                long ms = masterMs + Long.parseLong(it.next());
+                long seq = masterSeq + Long.parseLong(it.next());
+                String[] fields;
+                if ((flags & STREAM_ITEM_FLAG_SAMEFIELDS) != 0) {
+                    fields = new String[masterFields.length * 2];
+                    for (int i = 0; i < masterFields.length; i++) {
+                        fields[2 * i] = masterFields[i];
+                        fields[2 * i + 1] = it.next();
+                    }
+                } else {
+                    fields = new String[Integer.parseInt(it.next()) * 2];
+                    for (int i = 0; i < fields.length; i++) {
+                        fields[i] = it.next();
+                    }
+                }
+                it.next();
+                if ((flags & STREAM_ITEM_FLAG_DELETED) == 0) {
+                    stream.add(ms, seq, fields);
+                }
+            }
+        }
+        readLength();
+        long lastMs = readLength();
+        long lastSeq = readLength();
+        stream.setLastId(lastMs, lastSeq);
+        skipStreamMetadata(type);
+        return stream;
+    }
+
+    private void skipValue(int type) throws IOException {
+        switch (type) {
+            case TYPE_SET:
+                skipStrings(readLength());
+                break;
+            case TYPE_HASH:
+                skipStrings(readLength() * 2);
+                break;
+            case TYPE_ZSET: {
+                long length = readLength();
+                for (long i = 0; i < length; i++) {
+                    readString();
+                    int scoreLength = readByte();
+                    if (scoreLength < 253) {
+                        readBytes(scoreLength);
+                    }
+                }
+                break;
+            }
+            case TYPE_ZSET_2: {
+                long length = readLength();
+                for (long i = 0; i < length; i++) {
+                    readString();
+                    readBytes(8);
+                }
+                break;
+            }
+            case TYPE_HASH_ZIPMAP, TYPE_SET_INTSET, TYPE_ZSET_ZIPLIST, TYPE_HASH_ZIPLIST,
+                 TYPE_HASH_LISTPACK, TYPE_ZSET_LISTPACK, TYPE_SET_LISTPACK:
+                readString();
+                break;
+            case TYPE_STREAM_LISTPACKS, TYPE_STREAM_LISTPACKS_2, TYPE_STREAM_LISTPACKS_3:
+                skipStream(type);
+                break;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private void skipStream(int type) throws IOException {
+        skipStrings(readLength() * 2);
+        // Length, last ID
+        readLength();
+        readLength();
+        readLength();
+        skipStreamMetadata(type);
+    }
+
+    // What follows the last ID: the newer fields and the consumer groups
+    private void skipStreamMetadata(int type) throws IOException {
+        if (type >= TYPE_STREAM_LISTPACKS_2) {
+            // First ID, max deleted ID, entries added
+            for (int i = 0; i < 5; i++) {
+                readLength();
+            }
+        }
+        long groups = readLength();
+        for (long g = 0; g < groups; g++) {
+            readString();
+            readLength();
+            readLength();
+            if (type >= TYPE_STREAM_LISTPACKS_2) {
+                readLength();
+            }
+            long pending = readLength();
+            for (long p = 0; p < pending; p++) {
+                readBytes(16 + 8);
+                readLength();
+            }
+            long consumers = readLength();
+            for (long c = 0; c < consumers; c++) {
+                readString();
+                readBytes(type >= TYPE_STREAM_LISTPACKS_3 ? 16 : 8);
+                readBytes(16 * (int) readLength());
+            }
+        }
+    }
+
+    private void skipStrings(long count) throws IOException {
+        for (long i = 0; i < count; i++) {
+            readString();
+        }
+    }
+
+    static void decodeZiplist(byte[] ziplist, QuickList out) throws IOException {
+        int p = 10;
+        while (p < ziplist.length && (ziplist[p] & 0xFF) != 0xFF) {
+            p += (ziplist[p] & 0xFF) == 0xFE ? 5 : 1;
+            int encoding = ziplist[p] & 0xFF;
+            switch (encoding >> 6) {
+                case 0: {
+                    int length = encoding & 0x3F;
+                    out.pushTail(new String(ziplist, p + 1, length, StandardCharsets.ISO_8859_1));
+                    p += 1 + length;
+                    continue;
+                }
+                case 1: {
+                    int length = ((encoding & 0x3F) << 8) | (ziplist[p + 1] & 0xFF);
+                    out.pushTail(new String(ziplist, p + 2, length, StandardCharsets.ISO_8859_1));
+                    p += 2 + length;
+                    continue;
+                }
+                case 2: {
+                    int length = (int) bigEndian(ziplist, p + 1, 4);
+                    out.pushTail(new String(ziplist, p + 5, length, StandardCharsets.ISO_8859_1));
+                    p += 5 + length;
+                    continue;
+                }
+                default:
+                    break;
+            }
+            long value;
+            switch (encoding) {
+                case 0xC0 -> { value = (short) littleEndian(ziplist, p + 1, 2); p += 3; }
+                case 0xD0 -> { value = (int) littleEndian(ziplist, p + 1, 4); p += 5; }
+                case 0xE0 -> { value = littleEndian(ziplist, p + 1, 8); p += 9; }
+                case 0xF0 -> { value = ((int) littleEndian(ziplist, p + 1, 3) << 8) >> 8; p += 4; }
+                case 0xFE -> { value = ziplist[p + 1]; p += 2; }
+                default -> {
+                    if (encoding < 0xF1 || encoding > 0xFD) {
+                        throw new IOException("Corrupt ziplist encoding " + encoding);
+                    }
+                    value = (encoding & 0x0F) - 1;
+                    p += 1;
+                }
+            }
+            out.pushTail(String.valueOf(value));
+        }
+    }
+
+    static void decodeListpack(byte[] listpack, QuickList out) throws IOException {
+        int p = 6;
+        while (p < listpack.length) {
+            int encoding = listpack[p] & 0xFF;
+            if (encoding == 0xFF) {
+                return;
+            }
+            int start = p;
+            if ((encoding & 0x80) == 0) {
+                out.pushTail(String.valueOf(encoding & 0x7F));
+                p += 1;
+            } else if ((encoding & 0xC0) == 0x80) {
+                int length = encoding & 0x3F;
+                out.pushTail(new String(listpack, p + 1, length, StandardCharsets.ISO_8859_1));
+                p += 1 + length;
+            } else if ((encoding & 0xE0) == 0xC0) {
+                int value = ((encoding & 0x1F) << 8) | (listpack[p + 1] & 0xFF);
+                out.pushTail(String.valueOf(value >= 1 << 12 ? value - (1 << 13) : value));
+                p += 2;
+            } else if ((encoding & 0xF0) == 0xE0) {
+                int length = ((encoding & 0x0F) << 8) | (listpack[p + 1] & 0xFF);
+                out.pushTail(new String(listpack, p + 2, length, StandardCharsets.ISO_8859_1));
+                p += 2 + length;
+            } else {
+                switch (encoding) {
+                    case 0xF0 -> {
+                        int length = (int) littleEndian(listpack, p + 1, 4);
+                        out.pushTail(new String(listpack, p + 5, length, StandardCharsets.ISO_8859_1));
+                        p += 5 + length;
+                    }
+                    case 0xF1 -> { out.pushTail(String.valueOf((short) littleEndian(listpack, p + 1, 2))); p += 3; }
+                    case 0xF2 -> { out.pushTail(String.valueOf(((int) littleEndian(listpack, p + 1, 3) << 8) >> 8)); p += 4; }
+                    case 0xF3 -> { out.pushTail(String.valueOf((int) littleEndian(listpack, p + 1, 4))); p += 5; }
+                    case 0xF4 -> { out.pushTail(String.valueOf(littleEndian(listpack, p + 1, 8))); p += 9; }
+                    default -> throw new IOException("Corrupt listpack encoding " + encoding);
+                }
+            }
+            int entryLength = p - start;
+            p += entryLength < 128 ? 1 : entryLength < 16384 ? 2 : entryLength < 2097152 ? 3 : entryLength < 268435456 ? 4 : 5;
+        }
+    }
+
+    private long readLength() throws IOException {
+        int first = readByte();
+        switch (first >> 6) {
+            case 0:
+                return first & 0x3F;
+            case 1:
+                return ((first & 0x3F) << 8) | readByte();
+            case 2:
+                if (first == 0x80) {
+                    return readBigEndian(4);
+                } else if (first == 0x81) {
+                    return readBigEndian(8);
+                }
+                throw new IOException("Unknown length encoding " + first);
+            default:
+                throw new IOException("Unexpected special encoding " + first);
+        }
+    }
+
+    private byte[] readString() throws IOException {
+        int first = readByte();
+        if (first >> 6 != 3) {
+            long length;
+            switch (first >> 6) {
+                case 0 -> length = first & 0x3F;
+                case 1 -> length = ((first & 0x3F) << 8) | readByte();
+                default -> length = first == 0x80 ? readBigEndian(4) : readBigEndian(8);
+            }
+            return readBytes((int) length);
+        }
+        switch (first & 0x3F) {
+            case ENCODING_INT8:
+                return String.valueOf((byte) readByte()).getBytes(StandardCharsets.US_ASCII);
+            case ENCODING_INT16:
+                return String.valueOf((short) readLittleEndian(2)).getBytes(StandardCharsets.US_ASCII);
+            case ENCODING_INT32:
+                return String.valueOf((int) readLittleEndian(4)).getBytes(StandardCharsets.US_ASCII);
+            case ENCODING_LZF: {
+                int compressedLength = (int) readLength();
+                int length = (int) readLength();
+                return Lzf.decompress(readBytes(compressedLength), length);
+            }
+            default:
+                throw new IOException("Unknown string encoding " + (first & 0x3F));
+        }
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            throw new EOFException("Unexpected end of RDB file");
+        }
+        return b;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("Unexpected end of RDB file");
+        }
+        return bytes;
+    }
+
+    private long readLittleEndian(int length) throws IOException {
+        return littleEndian(readBytes(length), 0, length);
+    }
+
+    private long readBigEndian(int length) throws IOException {
+        return bigEndian(readBytes(length), 0, length);
+    }
+
+    static long littleEndian(byte[] bytes, int from, int length) {
+        long value = 0;
+        for (int i = length - 1; i >= 0; i--) {
+            value = (value << 8) | (bytes[from + i] & 0xFF);
+        }
+        return value;
+    }
+
+    static long bigEndian(byte[] bytes, int from, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = (value << 8) | (bytes[from + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,354 @@
+package io.codecrafters.redis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Streams a point-in-time RDB image of the keyspace, see Keyspace.snapshot()
+public class RdbWriter {
+    static final int FLUSH_THRESHOLD = 256 * 1024;
+
+    static final long[] CRC64_TABLE = new long[256];
+
+    static {
+        // CRC-64/Jones, reflected, as used by Redis for the RDB trailer
+        long poly = Long.reverse(0xad93d23594c935a9L);
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ poly : crc >>> 1;
+            }
+            CRC64_TABLE[i] = crc;
+        }
+    }
+
+    private final WritableByteChannel out;
+    private ByteBuffer buffer = ByteBuffer.allocate(FLUSH_THRESHOLD * 2);
+    private long crc = 0;
+    private final long now = System.currentTimeMillis();
+    long bytesWritten = 0;
+    long keysWritten = 0;
+
+    RdbWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    // Writes to a temp file in the same directory, fsyncs it and renames it over the target
+    static RdbWriter saveToFile(Keyspace keyspace, File target) throws IOException {
+        File directory = target.getAbsoluteFile().getParentFile();
+        File temp = new File(directory, "temp-" + ProcessHandle.current().pid() + "-" + Thread.currentThread().threadId() + ".rdb");
+        RdbWriter writer;
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writer = new RdbWriter(channel);
+            writer.writeSnapshot(keyspace);
+            channel.force(true);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return writer;
+    }
+
+    void writeSnapshot(Keyspace keyspace) throws IOException {
+        writeSnapshot(keyspace, () -> { });
+    }
+
+    // atSnapshot runs with every stripe held, at the instant the dataset is captured
+    void writeSnapshot(Keyspace keyspace, Runnable atSnapshot) throws IOException {
+        writeHeader(keyspace.size());
+        keyspace.snapshot(new Keyspace.SnapshotSink() {
+            @Override
+            public void begin() {
+                atSnapshot.run();
+            }
+
+            @Override
+            public void entry(String key, Object value, long expireAt) {
+                writeEntry(key, value, expireAt);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (buffer.position() >= FLUSH_THRESHOLD) {
+                    drain();
+                }
+            }
+        });
+
+        writeByte(RdbLoader.OPCODE_EOF);
+        long checksum = crc;
+        ensure(8);
+        for (int i = 0; i < 8; i++) {
+            buffer.put((byte) (checksum >>> (8 * i)));
+        }
+        drain();
+    }
+
+    private void writeHeader(int size) {
+        writeRaw("REDIS0011".getBytes(StandardCharsets.US_ASCII));
+        writeAux("redis-ver", "7.2.0");
+        writeAux("redis-bits", "64");
+        writeAux("ctime", String.valueOf(now / 1000));
+        writeAux("aof-base", "0");
+        writeByte(RdbLoader.OPCODE_SELECTDB);
+        writeLength(0);
+        writeByte(RdbLoader.OPCODE_RESIZEDB);
+        writeLength(size);
+        writeLength(0);
+    }
+
+    private void writeAux(String key, String value) {
+        writeByte(RdbLoader.OPCODE_AUX);
+        writeString(key);
+        writeString(value);
+    }
+
+    private void writeEntry(String key, Object value, long expireAt) {
+        if (expireAt != Keyspace.NO_EXPIRE) {
+            if (expireAt <= now) {
+                return;
+            }
+            writeByte(RdbLoader.OPCODE_EXPIRETIME_MS);
+            for (int i = 0; i < 8; i++) {
+                writeByte((int) (expireAt >>> (8 * i)) & 0xFF);
+            }
+        }
+        if (StringValue.isString(value)) {
+            writeByte(RdbLoader.TYPE_STRING);
+            writeString(key);
+            writeStringValue(value);
+        } else if (value instanceof QuickList list) {
+            writeByte(RdbLoader.TYPE_LIST);
+            writeString(key);
+            writeLength(list.size());
+            for (String element : list) {
+                writeString(element);
+            }
+        } else {
+            writeByte(RdbLoader.TYPE_STREAM_LISTPACKS);
+            writeString(key);
+            writeStream((Stream) value);
+        }
+        keysWritten++;
+    }
+
+    // One listpack per node, keyed by the node's first ID as 16 big-endian bytes, then the length,
+    // the last ID and no consumer groups
+    private void writeStream(Stream stream) {
+        writeLength(stream.nodeCount());
+        for (int i = 0; i < stream.nodeCount(); i++) {
+            ArrayList<Stream.Entry> entries = stream.nodeEntries(i);
+            Stream.Entry master = entries.get(0);
+            byte[] nodeKey = new byte[16];
+            for (int b = 0; b < 8; b++) {
+                nodeKey[b] = (byte) (master.ms >>> (56 - 8 * b));
+                nodeKey[8 + b] = (byte) (master.seq >>> (56 - 8 * b));
+            }
+            writeString(nodeKey);
+            writeString(streamListpack(entries, master));
+        }
+        writeLength(stream.length());
+        writeLength(stream.lastMs);
+        writeLength(stream.lastSeq);
+        writeLength(0);
+    }
+
+    // Redis' node layout: a master entry without shared fields (count, deleted, 0 fields,
+    // terminator), then per entry its flags, ID deltas from the master, its field/value pairs and
+    // its element count
+    static byte[] streamListpack(ArrayList<Stream.Entry> entries, Stream.Entry master) {
+        Listpack listpack = new Listpack();
+        listpack.addInteger(entries.size());
+        listpack.addInteger(0);
+        listpack.addInteger(0);
+        listpack.addInteger(0);
+        for (Stream.Entry entry : entries) {
+            listpack.addInteger(0);
+            listpack.addInteger(entry.ms - master.ms);
+            listpack.addInteger(entry.seq - master.seq);
+            listpack.addInteger(entry.fields.length / 2);
+            for (String field : entry.fields) {
+                listpack.addString(field);
+            }
+            listpack.addInteger(entry.fields.length + 4);
+        }
+        return listpack.finish();
+    }
+
+    // Builds a listpack: 6 header bytes, elements each followed by their length backwards, and 0xFF
+    static final class Listpack {
+        private ByteBuffer out = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN).position(6);
+        private int elements;
+
+        void addInteger(long value) {
+            int start = out.position();
+            ensureListpack(9);
+            if (value >= 0 && value <= 127) {
+                out.put((byte) value);
+            } else if (value >= -4096 && value <= 4095) {
+                int v = value < 0 ? (int) value + (1 << 13) : (int) value;
+                out.put((byte) (0xC0 | (v >> 8))).put((byte) v);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                out.put((byte) 0xF1).putShort((short) value);
+            } else if (value >= -(1 << 23) && value < 1 << 23) {
+                out.put((byte) 0xF2).put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+            } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                out.put((byte) 0xF3).putInt((int) value);
+            } else {
+                out.put((byte) 0xF4).putLong(value);
+            }
+            backlen(out.position() - start);
+        }
+
+        void addString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+            int start = out.position();
+            ensureListpack(5 + bytes.length);
+            if (bytes.length < 64) {
+                out.put((byte) (0x80 | bytes.length));
+            } else if (bytes.length < 4096) {
+                out.put((byte) (0xE0 | (bytes.length >> 8))).put((byte) bytes.length);
+            } else {
+                out.put((byte) 0xF0).putInt(bytes.length);
+            }
+            out.put(bytes);
+            backlen(out.position() - start);
+        }
+
+        private void backlen(int length) {
+            ensureListpack(5);
+            if (length < 128) {
+                out.put((byte) length);
+            } else {
+                int bytes = length < 16384 ? 2 : length < 2097152 ? 3 : length < 268435456 ? 4 : 5;
+                out.put((byte) (length >>> (7 * (bytes - 1))));
+                for (int i = bytes - 2; i >= 0; i--) {
+                    out.put((byte) (((length >>> (7 * i)) & 0x7F) | 0x80));
+                }
+            }
+            elements++;
+        }
+
+        byte[] finish() {
+            ensureListpack(1);
+            out.put((byte) 0xFF);
+            out.putInt(0, out.position());
+            out.putShort(4, (short) Math.min(elements, 65535));
+            return Arrays.copyOf(out.array(), out.position());
+        }
+
+        private void ensureListpack(int length) {
+            if (out.remaining() < length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + length))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+        }
+    }
+
+    // Integers that fit in 32 bits take Redis' integer encodings, anything else is written as bytes
+    private void writeStringValue(Object value) {
+        if (value instanceof Long number && number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+            int n = (int) (long) number;
+            int size;
+            if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+                writeByte(0xC0 | RdbLoader.ENCODING_INT8);
+                size = 1;
+            } else if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+                writeByte(0xC0 | RdbLoader.ENCODING_INT16);
+                size = 2;
+            } else {
+                writeByte(0xC0 | RdbLoader.ENCODING_INT32);
+                size = 4;
+            }
+            for (int i = 0; i < size; i++) {
+                writeByte((n >>> (8 * i)) & 0xFF);
+            }
+            return;
+        }
+        writeString(StringValue.bytes(value));
+    }
+
+    private void writeString(String value) {
+        writeString(value.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void writeString(byte[] bytes) {
+        writeLength(bytes.length);
+        writeRaw(bytes);
+    }
+
+    private void writeLength(long length) {
+        // Stream IDs are unsigned, so negative lengths take the 64-bit form
+        if (length >= 0 && length < 1 << 6) {
+            writeByte((int) length);
+        } else if (length >= 0 && length < 1 << 14) {
+            writeByte(0x40 | (int) (length >> 8));
+            writeByte((int) length & 0xFF);
+        } else if (length >= 0 && length <= 0xFFFFFFFFL) {
+            writeByte(0x80);
+            for (int i = 3; i >= 0; i--) {
+                writeByte((int) (length >>> (8 * i)) & 0xFF);
+            }
+        } else {
+            writeByte(0x81);
+            for (int i = 7; i >= 0; i--) {
+                writeByte((int) (length >>> (8 * i)) & 0xFF);
+            }
+        }
+    }
+
+    private void writeByte(int b) {
+        ensure(1);
+        buffer.put((byte) b);
+        crc = CRC64_TABLE[(int) ((crc ^ b) & 0xFF)] ^ (crc >>> 8);
+    }
+
+    private void writeRaw(byte[] bytes) {
+        ensure(bytes.length);
+        buffer.put(bytes);
+        long c = crc;
+        for (byte b : bytes) {
+            c = CRC64_TABLE[(int) ((c ^ b) & 0xFF)] ^ (c >>> 8);
+        }
+        crc = c;
+    }
+
+    private void ensure(int length) {
+        if (buffer.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    static long crc64(byte[] bytes) {
+        long c = 0;
+        for (byte b : bytes) {
+            c = CRC64_TABLE[(int) ((c ^ b) & 0xFF)] ^ (c >>> 8);
+        }
+        return c;
+    }
+}
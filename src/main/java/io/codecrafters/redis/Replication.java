@@ -0,0 +1,434 @@
+package io.codecrafters.redis;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The master side of replication, after Redis' replication.c. The effect of every write goes into
+// the backlog, a ring buffer holding the last repl-backlog-size bytes of the replication stream,
+// and the master offset counts every byte ever written to it. The thread that ran the command
+// never writes to a replica: each replica only has a position in the backlog, and a send task on
+// the replica's own event loop copies everything from there to the end in one batch and flushes it.
+// A slow replica therefore costs the writers nothing. One that falls a whole backlog behind has
+// lost part of the stream and is disconnected, as Redis does when a replica's output buffer
+// overflows.
+//
+// A replica that comes back after losing its link asks to continue from its offset, and is served
+// from the backlog if that part of the stream is still there. Otherwise it gets a full sync: a
+// snapshot of the dataset written straight to its socket, with the stream from the snapshot's
+// offset on held back until the snapshot is through.
+public class Replication {
+    static final String REPLID = randomId();
+    static final int BACKLOG_SIZE = (int) Config.getBytes("repl-backlog-size");
+    static final byte[] GETACK = "*3\r\n$8\r\nREPLCONF\r\n$6\r\nGETACK\r\n$1\r\n*\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    static final CopyOnWriteArrayList<Replica> replicas = new CopyOnWriteArrayList<>();
+
+    // Guards the backlog and the master offset; taken with stripes held, never the other way round
+    private static final ReentrantLock lock = new ReentrantLock();
+    // Created when the first replica attaches, as in Redis
+    private static volatile byte[] backlog;
+    private static int backlogHistory = 0;
+    private static volatile long masterOffset = 0;
+
+    static final AtomicLong fullSyncs = new AtomicLong();
+    static final AtomicLong partialSyncs = new AtomicLong();
+    static final AtomicLong partialSyncErrors = new AtomicLong();
+
+    // The link to our master and its replication id, when running as a replica
+    static volatile Client masterLink;
+    static volatile String masterReplid = "";
+    private static final AtomicBoolean connecting = new AtomicBoolean();
+
+    static final class Replica {
+        final Client client;
+        // Master offset of the next byte to send; only touched on the replica's loop
+        long sentOffset;
+        // Set while a full sync owns the socket; the stream piles up in the output buffer meanwhile
+        volatile boolean syncing;
+        // Offset from the replica's last REPLCONF ACK
+        volatile long ackOffset;
+        volatile long ackTime = System.currentTimeMillis();
+        final AtomicBoolean sendScheduled = new AtomicBoolean();
+
+        Replica(Client client) {
+            this.client = client;
+        }
+    }
+
+    private static String randomId() {
+        StringBuilder id = new StringBuilder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 40; i++) {
+            id.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return id.toString();
+    }
+
+    static boolean active() {
+        return backlog != null;
+    }
+
+    static long masterOffset() {
+        return masterOffset;
+    }
+
+    // Starts streaming to a replica from offset on
+    private static void attach(Replica replica, long offset) {
+        lock.lock();
+        try {
+            if (backlog == null) {
+                backlog = new byte[BACKLOG_SIZE];
+            }
+            replica.sentOffset = offset;
+            replicas.add(replica);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // PSYNC <replid> <offset> asks for the stream from offset on, one past the last byte the replica
+    // processed. Continues from the backlog if the id is ours and that part of the stream is still
+    // there; false if the replica needs a full sync. Runs on the replica's loop, and the stream is
+    // only ever sent by tasks on that loop, so it follows the reply written here.
+    static boolean partialResync(Client client, String replid, long psyncOffset) {
+        Replica replica = new Replica(client);
+        lock.lock();
+        try {
+            long from = psyncOffset - 1;
+            if (!replid.equals(REPLID) || backlog == null || from < masterOffset - backlogHistory || from > masterOffset) {
+                if (!replid.equals("?")) {
+                    partialSyncErrors.incrementAndGet();
+                }
+                return false;
+            }
+            attach(replica, from);
+        } finally {
+            lock.unlock();
+        }
+        client.replica = replica;
+        partialSyncs.incrementAndGet();
+        client.writeSimple("CONTINUE " + REPLID);
+        // What was written while the replica was away goes out now, not with the next write
+        send(replica);
+        return true;
+    }
+
+    // Streams a snapshot of the dataset to the replica from a thread of its own, without a temp
+    // file. A replica that announced "capa eof" gets it as it is written, closed by a random mark
+    // announced as "$EOF:<mark>"; any other gets "$<length>" and the snapshot from memory once it is
+    // complete. Called on the replica's loop, which stays off the socket until the sync is done.
+    static void fullSync(Client client) {
+        Replica replica = new Replica(client);
+        replica.syncing = true;
+        client.replica = replica;
+        byte[] pending = client.takeOutput();
+        Thread sync = new Thread(() -> streamSnapshot(replica, pending, client.capaEof), "replica-sync");
+        sync.setDaemon(true);
+        sync.start();
+    }
+
+    private static void streamSnapshot(Replica replica, byte[] pending, boolean eofCapable) {
+        Client client = replica.client;
+        long start = System.nanoTime();
+        SocketWriter socket = new SocketWriter(client);
+        try {
+            // One snapshot at a time, whether for a save, a rewrite or a replica
+            while (!Persistence.startReplicaSync()) {
+                if (client.closed) {
+                    return;
+                }
+                Thread.sleep(100);
+            }
+            try {
+                String mark = eofCapable ? randomId() : null;
+                Runnable atSnapshot = () -> {
+                    attach(replica, masterOffset);
+                    String header = "+FULLRESYNC " + REPLID + " " + replica.sentOffset + "\r\n"
+                            + (mark != null ? "$EOF:" + mark + "\r\n" : "");
+                    socket.preamble = concat(pending, header.getBytes(StandardCharsets.ISO_8859_1));
+                };
+                if (mark != null) {
+                    new RdbWriter(socket).writeSnapshot(Main.keyspace, atSnapshot);
+                    socket.write(ByteBuffer.wrap(mark.getBytes(StandardCharsets.ISO_8859_1)));
+                } else {
+                    ByteArrayOutputStream rdb = new ByteArrayOutputStream();
+                    new RdbWriter(Channels.newChannel(rdb)).writeSnapshot(Main.keyspace, atSnapshot);
+                    socket.write(ByteBuffer.wrap(("$" + rdb.size() + "\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+                    socket.write(ByteBuffer.wrap(rdb.toByteArray()));
+                }
+            } finally {
+                Persistence.endReplicaSync();
+            }
+        } catch (IOException e) {
+            System.out.println("Full sync with replica failed: " + e.getMessage());
+            client.loop.execute(client::close);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            socket.close();
+        }
+        fullSyncs.incrementAndGet();
+        System.out.println("Full sync with replica: " + socket.written + " bytes in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        client.loop.execute(() -> {
+            replica.syncing = false;
+            send(replica);
+        });
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+
+    // Blocking writes to a replica's non-blocking socket, waiting on a selector of its own when the
+    // socket is full. The preamble goes out ahead of the first write.
+    private static final class SocketWriter implements WritableByteChannel {
+        final Client client;
+        byte[] preamble;
+        long written = 0;
+        private Selector selector;
+
+        SocketWriter(Client client) {
+            this.client = client;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (preamble != null) {
+                ByteBuffer first = ByteBuffer.wrap(preamble);
+                preamble = null;
+                writeFully(first);
+            }
+            int length = source.remaining();
+            writeFully(source);
+            return length;
+        }
+
+        private void writeFully(ByteBuffer source) throws IOException {
+            while (source.hasRemaining()) {
+                if (client.closed) {
+                    throw new IOException("Replica disconnected");
+                }
+                int n = client.channel.write(source);
+                written += n;
+                if (n == 0) {
+                    if (selector == null) {
+                        selector = Selector.open();
+                        client.channel.register(selector, SelectionKey.OP_WRITE);
+                    }
+                    selector.select(100);
+                    selector.selectedKeys().clear();
+                }
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !client.closed;
+        }
+
+        @Override
+        public void close() {
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    static void detach(Client client) {
+        replicas.remove(client.replica);
+    }
+
+    // Appends a frame to the stream and wakes the replicas' senders; returns the offset after it
+    static long feed(byte[] frame) {
+        long offset;
+        lock.lock();
+        try {
+            byte[] ring = backlog;
+            int skip = Math.max(0, frame.length - ring.length);
+            int at = (int) ((masterOffset + skip) % ring.length);
+            int first = Math.min(frame.length - skip, ring.length - at);
+            System.arraycopy(frame, skip, ring, at, first);
+            System.arraycopy(frame, skip + first, ring, 0, frame.length - skip - first);
+            masterOffset += frame.length;
+            backlogHistory = (int) Math.min(ring.length, backlogHistory + (long) frame.length);
+            offset = masterOffset;
+        } finally {
+            lock.unlock();
+        }
+        for (Replica replica : replicas) {
+            if (replica.sendScheduled.compareAndSet(false, true)) {
+                replica.client.loop.execute(() -> send(replica));
+            }
+        }
+        return offset;
+    }
+
+    // Copies what the replica has not been sent yet into its output buffer, up to the high-water
+    // mark; the rest follows once the socket drains. Runs on the replica's loop.
+    static void send(Replica replica) {
+        replica.sendScheduled.set(false);
+        Client client = replica.client;
+        if (client.closed) {
+            return;
+        }
+        boolean lost;
+        lock.lock();
+        try {
+            byte[] ring = backlog;
+            lost = replica.sentOffset < masterOffset - backlogHistory;
+            while (!lost && replica.sentOffset < masterOffset
+                    && (replica.syncing || client.pendingOutput() < Client.OUTPUT_HIGH_WATER)) {
+                int at = (int) (replica.sentOffset % ring.length);
+                int length = (int) Math.min(masterOffset - replica.sentOffset, ring.length - at);
+                client.append(ring, at, length);
+                replica.sentOffset += length;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (lost) {
+            System.out.println("Replica fell more than the backlog behind, disconnecting it");
+            client.close();
+            return;
+        }
+        client.flush();
+    }
+
+    // Asks every replica for its offset; the GETACK goes through the stream like any write
+    static void requestAcks() {
+        if (active()) {
+            feed(GETACK);
+        }
+    }
+
+    // REPLCONF ACK from a replica. WAITs are retried by their loops, which are woken to see it.
+    static void acknowledge(Client client, long offset) {
+        Replica replica = client.replica;
+        if (replica == null) {
+            return;
+        }
+        replica.ackTime = System.currentTimeMillis();
+        if (offset > replica.ackOffset) {
+            replica.ackOffset = offset;
+            for (EventLoop loop : Main.loops) {
+                loop.selector.wakeup();
+            }
+        }
+    }
+
+    static int countAcked(long offset) {
+        int count = 0;
+        for (Replica replica : replicas) {
+            if (replica.ackOffset >= offset) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Runs the handshake on a thread of its own, unless an attempt is already under way. Called
+    // at startup, when the link drops, and by the cron while the master is unreachable.
+    static void connectToMaster() {
+        if (!connecting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread connect = new Thread(() -> {
+            try {
+                Main.connectToMaster();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error connecting to master: " + e.getMessage());
+                connecting.set(false);
+            }
+        }, "replica-connect");
+        connect.setDaemon(true);
+        connect.start();
+    }
+
+    // Called by the loop the link was handed to, once the handshake is through
+    static void linkEstablished(Client client) {
+        masterLink = client;
+        connecting.set(false);
+    }
+
+    // Runs every second on a replica: reconnects a lost link, or acknowledges the processed offset,
+    // as Redis' replication cron does
+    static void cron() {
+        if (!Main.serverRole.equals("slave")) {
+            return;
+        }
+        Client link = masterLink;
+        if (link == null || link.closed) {
+            if (!connecting.get()) {
+                connectToMaster();
+            }
+            return;
+        }
+        link.loop.execute(() -> {
+            link.append(ack(Main.offset));
+            link.flush();
+        });
+    }
+
+    static byte[] ack(long offset) {
+        String digits = String.valueOf(offset);
+        return ("*3\r\n$8\r\nREPLCONF\r\n$3\r\nACK\r\n$" + digits.length() + "\r\n" + digits + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static String info() {
+        StringBuilder info = new StringBuilder("# Replication\r\n")
+                .append("role:").append(Main.serverRole).append("\r\n");
+        if (Main.serverRole.equals("slave")) {
+            String[] address = Config.get("replicaof").split(" ");
+            Client link = masterLink;
+            info.append("master_host:").append(address[0]).append("\r\n")
+                    .append("master_port:").append(address.length > 1 ? address[1] : "").append("\r\n")
+                    .append("master_link_status:").append(link != null && !link.closed ? "up" : "down").append("\r\n");
+        } else {
+            info.append("connected_slaves:").append(replicas.size()).append("\r\n");
+            int i = 0;
+            long now = System.currentTimeMillis();
+            for (Replica replica : replicas) {
+                info.append("slave").append(i++).append(":ip=").append(replica.client.remoteHost())
+                        .append(",port=").append(replica.client.listeningPort)
+                        .append(",state=").append(replica.syncing ? "wait_bgsave" : "online")
+                        .append(",offset=").append(replica.ackOffset)
+                        .append(",lag=").append((now - replica.ackTime) / 1000).append("\r\n");
+            }
+        }
+        long offset = Main.serverRole.equals("master") ? masterOffset : Main.offset;
+        long history;
+        lock.lock();
+        try {
+            history = backlogHistory;
+        } finally {
+            lock.unlock();
+        }
+        info.append("master_replid:").append(Main.serverRole.equals("master") ? REPLID : masterReplid).append("\r\n")
+                .append("master_repl_offset:").append(offset).append("\r\n")
+                .append("repl_backlog_active:").append(active() ? 1 : 0).append("\r\n")
+                .append("repl_backlog_size:").append(BACKLOG_SIZE).append("\r\n")
+                .append("repl_backlog_first_byte_offset:").append(active() ? masterOffset - history + 1 : 0).append("\r\n")
+                .append("repl_backlog_histlen:").append(history).append("\r\n");
+        return info.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package io.codecrafters.redis;
+
+public class ReplicationCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("replconf", -1, Command.ADMIN | Command.NO_MULTI, 0, 0, 0, ReplicationCommands::replconf));
+        table.register(new Command("psync", -3, Command.ADMIN | Command.NO_MULTI, 0, 0, 0, ReplicationCommands::psync));
+        table.register(new Command("wait", 3, Command.BLOCKING, 0, 0, 0, ReplicationCommands::waitCommand));
+    }
+
+    static void replconf(Client client, RespCommand command) {
+        if (command.argc < 2) {
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(1, "listening-port") && command.argc == 3) {
+            try {
+                client.listeningPort = (int) command.parseLong(2);
+            } catch (NumberFormatException e) {
+                client.writeError("ERR value is not an integer or out of range");
+                return;
+            }
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(1, "capa")) {
+            for (int i = 1; i + 1 < command.argc; i += 2) {
+                if (command.equalsIgnoreCase(i, "capa") && command.equalsIgnoreCase(i + 1, "eof")) {
+                    client.capaEof = true;
+                }
+            }
+            client.writeSimple("OK");
+        } else if (command.equalsIgnoreCase(1, "getack") && Main.serverRole.equals("slave")) {
+            client.append(Replication.ack(Main.offset));
+        } else if (command.equalsIgnoreCase(1, "ack") && command.argc == 3) {
+            // Never answered, the replica does not read replies
+            try {
+                Replication.acknowledge(client, command.parseLong(2));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    // PSYNC <replid> <offset>, or PSYNC ? -1 from a replica that has never been in sync
+    static void psync(Client client, RespCommand command) {
+        if (client.replica != null) {
+            return;
+        }
+        long offset;
+        try {
+            offset = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            offset = -1;
+        }
+        if (!Replication.partialResync(client, command.string(1), offset)) {
+            Replication.fullSync(client);
+        }
+    }
+
+    // WAIT numreplicas timeout: blocks until that many replicas acknowledged this client's last
+    // write, or the timeout passes, and replies with how many did
+    static void waitCommand(Client client, RespCommand command) {
+        if (Main.serverRole.equals("slave")) {
+            client.writeError("ERR WAIT cannot be used with replica instances.");
+            return;
+        }
+        long wanted;
+        long timeout;
+        try {
+            wanted = command.parseLong(1);
+            timeout = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        if (timeout < 0) {
+            client.writeError("ERR timeout is negative");
+            return;
+        }
+        int acked = Replication.countAcked(client.writeOffset);
+        if (acked >= wanted || client.executingMulti) {
+            client.writeInteger(acked);
+            Main.unblock(client);
+            return;
+        }
+        if (client.blockedOn == null) {
+            Replication.requestAcks();
+            Main.block(client, command);
+            return;
+        }
+        if (timeout > 0 && System.currentTimeMillis() - client.blockedSince >= timeout) {
+            client.writeInteger(acked);
+            Main.unblock(client);
+        }
+    }
+}
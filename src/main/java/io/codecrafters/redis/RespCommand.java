@@ -0,0 +1,107 @@
+package io.codecrafters.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// A parsed command as slices of the connection's read buffer. Arguments are decoded on demand;
+// copy() must be used to keep a command past the current dispatch.
+public class RespCommand {
+    byte[] buffer;
+    int base;
+    int argc;
+    int[] offsets;
+    int[] lengths;
+    int frameLength;
+
+    void set(byte[] buffer, int base, int argc, int[] offsets, int[] lengths, int frameLength) {
+        this.buffer = buffer;
+        this.base = base;
+        this.argc = argc;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.frameLength = frameLength;
+    }
+
+    int length(int i) {
+        return lengths[i];
+    }
+
+    // Latin-1 maps every byte to one char, so values survive a String round trip unchanged
+    String string(int i) {
+        return new String(buffer, base + offsets[i], lengths[i], StandardCharsets.ISO_8859_1);
+    }
+
+    byte[] bytes(int i) {
+        int from = base + offsets[i];
+        return Arrays.copyOfRange(buffer, from, from + lengths[i]);
+    }
+
+    boolean equalsIgnoreCase(int i, String lowerCaseAscii) {
+        if (lengths[i] != lowerCaseAscii.length()) {
+            return false;
+        }
+        int from = base + offsets[i];
+        for (int j = 0; j < lengths[i]; j++) {
+            int b = buffer[from + j];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCaseAscii.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Accepts what Redis' string2ll does: the full 64-bit range, in canonical form only
+    long parseLong(int i) {
+        int from = base + offsets[i];
+        Long value = StringValue.parseCanonical(buffer, from, from + lengths[i]);
+        if (value == null) {
+            throw new NumberFormatException(string(i));
+        }
+        return value;
+    }
+
+    String[] toStrings() {
+        String[] params = new String[argc];
+        for (int i = 0; i < argc; i++) {
+            params[i] = string(i);
+        }
+        return params;
+    }
+
+    static RespCommand of(String... args) {
+        int length = 0;
+        for (String arg : args) {
+            length += arg.length();
+        }
+        byte[] buffer = new byte[length];
+        int[] offsets = new int[args.length];
+        int[] lengths = new int[args.length];
+        int position = 0;
+        for (int i = 0; i < args.length; i++) {
+            byte[] bytes = args[i].getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            offsets[i] = position;
+            lengths[i] = bytes.length;
+            position += bytes.length;
+        }
+        RespCommand command = new RespCommand();
+        command.set(buffer, 0, args.length, offsets, lengths, 0);
+        return command;
+    }
+
+    // Detached copy backed by its own array, safe to queue
+    RespCommand copy() {
+        RespCommand copy = new RespCommand();
+        int from = base + (argc > 0 ? offsets[0] : 0);
+        int to = argc > 0 ? base + offsets[argc - 1] + lengths[argc - 1] : from;
+        int[] copyOffsets = new int[argc];
+        for (int i = 0; i < argc; i++) {
+            copyOffsets[i] = base + offsets[i] - from;
+        }
+        copy.set(Arrays.copyOfRange(buffer, from, to), 0, argc, copyOffsets, Arrays.copyOf(lengths, argc), frameLength);
+        return copy;
+    }
+}
@@ -0,0 +1,229 @@
+package io.codecrafters.redis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Incremental request parser. State survives between calls so a frame split across reads is
+// never rescanned, and arguments are exposed as slices of the read buffer instead of Strings.
+public class RespParser {
+    static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+    static final int MAX_INLINE_LENGTH = 64 * 1024;
+
+    static class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super("Protocol error: " + message);
+        }
+    }
+
+    final RespCommand command = new RespCommand();
+    // All positions are relative to the start of the frame, so they stay valid across compaction
+    private int argc = -1;
+    private int argIndex;
+    private int cursor;
+    private int bulkLength = -1;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+
+    // Parses the next command starting at buffer.position(), which must be a heap buffer.
+    // Returns null and leaves the position untouched when the frame is not complete yet;
+    // otherwise advances past the frame. The view is only valid until the buffer changes.
+    RespCommand parse(ByteBuffer buffer) throws ProtocolException {
+        byte[] data = buffer.array();
+        int base = buffer.arrayOffset() + buffer.position();
+        int limit = buffer.arrayOffset() + buffer.limit();
+        int p = base + cursor;
+
+        if (argc < 0) {
+            if (p >= limit) {
+                return null;
+            }
+            if (data[p] != '*') {
+                return parseInline(buffer, data, base, limit);
+            }
+            int eol = findCrlf(data, p, limit);
+            if (eol < 0) {
+                if (limit - p > MAX_INLINE_LENGTH) {
+                    throw new ProtocolException("too big mbulk count string");
+                }
+                return null;
+            }
+            int count = (int) parseLong(data, p + 1, eol, "invalid multibulk length");
+            if (count > 1024 * 1024) {
+                throw new ProtocolException("invalid multibulk length");
+            }
+            p = eol + 2;
+            if (count <= 0) {
+                return complete(buffer, data, base, p, 0);
+            }
+            argc = count;
+            argIndex = 0;
+            if (offsets.length < count) {
+                offsets = new int[count];
+                lengths = new int[count];
+            }
+            cursor = p - base;
+        }
+
+        while (argIndex < argc) {
+            if (bulkLength < 0) {
+                if (p >= limit) {
+                    return null;
+                }
+                if (data[p] != '$') {
+                    throw new ProtocolException("expected '$', got '" + (char) data[p] + "'");
+                }
+                int eol = findCrlf(data, p, limit);
+                if (eol < 0) {
+                    if (limit - p > MAX_INLINE_LENGTH) {
+                        throw new ProtocolException("too big bulk count string");
+                    }
+                    return null;
+                }
+                long length = parseLong(data, p + 1, eol, "invalid bulk length");
+                if (length < 0 || length > MAX_BULK_LENGTH) {
+                    throw new ProtocolException("invalid bulk length");
+                }
+                bulkLength = (int) length;
+                p = eol + 2;
+                cursor = p - base;
+            }
+            if (limit - p < bulkLength + 2L) {
+                return null;
+            }
+            if (data[p + bulkLength] != '\r' || data[p + bulkLength + 1] != '\n') {
+                throw new ProtocolException("bulk string is not terminated by CRLF");
+            }
+            offsets[argIndex] = p - base;
+            lengths[argIndex] = bulkLength;
+            argIndex++;
+            p += bulkLength + 2;
+            cursor = p - base;
+            bulkLength = -1;
+        }
+        return complete(buffer, data, base, p, argc);
+    }
+
+    // Number of bytes the parser needs buffered before it can make progress on a large bulk
+    int pendingBulkBytes() {
+        return bulkLength < 0 ? 0 : bulkLength + 2;
+    }
+
+    private RespCommand parseInline(ByteBuffer buffer, byte[] data, int base, int limit) throws ProtocolException {
+        int eol = -1;
+        for (int i = base; i < limit; i++) {
+            if (data[i] == '\n') {
+                eol = i;
+                break;
+            }
+        }
+        if (eol < 0) {
+            if (limit - base > MAX_INLINE_LENGTH) {
+                throw new ProtocolException("too big inline request");
+            }
+            return null;
+        }
+        int end = eol > base && data[eol - 1] == '\r' ? eol - 1 : eol;
+        int count = 0;
+        int i = base;
+        while (i < end) {
+            while (i < end && data[i] == ' ') i++;
+            if (i == end) break;
+            int start = i;
+            while (i < end && data[i] != ' ') i++;
+            if (offsets.length == count) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            offsets[count] = start - base;
+            lengths[count] = i - start;
+            count++;
+        }
+        return complete(buffer, data, base, eol + 1, count);
+    }
+
+    private RespCommand complete(ByteBuffer buffer, byte[] data, int base, int end, int count) {
+        command.set(data, base, count, offsets, lengths, end - base);
+        buffer.position(end - buffer.arrayOffset());
+        argc = -1;
+        argIndex = 0;
+        cursor = 0;
+        bulkLength = -1;
+        return command;
+    }
+
+    // Returns the end offset (exclusive) of one complete RESP2/RESP3 value starting at p, or -1 if
+    // more bytes are needed. Used to walk replies without materializing them.
+    static int skipValue(byte[] data, int p, int limit) throws ProtocolException {
+        if (p >= limit) {
+            return -1;
+        }
+        int eol = findCrlf(data, p, limit);
+        if (eol < 0) {
+            return -1;
+        }
+        byte type = data[p];
+        switch (type) {
+            case '+', '-', ':', '_', ',', '#', '(':
+                return eol + 2;
+            case '$', '=', '!': {
+                long length = parseLong(data, p + 1, eol, "invalid bulk length");
+                if (length < 0) {
+                    return eol + 2;
+                }
+                long end = eol + 2 + length + 2;
+                return end > limit ? -1 : (int) end;
+            }
+            case '*', '~', '>', '%', '|': {
+                long count = parseLong(data, p + 1, eol, "invalid aggregate length");
+                if (type == '%' || type == '|') {
+                    count *= 2;
+                }
+                int next = eol + 2;
+                for (long i = 0; i < count; i++) {
+                    next = skipValue(data, next, limit);
+                    if (next < 0) {
+                        return -1;
+                    }
+                }
+                if (type == '|') {
+                    return skipValue(data, next, limit);
+                }
+                return next;
+            }
+            default:
+                throw new ProtocolException("unknown reply type '" + (char) type + "'");
+        }
+    }
+
+    static int findCrlf(byte[] data, int from, int limit) {
+        for (int i = from; i + 1 < limit; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static long parseLong(byte[] data, int from, int to, String error) throws ProtocolException {
+        if (from >= to) {
+            throw new ProtocolException(error);
+        }
+        boolean negative = data[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i >= to || to - i > 18) {
+            throw new ProtocolException(error);
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new ProtocolException(error);
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+}
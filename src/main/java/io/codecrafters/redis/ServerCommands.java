@@ -0,0 +1,451 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ServerCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("ping", -1, Command.FAST | Command.SUBSCRIBER, 0, 0, 0, ServerCommands::ping));
+        table.register(new Command("quit", -1, Command.FAST | Command.SUBSCRIBER | Command.NO_QUEUE, 0, 0, 0, ServerCommands::quit));
+        table.register(new Command("echo", 2, Command.FAST, 0, 0, 0, ServerCommands::echo));
+        table.register(new Command("config", -2, Command.ADMIN, 0, 0, 0, ServerCommands::config));
+        table.register(new Command("keys", 2, Command.READONLY, 0, 0, 0, ServerCommands::keys));
+        table.register(new Command("scan", -2, Command.READONLY, 0, 0, 0, ServerCommands::scan));
+        table.register(new Command("dbsize", 1, Command.READONLY | Command.FAST, 0, 0, 0, ServerCommands::dbsize));
+        table.register(new Command("hscan", -3, Command.READONLY, 1, 1, 1, ServerCommands::collectionScan));
+        table.register(new Command("sscan", -3, Command.READONLY, 1, 1, 1, ServerCommands::collectionScan));
+        table.register(new Command("zscan", -3, Command.READONLY, 1, 1, 1, ServerCommands::collectionScan));
+        table.register(new Command("type", 2, Command.READONLY | Command.FAST, 1, 1, 1, ServerCommands::type));
+        table.register(new Command("info", -1, 0, 0, 0, 0, ServerCommands::info));
+        table.register(new Command("command", -1, 0, 0, 0, 0, ServerCommands::command));
+        table.register(new Command("save", 1, Command.ADMIN | Command.NO_MULTI, 0, 0, 0, ServerCommands::save));
+        table.register(new Command("bgsave", -1, Command.ADMIN, 0, 0, 0, ServerCommands::bgsave));
+        table.register(new Command("bgrewriteaof", 1, Command.ADMIN | Command.NO_MULTI, 0, 0, 0, ServerCommands::bgrewriteaof));
+        table.register(new Command("lastsave", 1, Command.FAST, 0, 0, 0, ServerCommands::lastsave));
+        table.register(new Command("memory", -2, Command.READONLY, 2, 2, 1, ServerCommands::memory));
+        table.register(new Command("slowlog", -2, Command.ADMIN, 0, 0, 0, ServerCommands::slowlog));
+        table.register(new Command("latency", -2, Command.ADMIN, 0, 0, 0, ServerCommands::latency));
+    }
+
+    // A RESP2 subscriber gets its pong as an array like the messages it reads; RESP3 tells them apart
+    static void ping(Client client, RespCommand command) {
+        if (client.subscriptions() > 0 && client.protocol < 3) {
+            client.writeArrayHeader(2);
+            client.writeBulk("pong");
+            client.writeBulk(command.argc > 1 ? command.bytes(1) : new byte[0]);
+        } else if (command.argc > 1) {
+            client.writeBulk(command.bytes(1));
+        } else {
+            client.writeSimple("PONG");
+        }
+    }
+
+    static void quit(Client client, RespCommand command) {
+        client.writeSimple("OK");
+        client.flush();
+        client.close();
+    }
+
+    static void echo(Client client, RespCommand command) {
+        client.writeBulk(command.bytes(1));
+    }
+
+    // Parameters CONFIG SET may change while running; the rest are read once at startup
+    static final Set<String> RUNTIME_CONFIG = Set.of("slowlog-log-slower-than", "slowlog-max-len");
+
+    static void config(Client client, RespCommand command) {
+        if (command.equalsIgnoreCase(1, "resetstat") && command.argc == 2) {
+            Stats.reset();
+            client.writeSimple("OK");
+            return;
+        }
+        if (command.equalsIgnoreCase(1, "set") && command.argc == 4) {
+            configSet(client, command.string(2).toLowerCase(), command.string(3));
+            return;
+        }
+        if (!command.equalsIgnoreCase(1, "get") || command.argc < 3) {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for 'config' command");
+            return;
+        }
+        String name = command.string(2).toLowerCase();
+        if (Config.values.containsKey(name)) {
+            client.writeArrayHeader(2);
+            client.writeBulk(name);
+            client.writeBulk(Config.get(name));
+        } else {
+            client.writeArrayHeader(0);
+        }
+    }
+
+    private static void configSet(Client client, String name, String value) {
+        if (!RUNTIME_CONFIG.contains(name)) {
+            client.writeError("ERR Unknown option or number of arguments for CONFIG SET - '" + name + "'");
+            return;
+        }
+        try {
+            Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR CONFIG SET failed (possibly related to argument '" + name + "') - argument couldn't be parsed into an integer");
+            return;
+        }
+        Config.values.put(name, value);
+        Slowlog.reload();
+        client.writeSimple("OK");
+    }
+
+    // KEYS pattern walks the whole keyspace in one reply, as in Redis; SCAN is the way to do it in
+    // steps. A pattern without wildcards is a single lookup. Expired keys still waiting for deletion
+    // are left out.
+    static void keys(Client client, RespCommand command) {
+        Glob glob = Glob.compile(command.string(1));
+        ArrayList<String> keys = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        String literal = glob.literal();
+        if (literal != null) {
+            Keyspace.Entry entry = Main.keyspace.data.get(literal);
+            if (entry != null && isLive(entry, now)) {
+                keys.add(literal);
+            }
+        } else {
+            for (Keyspace.Entry entry : Main.keyspace.data.values()) {
+                if (isLive(entry, now) && glob.matches(entry.key)) {
+                    keys.add(entry.key);
+                }
+            }
+        }
+        client.writeArrayHeader(keys.size());
+        for (String key : keys) {
+            client.writeBulk(key);
+        }
+    }
+
+    private static boolean isLive(Keyspace.Entry entry, long now) {
+        return entry.expireAt == Keyspace.NO_EXPIRE || now < entry.expireAt;
+    }
+
+    // SCAN cursor [MATCH pattern] [COUNT count] [TYPE type]. Each call looks at about COUNT keys,
+    // one stripe lock at a time, and MATCH and TYPE only filter what was looked at, as in Redis.
+    static void scan(Client client, RespCommand command) {
+        long cursor = parseCursor(client, command, 1);
+        if (cursor < 0) {
+            return;
+        }
+        Glob match = null;
+        String type = null;
+        int count = 10;
+        for (int i = 2; i < command.argc; i += 2) {
+            if (i + 1 >= command.argc) {
+                client.writeError("ERR syntax error");
+                return;
+            }
+            if (command.equalsIgnoreCase(i, "match")) {
+                match = Glob.compile(command.string(i + 1));
+            } else if (command.equalsIgnoreCase(i, "type")) {
+                type = command.string(i + 1).toLowerCase();
+            } else if (command.equalsIgnoreCase(i, "count")) {
+                long parsed;
+                try {
+                    parsed = command.parseLong(i + 1);
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return;
+                }
+                if (parsed < 1) {
+                    client.writeError("ERR syntax error");
+                    return;
+                }
+                count = (int) Math.min(parsed, Integer.MAX_VALUE);
+            } else {
+                client.writeError("ERR syntax error");
+                return;
+            }
+        }
+        ArrayList<String> keys = new ArrayList<>();
+        Glob filter = match;
+        String wantedType = type;
+        long next = Main.keyspace.scan(cursor, count, !client.executingMulti, entry -> {
+            if ((filter == null || filter.matches(entry.key))
+                    && (wantedType == null || wantedType.equals(typeName(entry.value)))) {
+                keys.add(entry.key);
+            }
+        });
+        client.writeArrayHeader(2);
+        client.writeBulk(Long.toUnsignedString(next));
+        client.writeArrayHeader(keys.size());
+        for (String key : keys) {
+            client.writeBulk(key);
+        }
+    }
+
+    // The cursor argument, or -1 after replying with an error
+    private static long parseCursor(Client client, RespCommand command, int i) {
+        try {
+            long cursor = command.parseLong(i);
+            if (cursor >= 0) {
+                return cursor;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        client.writeError("ERR invalid cursor");
+        return -1;
+    }
+
+    // HSCAN, SSCAN and ZSCAN key cursor [...]. There are no hashes, sets or sorted sets here, so
+    // like Redis they finish at once on a missing key and refuse a key of another type.
+    static void collectionScan(Client client, RespCommand command) {
+        if (parseCursor(client, command, 2) < 0) {
+            return;
+        }
+        if (Main.keyspace.get(command.string(1)) != null) {
+            throw new Keyspace.WrongTypeException();
+        }
+        client.writeArrayHeader(2);
+        client.writeBulk("0");
+        client.writeArrayHeader(0);
+    }
+
+    static void dbsize(Client client, RespCommand command) {
+        client.writeInteger(Main.keyspace.size());
+    }
+
+    static void type(Client client, RespCommand command) {
+        client.writeSimple(typeName(Main.keyspace.get(command.string(1))));
+    }
+
+    static String typeName(Object value) {
+        if (StringValue.isString(value)) {
+            return "string";
+        } else if (value instanceof QuickList) {
+            return "list";
+        } else if (value instanceof Stream) {
+            return "stream";
+        }
+        return "none";
+    }
+
+    // MEMORY USAGE key [SAMPLES count]. Lists and streams keep their heap size up to date as they
+    // change, for maxmemory accounting, so the exact figure costs O(1) and there is nothing for
+    // SAMPLES to trade off; it is validated and ignored.
+    static void memory(Client client, RespCommand command) {
+        if (!command.equalsIgnoreCase(1, "usage") || command.argc < 3) {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for 'memory' command");
+            return;
+        }
+        if (command.argc > 3) {
+            if (command.argc != 5 || !command.equalsIgnoreCase(3, "samples")) {
+                client.writeError("ERR syntax error");
+                return;
+            }
+            try {
+                if (command.parseLong(4) < 0) {
+                    throw new NumberFormatException();
+                }
+            } catch (NumberFormatException e) {
+                client.writeError("ERR value is out of range, must be positive");
+                return;
+            }
+        }
+        Keyspace.Entry entry = Main.keyspace.peek(command.string(2));
+        if (entry == null) {
+            client.writeNull();
+        } else {
+            client.writeInteger(Keyspace.memoryUsage(entry));
+        }
+    }
+
+    // SAVE blocks every client until the file is on disk; BGSAVE does the same work on its own thread
+    static void save(Client client, RespCommand command) {
+        if (Persistence.aofRewriteInProgress) {
+            client.writeError("ERR Background AOF rewrite in progress, can't SAVE right now");
+        } else if (Persistence.saving) {
+            client.writeError("ERR Background save already in progress");
+        } else if (Persistence.save()) {
+            client.writeSimple("OK");
+        } else {
+            client.writeError("ERR");
+        }
+    }
+
+    static void bgsave(Client client, RespCommand command) {
+        if (Persistence.aofRewriteInProgress) {
+            client.writeError("ERR Another child process is active (AOF?): can't BGSAVE right now.");
+        } else if (Persistence.bgsave()) {
+            client.writeSimple("Background saving started");
+        } else {
+            client.writeError("ERR Background save already in progress");
+        }
+    }
+
+    static void bgrewriteaof(Client client, RespCommand command) {
+        if (Aof.instance == null) {
+            client.writeError("ERR Append only file is disabled");
+        } else if (Persistence.aofRewriteInProgress) {
+            client.writeError("ERR Background append only file rewriting already in progress");
+        } else if (Aof.startRewrite()) {
+            client.writeSimple("Background append only file rewriting started");
+        } else {
+            client.writeSimple("Background append only file rewriting scheduled");
+        }
+    }
+
+    static void lastsave(Client client, RespCommand command) {
+        client.writeInteger(Persistence.lastSaveTime / 1000);
+    }
+
+    // INFO [section ...]. Without a section, or with "default", every section but commandstats and
+    // latencystats is returned, as those have a line per command; "all" and "everything" add them.
+    static void info(Client client, RespCommand command) {
+        Set<String> sections = new HashSet<>();
+        for (int i = 1; i < command.argc; i++) {
+            sections.add(command.string(i).toLowerCase());
+        }
+        boolean all = sections.contains("all") || sections.contains("everything");
+        boolean defaults = all || sections.isEmpty() || sections.contains("default");
+        StringBuilder info = new StringBuilder();
+        if (defaults || sections.contains("clients")) {
+            info.append(Stats.clientsInfo()).append("\r\n");
+        }
+        if (defaults || sections.contains("memory")) {
+            info.append(Eviction.info()).append("\r\n");
+        }
+        if (defaults || sections.contains("persistence")) {
+            info.append(Persistence.info()).append("\r\n");
+        }
+        if (defaults || sections.contains("stats")) {
+            info.append(Stats.info()).append("\r\n");
+        }
+        if (defaults || sections.contains("replication")) {
+            info.append(Replication.info()).append("\r\n");
+        }
+        if (all || sections.contains("commandstats")) {
+            info.append(Stats.commandStats()).append("\r\n");
+        }
+        if (all || sections.contains("latencystats")) {
+            info.append(Stats.latencyStats()).append("\r\n");
+        }
+        if (defaults || sections.contains("keyspace")) {
+            info.append("# Keyspace\r\n");
+            if (Main.keyspace.size() > 0) {
+                info.append("db0:keys=").append(Main.keyspace.size())
+                        .append(",expires=").append(Main.keyspace.expiresSize()).append(",avg_ttl=0\r\n");
+            }
+        }
+        client.writeBulk(info.toString());
+    }
+
+    static void command(Client client, RespCommand command) {
+        if (command.argc == 1) {
+            List<Command> all = Main.commands.all();
+            client.writeArrayHeader(all.size());
+            for (Command c : all) {
+                writeCommandInfo(client, c);
+            }
+        } else if (command.equalsIgnoreCase(1, "count")) {
+            client.writeInteger(Main.commands.size());
+        } else if (command.equalsIgnoreCase(1, "info")) {
+            client.writeArrayHeader(command.argc - 2);
+            for (int i = 2; i < command.argc; i++) {
+                Command c = Main.commands.lookup(command.string(i));
+                if (c == null) {
+                    client.writeNullArray();
+                } else {
+                    writeCommandInfo(client, c);
+                }
+            }
+        } else if (command.equalsIgnoreCase(1, "docs")) {
+            client.writeArrayHeader(0);
+        } else {
+            client.writeError("ERR unknown subcommand '" + command.string(1) + "'. Try COMMAND HELP.");
+        }
+    }
+
+    private static void writeCommandInfo(Client client, Command c) {
+        client.writeArrayHeader(10);
+        client.writeBulk(c.name);
+        client.writeInteger(c.arity);
+        List<String> flags = c.flagNames();
+        client.writeArrayHeader(flags.size());
+        for (String flag : flags) {
+            client.writeSimple(flag);
+        }
+        client.writeInteger(c.firstKey);
+        client.writeInteger(c.lastKey);
+        client.writeInteger(c.keyStep);
+        // ACL categories, tips, key specs and subcommands are not tracked
+        for (int i = 0; i < 4; i++) {
+            client.writeArrayHeader(0);
+        }
+    }
+
+    // SLOWLOG GET [count] | LEN | RESET
+    static void slowlog(Client client, RespCommand command) {
+        if (command.equalsIgnoreCase(1, "get") && command.argc <= 3) {
+            int count = 10;
+            if (command.argc == 3) {
+                try {
+                    count = (int) Math.max(-1, Math.min(command.parseLong(2), Integer.MAX_VALUE));
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return;
+                }
+            }
+            List<Slowlog.Entry> entries = Slowlog.get(count);
+            client.writeArrayHeader(entries.size());
+            for (Slowlog.Entry entry : entries) {
+                client.writeArrayHeader(6);
+                client.writeInteger(entry.id);
+                client.writeInteger(entry.time);
+                client.writeInteger(entry.micros);
+                client.writeArrayHeader(entry.args.length);
+                for (String arg : entry.args) {
+                    client.writeBulk(arg);
+                }
+                client.writeBulk(entry.address);
+                client.writeBulk(entry.name);
+            }
+        } else if (command.equalsIgnoreCase(1, "len") && command.argc == 2) {
+            client.writeInteger(Slowlog.length());
+        } else if (command.equalsIgnoreCase(1, "reset") && command.argc == 2) {
+            Slowlog.reset();
+            client.writeSimple("OK");
+        } else {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for '" + command.string(1) + "'. Try SLOWLOG HELP.");
+        }
+    }
+
+    // LATENCY HISTOGRAM [command ...]: per command, its calls and the cumulative count of calls
+    // that took at most 1, 2, 4, ... microseconds. Without names, every command called so far.
+    static void latency(Client client, RespCommand command) {
+        if (!command.equalsIgnoreCase(1, "histogram")) {
+            client.writeError("ERR unknown subcommand or wrong number of arguments for '" + command.string(1) + "'. Try LATENCY HELP.");
+            return;
+        }
+        List<Command> selected = new ArrayList<>();
+        if (command.argc == 2) {
+            selected.addAll(Stats.byName());
+        } else {
+            for (int i = 2; i < command.argc; i++) {
+                Command c = Main.commands.lookup(command.string(i));
+                if (c != null && !selected.contains(c)) {
+                    selected.add(c);
+                }
+            }
+        }
+        selected.removeIf(c -> c.calls.sum() == 0);
+        client.writeArrayHeader(selected.size() * 2);
+        for (Command c : selected) {
+            client.writeBulk(c.name);
+            client.writeArrayHeader(4);
+            client.writeBulk("calls");
+            client.writeInteger(c.calls.sum());
+            client.writeBulk("histogram_usec");
+            long[] buckets = c.latency.cumulativeMicros();
+            client.writeArrayHeader(buckets.length);
+            for (long value : buckets) {
+                client.writeInteger(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+
+// Shard mode, enabled with --shards N: the 16384 hash slots of Redis Cluster are split into N
+// contiguous ranges, one per event loop, and the keyspace's lock stripes follow the slots so that
+// each stripe belongs to a single shard. Single-key commands whose key another shard owns are
+// handed to that shard's loop through its task queue and run there, consecutive ones for the same
+// shard in one task (see MIN_HANDOVER for the exception); the connection reads nothing more until
+// the replies are back, so pipelined replies keep their order. Every other command, multi-key or
+// keyless, runs on the connection's own loop under the stripe locks as before, which also keeps it
+// atomic against the shards. A key's owner takes its stripe uncontended, so the shards stop
+// competing for the locks of each other's keys.
+public class Sharding {
+    static final int SLOTS = 16384;
+    static final int SHARDS = Config.getInt("shards");
+    static final boolean ENABLED = SHARDS > 0;
+    // Commands forwarded in one task at most, so one long pipeline cannot hold a shard for long
+    static final int MAX_BATCH = 128;
+    // A run cut short by a command for elsewhere is only handed over from this long; shorter ones
+    // run on the client's loop, as a pipeline of scattered keys would otherwise cross loops for
+    // nearly every command. The run the input ends with is always handed over.
+    static final int MIN_HANDOVER = 16;
+
+    // CRC16-CCITT (XMODEM), polynomial 0x1021, as Redis Cluster hashes keys
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            CRC16_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    static int crc16(String key, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ key.charAt(i)) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    // Only the part between the first { and the } after it is hashed, when it is not empty, so keys
+    // like {user:1}:name and {user:1}:mail land in the same slot
+    static int slot(String key) {
+        int open = key.indexOf('{');
+        if (open != -1) {
+            int close = key.indexOf('}', open + 1);
+            if (close > open + 1) {
+                return crc16(key, open + 1, close) & (SLOTS - 1);
+            }
+        }
+        return crc16(key, 0, key.length()) & (SLOTS - 1);
+    }
+
+    static int shardOf(int slot) {
+        return (int) ((long) slot * SHARDS / SLOTS);
+    }
+
+    // First slot of the shard; its last is one before the next shard's first
+    static int firstSlot(int shard) {
+        return (int) (((long) shard * SLOTS + SHARDS - 1) / SHARDS);
+    }
+
+    // Commands forwarded to a shard in one task: a run of consecutive commands of one connection
+    // that all belong to that shard
+    static final class Batch {
+        final EventLoop owner;
+        final ArrayList<Command> commands = new ArrayList<>();
+        final ArrayList<RespCommand> args = new ArrayList<>();
+
+        Batch(EventLoop owner) {
+            this.owner = owner;
+        }
+    }
+
+    // The loop of the shard that owns the command's key, or null if the command runs on the client's
+    // own loop: keyless, multi-key and blocking commands, commands whose key is local, and anything
+    // from the master link, whose stream must apply in order with its offset
+    static EventLoop owner(Client client, Command command, RespCommand args) {
+        if (client.loop == null || client.master || command.keyFinder != null || command.firstKey == 0
+                || command.firstKey != command.lastKey || command.firstKey >= args.argc
+                || command.has(Command.BLOCKING)) {
+            return null;
+        }
+        EventLoop owner = Main.loops[shardOf(slot(args.string(command.firstKey)))];
+        return owner == client.loop ? null : owner;
+    }
+
+    // Adds the command to the client's batch if another shard owns its key; the batch goes out when
+    // the client's input runs out or a command that cannot join it comes up
+    static boolean forward(Client client, Command command, RespCommand args) {
+        EventLoop owner = owner(client, command, args);
+        if (owner == null) {
+            return false;
+        }
+        if (client.forwardBatch == null) {
+            client.forwardBatch = new Batch(owner);
+        }
+        // The arguments point into the read buffer, which keeps filling meanwhile
+        client.forwardBatch.commands.add(command);
+        client.forwardBatch.args.add(args.copy());
+        return true;
+    }
+
+    // Whether the next command goes into the pending batch. It must get to forward() with the same
+    // owner, so none of the checks dispatch makes before that may reply to it; anything else waits
+    // until the batch is back.
+    static boolean joins(Client client, RespCommand args) {
+        Batch batch = client.forwardBatch;
+        if (batch.commands.size() >= MAX_BATCH || client.encounteredMulti || Eviction.MAXMEMORY > 0
+                || (client.subscriptions() > 0 && client.protocol < 3)) {
+            return false;
+        }
+        Command command = Main.commands.lookup(args);
+        return command != null && command.checkArity(args.argc) && owner(client, command, args) == batch.owner;
+    }
+
+    // Hands the batch to its shard; the client reads nothing more until it is back
+    static void dispatch(Client client) {
+        Batch batch = client.forwardBatch;
+        client.forwardBatch = null;
+        client.forwarded = true;
+        batch.owner.execute(() -> {
+            run(client, batch);
+            client.loop.execute(() -> resume(client));
+        });
+    }
+
+    // Any thread may run the batch, the stripe locks keep it correct; the owner only runs it faster
+    static void run(Client client, Batch batch) {
+        for (int i = 0; i < batch.commands.size(); i++) {
+            try {
+                Main.call(client, batch.commands.get(i), batch.args.get(i));
+            } catch (RuntimeException e) {
+                System.out.println("Command execution error: " + e);
+                client.writeError("ERR " + e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    // Back on the client's loop: output delivered meanwhile goes after the replies, then the rest of
+    // the pipeline runs
+    private static void resume(Client client) {
+        client.forwarded = false;
+        if (client.closeWhenBack) {
+            client.close();
+            return;
+        }
+        for (byte[] frame : client.heldDeliveries) {
+            client.deliver(frame);
+        }
+        client.heldDeliveries.clear();
+        client.processInput();
+    }
+}
@@ -0,0 +1,101 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Commands that ran for at least slowlog-log-slower-than microseconds, newest first, at most
+// slowlog-max-len of them. Only slow commands get here, so the lock and the argument copies never
+// touch the common path. Like Redis, long argument lists and values are cut short.
+public class Slowlog {
+    static final int MAX_ARGS = 32;
+    static final int MAX_ARG_LENGTH = 128;
+
+    // A negative threshold turns the log off; both can be changed with CONFIG SET
+    static volatile long slowerThan = Long.parseLong(Config.get("slowlog-log-slower-than"));
+    static volatile int maxLength = Config.getInt("slowlog-max-len");
+
+    private static final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private static long nextId = 0;
+
+    static final class Entry {
+        final long id;
+        final long time;
+        final long micros;
+        final String[] args;
+        final String address;
+        final String name;
+
+        Entry(long id, long time, long micros, String[] args, String address, String name) {
+            this.id = id;
+            this.time = time;
+            this.micros = micros;
+            this.args = args;
+            this.address = address;
+            this.name = name;
+        }
+    }
+
+    static void reload() {
+        slowerThan = Long.parseLong(Config.get("slowlog-log-slower-than"));
+        maxLength = Config.getInt("slowlog-max-len");
+        synchronized (entries) {
+            trim();
+        }
+    }
+
+    static void record(Client client, RespCommand args, long micros) {
+        long threshold = slowerThan;
+        if (threshold < 0 || micros < threshold) {
+            return;
+        }
+        int kept = Math.min(args.argc, MAX_ARGS);
+        String[] copy = new String[kept];
+        for (int i = 0; i < kept; i++) {
+            if (i == MAX_ARGS - 1 && args.argc > MAX_ARGS) {
+                copy[i] = "... (" + (args.argc - MAX_ARGS + 1) + " more arguments)";
+            } else if (args.length(i) > MAX_ARG_LENGTH) {
+                copy[i] = args.string(i).substring(0, MAX_ARG_LENGTH)
+                        + "... (" + (args.length(i) - MAX_ARG_LENGTH) + " more bytes)";
+            } else {
+                copy[i] = args.string(i);
+            }
+        }
+        long time = System.currentTimeMillis() / 1000;
+        synchronized (entries) {
+            entries.addFirst(new Entry(nextId++, time, micros, copy, client.address, client.name));
+            trim();
+        }
+    }
+
+    private static void trim() {
+        while (entries.size() > Math.max(0, maxLength)) {
+            entries.removeLast();
+        }
+    }
+
+    static List<Entry> get(int count) {
+        synchronized (entries) {
+            List<Entry> newest = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (count >= 0 && newest.size() == count) {
+                    break;
+                }
+                newest.add(entry);
+            }
+            return newest;
+        }
+    }
+
+    static int length() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static void reset() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.codecrafters.redis;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide counters and the INFO sections built from them and from each command's own counters.
+// Everything on the hot path is a LongAdder bump; the totals are only summed up when INFO asks.
+public class Stats {
+    static final LongAdder connectionsReceived = new LongAdder();
+    static final LongAdder netInputBytes = new LongAdder();
+    static final LongAdder netOutputBytes = new LongAdder();
+    static final LongAdder errorReplies = new LongAdder();
+    static final InstantaneousMetric opsPerSecond = new InstantaneousMetric();
+    static final double[] PERCENTILES = {50, 99, 99.9};
+
+    static long commandsProcessed() {
+        long total = 0;
+        for (Command command : Main.commands.all()) {
+            total += command.calls.sum();
+        }
+        return total;
+    }
+
+    // CONFIG RESETSTAT
+    static void reset() {
+        connectionsReceived.reset();
+        netInputBytes.reset();
+        netOutputBytes.reset();
+        errorReplies.reset();
+        for (Command command : Main.commands.all()) {
+            command.resetStats();
+        }
+    }
+
+    static String info() {
+        return "# Stats\r\n"
+                + "total_connections_received:" + connectionsReceived.sum() + "\r\n"
+                + "total_commands_processed:" + commandsProcessed() + "\r\n"
+                + "instantaneous_ops_per_sec:" + opsPerSecond.perSecond() + "\r\n"
+                + "total_net_input_bytes:" + netInputBytes.sum() + "\r\n"
+                + "total_net_output_bytes:" + netOutputBytes.sum() + "\r\n"
+                + "total_error_replies:" + errorReplies.sum() + "\r\n"
+                + "expired_keys:" + Main.keyspace.expiredKeys.get() + "\r\n"
+                + "instantaneous_expired_keys_per_sec:" + Main.expiredPerSecond.perSecond() + "\r\n"
+                + "expire_cycle_cpu_milliseconds:" + Main.keyspace.expireCycleMillis.get() + "\r\n"
+                + "evicted_keys:" + Eviction.evictedKeys.get() + "\r\n"
+                + "tracking_total_keys:" + Tracking.table.size() + "\r\n"
+                + "tracking_total_prefixes:" + Tracking.prefixes.size() + "\r\n"
+                + "sync_full:" + Replication.fullSyncs.get() + "\r\n"
+                + "sync_partial_ok:" + Replication.partialSyncs.get() + "\r\n"
+                + "sync_partial_err:" + Replication.partialSyncErrors.get() + "\r\n";
+    }
+
+    static String clientsInfo() {
+        int blocked = 0;
+        for (Client client : Client.clients.values()) {
+            if (client.blockedOn != null) {
+                blocked++;
+            }
+        }
+        return "# Clients\r\n"
+                + "connected_clients:" + Client.clients.size() + "\r\n"
+                + "blocked_clients:" + blocked + "\r\n"
+                + "tracking_clients:" + Tracking.clients.get() + "\r\n";
+    }
+
+    // Only commands that were called or rejected at least once, as in Redis
+    static String commandStats() {
+        StringBuilder info = new StringBuilder("# Commandstats\r\n");
+        for (Command command : byName()) {
+            long calls = command.calls.sum();
+            long rejected = command.rejectedCalls.sum();
+            if (calls == 0 && rejected == 0) {
+                continue;
+            }
+            long usec = command.nanos.sum() / 1000;
+            info.append("cmdstat_").append(command.name)
+                    .append(":calls=").append(calls)
+                    .append(",usec=").append(usec)
+                    .append(",usec_per_call=").append(String.format("%.2f", calls == 0 ? 0.0 : (double) usec / calls))
+                    .append(",rejected_calls=").append(rejected)
+                    .append(",failed_calls=").append(command.failedCalls.sum())
+                    .append("\r\n");
+        }
+        return info.toString();
+    }
+
+    static String latencyStats() {
+        StringBuilder info = new StringBuilder("# Latencystats\r\n");
+        for (Command command : byName()) {
+            if (command.calls.sum() == 0) {
+                continue;
+            }
+            info.append("latency_percentiles_usec_").append(command.name).append(":");
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                info.append(i == 0 ? "" : ",").append("p").append(formatPercentile(PERCENTILES[i])).append("=")
+                        .append(String.format("%.3f", command.latency.valueAtPercentile(PERCENTILES[i]) / 1000.0));
+            }
+            info.append("\r\n");
+        }
+        return info.toString();
+    }
+
+    static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    static List<Command> byName() {
+        List<Command> commands = Main.commands.all();
+        commands.sort(Comparator.comparing(command -> command.name));
+        return commands;
+    }
+}
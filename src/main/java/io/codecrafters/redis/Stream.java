@@ -0,0 +1,372 @@
+package io.codecrafters.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// The stream value: entries in ID order, packed into nodes of up to stream-node-max-entries entries
+// and stream-node-max-bytes bytes, as Redis packs them into listpacks under a radix tree. A node is
+// found by binary search on the IDs of the nodes, then scanned. IDs are (ms, seq) pairs of unsigned
+// 64-bit values. Inside a node each entry stores its ID as deltas from the node's first ID, then
+// its field/value pairs, all varint-length prefixed Latin-1 bytes.
+public class Stream {
+    static final int NODE_MAX_ENTRIES = Config.getInt("stream-node-max-entries");
+    static final int NODE_MAX_BYTES = Config.getInt("stream-node-max-bytes");
+    // Default LIMIT of approximate trimming, as in Redis
+    static final long TRIM_LIMIT = 100L * NODE_MAX_ENTRIES;
+
+    static final class Entry {
+        final long ms;
+        final long seq;
+        // field, value, field, value...
+        final String[] fields;
+
+        Entry(long ms, long seq, String[] fields) {
+            this.ms = ms;
+            this.seq = seq;
+            this.fields = fields;
+        }
+    }
+
+    // Bytes below used never change once written, so a snapshot may share them
+    static final class Node {
+        final long firstMs;
+        final long firstSeq;
+        long lastMs;
+        long lastSeq;
+        byte[] data;
+        int used;
+        int count;
+
+        Node(long firstMs, long firstSeq, int capacity) {
+            this.firstMs = firstMs;
+            this.firstSeq = firstSeq;
+            this.data = new byte[capacity];
+        }
+
+        Node copy() {
+            Node copy = new Node(firstMs, firstSeq, 0);
+            copy.lastMs = lastMs;
+            copy.lastSeq = lastSeq;
+            copy.data = data;
+            copy.used = used;
+            copy.count = count;
+            return copy;
+        }
+    }
+
+    // Live nodes are nodes[first, end)
+    private Node[] nodes = new Node[4];
+    private int first;
+    private int end;
+    private long length;
+    // Kept up to date as nodes come, go and grow, so maxmemory accounting never walks the stream
+    private long heapBytes = 48 + StringValue.align(16 + 4 * 4);
+    // The last ID ever added, which XADD must exceed even after the entry was trimmed
+    long lastMs;
+    long lastSeq;
+
+    long length() {
+        return length;
+    }
+
+    int nodeCount() {
+        return end - first;
+    }
+
+    // Heap bytes of the stream object, its node array, nodes and their data, counting data that a
+    // snapshot shares as well
+    long memoryUsage() {
+        return heapBytes;
+    }
+
+    private static long nodeBytes(Node node) {
+        return 56 + StringValue.align(16 + node.data.length);
+    }
+
+    private static long arrayBytes(Node[] nodes) {
+        return StringValue.align(16 + 4L * nodes.length);
+    }
+
+    static int compare(long ms1, long seq1, long ms2, long seq2) {
+        int c = Long.compareUnsigned(ms1, ms2);
+        return c != 0 ? c : Long.compareUnsigned(seq1, seq2);
+    }
+
+    static String formatId(long ms, long seq) {
+        return Long.toUnsignedString(ms) + "-" + Long.toUnsignedString(seq);
+    }
+
+    // The ID must be greater than the last one
+    void add(long ms, long seq, String[] fields) {
+        int size = encodedSize(fields);
+        Node node = end > first ? nodes[end - 1] : null;
+        if (node == null || node.count >= NODE_MAX_ENTRIES || (node.used > 0 && node.used + size > NODE_MAX_BYTES)) {
+            node = new Node(ms, seq, Math.max(64, Math.min(NODE_MAX_BYTES, size * 4)));
+            if (end == nodes.length) {
+                if (first > 0) {
+                    System.arraycopy(nodes, first, nodes, 0, end - first);
+                    Arrays.fill(nodes, end - first, end, null);
+                    end -= first;
+                    first = 0;
+                } else {
+                    heapBytes -= arrayBytes(nodes);
+                    nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                    heapBytes += arrayBytes(nodes);
+                }
+            }
+            nodes[end++] = node;
+            heapBytes += nodeBytes(node);
+        }
+        if (node.data.length - node.used < size) {
+            heapBytes -= nodeBytes(node);
+            node.data = Arrays.copyOf(node.data, Math.max(node.data.length * 2, node.used + size));
+            heapBytes += nodeBytes(node);
+        }
+        node.used = encode(node, node.used, ms, seq, fields);
+        node.lastMs = ms;
+        node.lastSeq = seq;
+        node.count++;
+        length++;
+        lastMs = ms;
+        lastSeq = seq;
+    }
+
+    // Moves the last ID forward, as XSETID does; false if an entry already has a greater ID
+    boolean setLastId(long ms, long seq) {
+        if (end > first && compare(ms, seq, nodes[end - 1].lastMs, nodes[end - 1].lastSeq) < 0) {
+            return false;
+        }
+        lastMs = ms;
+        lastSeq = seq;
+        return true;
+    }
+
+    // Entries with start <= ID <= end, at most count of them (0 for all), in ID order or reversed
+    ArrayList<Entry> range(long startMs, long startSeq, long endMs, long endSeq, long count, boolean reverse) {
+        ArrayList<Entry> entries = new ArrayList<>();
+        if (compare(startMs, startSeq, endMs, endSeq) > 0) {
+            return entries;
+        }
+        if (!reverse) {
+            for (int i = firstNodeEndingAtOrAfter(startMs, startSeq); i < end; i++) {
+                for (Entry entry : decode(nodes[i], startMs, startSeq, count == 0 ? Long.MAX_VALUE : count - entries.size())) {
+                    if (compare(entry.ms, entry.seq, endMs, endSeq) > 0) {
+                        return entries;
+                    }
+                    if (compare(entry.ms, entry.seq, startMs, startSeq) >= 0) {
+                        entries.add(entry);
+                        if (entries.size() == count) {
+                            return entries;
+                        }
+                    }
+                }
+            }
+        } else {
+            for (int i = firstNodeEndingAtOrAfter(endMs, endSeq); i >= first; i--) {
+                if (i == end) {
+                    continue;
+                }
+                ArrayList<Entry> decoded = decode(nodes[i]);
+                for (int j = decoded.size() - 1; j >= 0; j--) {
+                    Entry entry = decoded.get(j);
+                    if (compare(entry.ms, entry.seq, startMs, startSeq) < 0) {
+                        return entries;
+                    }
+                    if (compare(entry.ms, entry.seq, endMs, endSeq) <= 0) {
+                        entries.add(entry);
+                        if (entries.size() == count) {
+                            return entries;
+                        }
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    // Binary search over the nodes by their last ID; end if every node ends before the ID
+    private int firstNodeEndingAtOrAfter(long ms, long seq) {
+        int low = first;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(nodes[mid].lastMs, nodes[mid].lastSeq, ms, seq) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Trims to at most maxLength entries. Approximate trimming only drops whole nodes and stops
+    // after limit entries, which keeps it cheap. Returns the number of entries removed.
+    long trimToLength(long maxLength, boolean approximate, long limit) {
+        long removed = 0;
+        while (end > first && length - nodes[first].count >= maxLength
+                && (!approximate || removed + nodes[first].count <= limit)) {
+            removed += dropFirstNode();
+        }
+        if (!approximate && length > maxLength) {
+            removed += dropFromFirstNode((int) (length - maxLength));
+        }
+        return removed;
+    }
+
+    // Removes the entries with IDs below minMs-minSeq, with the same approximation as trimToLength
+    long trimToMinId(long minMs, long minSeq, boolean approximate, long limit) {
+        long removed = 0;
+        while (end > first && compare(nodes[first].lastMs, nodes[first].lastSeq, minMs, minSeq) < 0
+                && (!approximate || removed + nodes[first].count <= limit)) {
+            removed += dropFirstNode();
+        }
+        if (!approximate && end > first) {
+            int below = 0;
+            for (Entry entry : decode(nodes[first])) {
+                if (compare(entry.ms, entry.seq, minMs, minSeq) >= 0) {
+                    break;
+                }
+                below++;
+            }
+            removed += dropFromFirstNode(below);
+        }
+        return removed;
+    }
+
+    private int dropFirstNode() {
+        int count = nodes[first].count;
+        heapBytes -= nodeBytes(nodes[first]);
+        nodes[first++] = null;
+        length -= count;
+        return count;
+    }
+
+    // Re-encodes the first node without its first n entries, into a new node so snapshots sharing
+    // the old one are unaffected
+    private int dropFromFirstNode(int n) {
+        if (n == 0) {
+            return 0;
+        }
+        ArrayList<Entry> entries = decode(nodes[first]);
+        Entry head = entries.get(n);
+        Node node = new Node(head.ms, head.seq, nodes[first].used);
+        for (int i = n; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            node.used = encode(node, node.used, entry.ms, entry.seq, entry.fields);
+            node.count++;
+        }
+        node.lastMs = nodes[first].lastMs;
+        node.lastSeq = nodes[first].lastSeq;
+        heapBytes += nodeBytes(node) - nodeBytes(nodes[first]);
+        nodes[first] = node;
+        length -= n;
+        return n;
+    }
+
+    // Nodes are shared except the last, the only one appended to in place
+    Stream copy() {
+        Stream copy = new Stream();
+        copy.nodes = Arrays.copyOfRange(nodes, first, Math.max(end, first + 1));
+        copy.end = end - first;
+        if (copy.end > 0) {
+            copy.nodes[copy.end - 1] = copy.nodes[copy.end - 1].copy();
+        }
+        copy.length = length;
+        copy.heapBytes = 48 + arrayBytes(copy.nodes);
+        for (int i = 0; i < copy.end; i++) {
+            copy.heapBytes += nodeBytes(copy.nodes[i]);
+        }
+        copy.lastMs = lastMs;
+        copy.lastSeq = lastSeq;
+        return copy;
+    }
+
+    // For persistence: the entries of the i-th live node
+    ArrayList<Entry> nodeEntries(int i) {
+        return decode(nodes[first + i]);
+    }
+
+    private static ArrayList<Entry> decode(Node node) {
+        return decode(node, 0, 0, Long.MAX_VALUE);
+    }
+
+    // Entries of the node from the first with ID >= fromMs-fromSeq, at most limit of them. Entries
+    // before it are skipped over without materializing their fields.
+    private static ArrayList<Entry> decode(Node node, long fromMs, long fromSeq, long limit) {
+        ArrayList<Entry> entries = new ArrayList<>((int) Math.min(node.count, limit));
+        byte[] data = node.data;
+        int[] at = {0};
+        for (int i = 0; i < node.count && entries.size() < limit; i++) {
+            long msDelta = readVarint(data, at);
+            long seq = readVarint(data, at);
+            long ms = node.firstMs + msDelta;
+            if (msDelta == 0) {
+                seq += node.firstSeq;
+            }
+            int fieldCount = (int) readVarint(data, at);
+            if (compare(ms, seq, fromMs, fromSeq) < 0) {
+                for (int f = 0; f < fieldCount; f++) {
+                    int length = (int) readVarint(data, at);
+                    at[0] += length;
+                }
+                continue;
+            }
+            String[] fields = new String[fieldCount];
+            for (int f = 0; f < fields.length; f++) {
+                int length = (int) readVarint(data, at);
+                fields[f] = new String(data, at[0], length, StandardCharsets.ISO_8859_1);
+                at[0] += length;
+            }
+            entries.add(new Entry(ms, seq, fields));
+        }
+        return entries;
+    }
+
+    // Within a node the sequence is stored relative to the first entry's only while the ms part is
+    // the same, since it restarts with every new millisecond
+    private static int encode(Node node, int at, long ms, long seq, String[] fields) {
+        long msDelta = ms - node.firstMs;
+        at = writeVarint(node.data, at, msDelta);
+        at = writeVarint(node.data, at, msDelta == 0 ? seq - node.firstSeq : seq);
+        at = writeVarint(node.data, at, fields.length);
+        for (String field : fields) {
+            at = writeVarint(node.data, at, field.length());
+            for (int i = 0; i < field.length(); i++) {
+                node.data[at++] = (byte) field.charAt(i);
+            }
+        }
+        return at;
+    }
+
+    // An upper bound is enough to size the buffer
+    private static int encodedSize(String[] fields) {
+        int size = 30;
+        for (String field : fields) {
+            size += 5 + field.length();
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] data, int at, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[at++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[at++] = (byte) value;
+        return at;
+    }
+
+    private static long readVarint(byte[] data, int[] at) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = data[at[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package io.codecrafters.redis;
+
+import java.util.ArrayList;
+
+public class StreamCommands {
+    static final long MAX = -1L;
+    static final String INVALID_ID = "ERR Invalid stream ID specified as stream command argument";
+
+    static void register(CommandTable table) {
+        table.register(new Command("xadd", -5, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StreamCommands::xadd));
+        table.register(new Command("xlen", 2, Command.READONLY | Command.FAST, 1, 1, 1, StreamCommands::xlen));
+        table.register(new Command("xrange", -4, Command.READONLY, 1, 1, 1, StreamCommands::xrange));
+        table.register(new Command("xrevrange", -4, Command.READONLY, 1, 1, 1, StreamCommands::xrevrange));
+        table.register(new Command("xtrim", -4, Command.WRITE, 1, 1, 1, StreamCommands::xtrim));
+        table.register(new Command("xsetid", 3, Command.WRITE | Command.FAST, 1, 1, 1, StreamCommands::xsetid));
+        table.register(new Command("xread", -4, Command.READONLY | Command.BLOCKING, 0, 0, 0, StreamCommands::xread)
+                .movableKeys(StreamCommands::xreadKeys));
+    }
+
+    // Parses "ms-seq", or "ms" with missingSeq as the sequence, into id; false if it is malformed
+    static boolean parseId(String text, long missingSeq, long[] id) {
+        int dash = text.indexOf('-');
+        try {
+            if (dash < 0) {
+                id[0] = Long.parseUnsignedLong(text);
+                id[1] = missingSeq;
+            } else {
+                id[0] = Long.parseUnsignedLong(text.substring(0, dash));
+                id[1] = Long.parseUnsignedLong(text.substring(dash + 1));
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Trimming options shared by XADD and XTRIM: MAXLEN | MINID [= | ~] threshold [LIMIT count]
+    private static final class Trim {
+        boolean byMinId;
+        boolean approximate;
+        long maxLength;
+        long[] minId = new long[2];
+        long limit = -1;
+
+        // Parses the options at i and returns the index after them, or -1 after writing an error
+        int parse(Client client, RespCommand command, int i) {
+            byMinId = command.equalsIgnoreCase(i, "minid");
+            i++;
+            if (i < command.argc && (command.equalsIgnoreCase(i, "~") || command.equalsIgnoreCase(i, "="))) {
+                approximate = command.equalsIgnoreCase(i, "~");
+                i++;
+            }
+            if (i >= command.argc) {
+                client.writeError("ERR syntax error");
+                return -1;
+            }
+            if (byMinId) {
+                if (!parseId(command.string(i), 0, minId)) {
+                    client.writeError(INVALID_ID);
+                    return -1;
+                }
+            } else {
+                try {
+                    maxLength = command.parseLong(i);
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return -1;
+                }
+                if (maxLength < 0) {
+                    client.writeError("ERR The MAXLEN argument must be >= 0.");
+                    return -1;
+                }
+            }
+            i++;
+            if (i + 1 < command.argc && command.equalsIgnoreCase(i, "limit")) {
+                try {
+                    limit = command.parseLong(i + 1);
+                } catch (NumberFormatException e) {
+                    limit = -2;
+                }
+                if (limit < 0) {
+                    client.writeError("ERR The LIMIT argument must be >= 0.");
+                    return -1;
+                }
+                if (!approximate) {
+                    client.writeError("ERR syntax error, LIMIT cannot be used without the special ~ option");
+                    return -1;
+                }
+                i += 2;
+            }
+            return i;
+        }
+
+        long apply(Stream stream) {
+            long effectiveLimit = !approximate ? Long.MAX_VALUE : limit == 0 ? Long.MAX_VALUE : limit < 0 ? Stream.TRIM_LIMIT : limit;
+            return byMinId
+                    ? stream.trimToMinId(minId[0], minId[1], approximate, effectiveLimit)
+                    : stream.trimToLength(maxLength, approximate, effectiveLimit);
+        }
+    }
+
+    // XADD key [NOMKSTREAM] [MAXLEN | MINID [= | ~] threshold [LIMIT count]]
+    // <* | ms-* | ms-seq> field value [field value ...]
+    static void xadd(Client client, RespCommand command) {
+        String key = command.string(1);
+        boolean noMkStream = false;
+        Trim trim = null;
+        int i = 2;
+        while (i < command.argc) {
+            if (command.equalsIgnoreCase(i, "nomkstream")) {
+                noMkStream = true;
+                i++;
+            } else if (command.equalsIgnoreCase(i, "maxlen") || command.equalsIgnoreCase(i, "minid")) {
+                trim = new Trim();
+                i = trim.parse(client, command, i);
+                if (i < 0) {
+                    return;
+                }
+            } else {
+                break;
+            }
+        }
+        int fieldCount = command.argc - i - 1;
+        if (fieldCount <= 0 || fieldCount % 2 != 0) {
+            client.writeError("ERR wrong number of arguments for 'xadd' command");
+            return;
+        }
+
+        String idArg = command.string(i);
+        boolean autoMs = idArg.equals("*");
+        boolean autoSeq = !autoMs && idArg.endsWith("-*");
+        long[] id = new long[2];
+        if (!autoMs && !parseId(autoSeq ? idArg.substring(0, idArg.length() - 2) : idArg, 0, id)) {
+            client.writeError(INVALID_ID);
+            return;
+        }
+        if (!autoMs && !autoSeq && id[0] == 0 && id[1] == 0) {
+            client.writeError("ERR The ID specified in XADD must be greater than 0-0");
+            return;
+        }
+
+        Stream stream = Main.keyspace.getStream(key);
+        if (stream == null && noMkStream) {
+            client.writeNull();
+            return;
+        }
+        long lastMs = stream == null ? 0 : stream.lastMs;
+        long lastSeq = stream == null ? 0 : stream.lastSeq;
+        if (autoMs) {
+            long now = System.currentTimeMillis();
+            if (Long.compareUnsigned(now, lastMs) > 0) {
+                id[0] = now;
+                id[1] = 0;
+            } else if (lastSeq != MAX) {
+                id[0] = lastMs;
+                id[1] = lastSeq + 1;
+            } else if (lastMs != MAX) {
+                id[0] = lastMs + 1;
+                id[1] = 0;
+            } else {
+                client.writeError("ERR The stream has exhausted the last possible ID, unable to add more items");
+                return;
+            }
+        } else if (autoSeq) {
+            int c = Long.compareUnsigned(id[0], lastMs);
+            if (c < 0 || (c == 0 && lastSeq == MAX)) {
+                client.writeError("ERR The ID specified in XADD is equal or smaller than the target stream top item");
+                return;
+            }
+            id[1] = c == 0 ? lastSeq + 1 : 0;
+        } else if (Stream.compare(id[0], id[1], lastMs, lastSeq) <= 0) {
+            client.writeError("ERR The ID specified in XADD is equal or smaller than the target stream top item");
+            return;
+        }
+
+        String[] fields = new String[fieldCount];
+        for (int f = 0; f < fieldCount; f++) {
+            fields[f] = command.string(i + 1 + f);
+        }
+        stream = Main.keyspace.getStreamForWrite(key, true);
+        stream.add(id[0], id[1], fields);
+        long trimmed = trim == null ? 0 : trim.apply(stream);
+        Main.signalModifiedKey(client, key);
+        Main.signalKeyAsReady(client, key);
+
+        // Replicas and the AOF get the ID that was actually used, and the trim as an exact length
+        String entryId = Stream.formatId(id[0], id[1]);
+        String[] effect = new String[fieldCount + (trimmed > 0 ? 6 : 3)];
+        int at = 0;
+        effect[at++] = "XADD";
+        effect[at++] = key;
+        if (trimmed > 0) {
+            effect[at++] = "MAXLEN";
+            effect[at++] = "=";
+            effect[at++] = String.valueOf(stream.length());
+        }
+        effect[at++] = entryId;
+        System.arraycopy(fields, 0, effect, at, fieldCount);
+        client.propagateAs = RespCommand.of(effect);
+        client.writeBulk(entryId);
+    }
+
+    static void xlen(Client client, RespCommand command) {
+        Stream stream = Main.keyspace.getStream(command.string(1));
+        client.writeInteger(stream == null ? 0 : stream.length());
+    }
+
+    // XTRIM key MAXLEN | MINID [= | ~] threshold [LIMIT count]
+    static void xtrim(Client client, RespCommand command) {
+        String key = command.string(1);
+        if (!command.equalsIgnoreCase(2, "maxlen") && !command.equalsIgnoreCase(2, "minid")) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        Trim trim = new Trim();
+        int end = trim.parse(client, command, 2);
+        if (end < 0) {
+            return;
+        }
+        if (end != command.argc) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        if (Main.keyspace.getStream(key) == null) {
+            client.writeInteger(0);
+            return;
+        }
+        Stream stream = Main.keyspace.getStreamForWrite(key, false);
+        long trimmed = trim.apply(stream);
+        if (trimmed > 0) {
+            Main.signalModifiedKey(client, key);
+            client.propagateAs = RespCommand.of("XTRIM", key, "MAXLEN", "=", String.valueOf(stream.length()));
+        }
+        client.writeInteger(trimmed);
+    }
+
+    // XSETID key last-id; also how an AOF rewrite restores the last ID of a trimmed stream
+    static void xsetid(Client client, RespCommand command) {
+        String key = command.string(1);
+        long[] id = new long[2];
+        if (!parseId(command.string(2), 0, id)) {
+            client.writeError(INVALID_ID);
+            return;
+        }
+        if (Main.keyspace.getStream(key) == null) {
+            client.writeError("ERR no such key");
+            return;
+        }
+        if (!Main.keyspace.getStreamForWrite(key, false).setLastId(id[0], id[1])) {
+            client.writeError("ERR The ID specified in XSETID is smaller than the target stream top item");
+            return;
+        }
+        Main.signalModifiedKey(client, key);
+        client.writeSimple("OK");
+    }
+
+    static void xrange(Client client, RespCommand command) {
+        rangeGeneric(client, command, false);
+    }
+
+    static void xrevrange(Client client, RespCommand command) {
+        rangeGeneric(client, command, true);
+    }
+
+    // XRANGE key start end [COUNT count], XREVRANGE key end start [COUNT count]. "-" and "+" are
+    // the smallest and greatest IDs, a missing sequence means the whole millisecond and "("
+    // excludes the ID.
+    private static void rangeGeneric(Client client, RespCommand command, boolean reverse) {
+        long[] start = new long[2];
+        long[] end = new long[2];
+        if (!parseRangeBound(client, command.string(reverse ? 3 : 2), true, start)
+                || !parseRangeBound(client, command.string(reverse ? 2 : 3), false, end)) {
+            return;
+        }
+        long count = 0;
+        if (command.argc == 6 && command.equalsIgnoreCase(4, "count")) {
+            try {
+                count = command.parseLong(5);
+            } catch (NumberFormatException e) {
+                client.writeError("ERR value is not an integer or out of range");
+                return;
+            }
+            if (count <= 0) {
+                client.writeArrayHeader(0);
+                return;
+            }
+        } else if (command.argc != 4) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        Stream stream = Main.keyspace.getStream(command.string(1));
+        if (stream == null) {
+            client.writeArrayHeader(0);
+            return;
+        }
+        writeEntries(client, stream.range(start[0], start[1], end[0], end[1], count, reverse));
+    }
+
+    private static boolean parseRangeBound(Client client, String text, boolean isStart, long[] id) {
+        if (text.equals("-")) {
+            id[0] = 0;
+            id[1] = 0;
+            return true;
+        }
+        if (text.equals("+")) {
+            id[0] = MAX;
+            id[1] = MAX;
+            return true;
+        }
+        boolean exclusive = text.startsWith("(");
+        if (!parseId(exclusive ? text.substring(1) : text, isStart ? 0 : MAX, id)) {
+            client.writeError(INVALID_ID);
+            return false;
+        }
+        if (exclusive) {
+            boolean overflow = isStart ? !increment(id) : !decrement(id);
+            if (overflow) {
+                client.writeError("ERR invalid " + (isStart ? "start" : "end") + " ID for the interval");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean increment(long[] id) {
+        if (id[1] != MAX) {
+            id[1]++;
+        } else if (id[0] != MAX) {
+            id[0]++;
+            id[1] = 0;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean decrement(long[] id) {
+        if (id[1] != 0) {
+            id[1]--;
+        } else if (id[0] != 0) {
+            id[0]--;
+            id[1] = MAX;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // Entries with IDs greater than ms-seq
+    static ArrayList<Stream.Entry> entriesAfter(Stream stream, long ms, long seq, long count) {
+        long[] start = {ms, seq};
+        if (!increment(start)) {
+            return new ArrayList<>();
+        }
+        return stream.range(start[0], start[1], MAX, MAX, count, false);
+    }
+
+    static void writeEntries(Client client, ArrayList<Stream.Entry> entries) {
+        client.writeArrayHeader(entries.size());
+        for (Stream.Entry entry : entries) {
+            client.writeArrayHeader(2);
+            client.writeBulk(Stream.formatId(entry.ms, entry.seq));
+            client.writeArrayHeader(entry.fields.length);
+            for (String field : entry.fields) {
+                client.writeBulk(field);
+            }
+        }
+    }
+
+    // The keys of XREAD are the first half of the arguments after STREAMS
+    static int[] xreadKeys(RespCommand args) {
+        for (int i = 1; i < args.argc; i++) {
+            if (args.equalsIgnoreCase(i, "streams")) {
+                int keys = (args.argc - i - 1) / 2;
+                int[] positions = new int[keys];
+                for (int k = 0; k < keys; k++) {
+                    positions[k] = i + 1 + k;
+                }
+                return positions;
+            }
+        }
+        return new int[0];
+    }
+
+    // XREAD [COUNT count] [BLOCK milliseconds] STREAMS key [key ...] id [id ...]
+    static void xread(Client client, RespCommand command) {
+        long count = 0;
+        long timeout = -1;
+        int streamsAt = -1;
+        for (int i = 1; i < command.argc && streamsAt < 0; i++) {
+            if (command.equalsIgnoreCase(i, "streams")) {
+                streamsAt = i;
+            } else if (i + 1 < command.argc && command.equalsIgnoreCase(i, "count")) {
+                try {
+                    count = Math.max(0, command.parseLong(++i));
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return;
+                }
+            } else if (i + 1 < command.argc && command.equalsIgnoreCase(i, "block")) {
+                try {
+                    timeout = command.parseLong(++i);
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR timeout is not an integer or out of range");
+                    return;
+                }
+                if (timeout < 0) {
+                    client.writeError("ERR timeout is negative");
+                    return;
+                }
+            } else {
+                client.writeError("ERR syntax error");
+                return;
+            }
+        }
+        int remaining = streamsAt < 0 ? 0 : command.argc - streamsAt - 1;
+        if (streamsAt < 0 || remaining == 0) {
+            client.writeError("ERR syntax error");
+            return;
+        }
+        if (remaining % 2 != 0) {
+            client.writeError("ERR Unbalanced 'xread' list of streams: for each stream key an ID or '$' must be specified.");
+            return;
+        }
+
+        int keys = remaining / 2;
+        String[] names = new String[keys];
+        long[] afterMs = new long[keys];
+        long[] afterSeq = new long[keys];
+        Stream[] streams = new Stream[keys];
+        long[] id = new long[2];
+        for (int k = 0; k < keys; k++) {
+            names[k] = command.string(streamsAt + 1 + k);
+            streams[k] = Main.keyspace.getStream(names[k]);
+            String idArg = command.string(streamsAt + 1 + keys + k);
+            if (idArg.equals("$")) {
+                // Only entries added from now on
+                afterMs[k] = streams[k] == null ? 0 : streams[k].lastMs;
+                afterSeq[k] = streams[k] == null ? 0 : streams[k].lastSeq;
+            } else if (parseId(idArg, 0, id)) {
+                afterMs[k] = id[0];
+                afterSeq[k] = id[1];
+            } else {
+                client.writeError(INVALID_ID);
+                return;
+            }
+        }
+
+        int found = 0;
+        ArrayList<ArrayList<Stream.Entry>> results = new ArrayList<>(keys);
+        for (int k = 0; k < keys; k++) {
+            ArrayList<Stream.Entry> entries = streams[k] == null
+                    ? new ArrayList<>() : entriesAfter(streams[k], afterMs[k], afterSeq[k], count);
+            results.add(entries);
+            if (!entries.isEmpty()) {
+                found++;
+            }
+        }
+        if (found > 0) {
+            client.writeArrayHeader(found);
+            for (int k = 0; k < keys; k++) {
+                if (!results.get(k).isEmpty()) {
+                    client.writeArrayHeader(2);
+                    client.writeBulk(names[k]);
+                    writeEntries(client, results.get(k));
+                }
+            }
+            return;
+        }
+        if (timeout < 0 || client.executingMulti) {
+            client.writeNullArray();
+            return;
+        }
+        Blocking.blockForStreams(client, command, names, afterMs, afterSeq, count,
+                timeout == 0 ? 0 : System.currentTimeMillis() + timeout);
+    }
+}
@@ -0,0 +1,241 @@
+package io.codecrafters.redis;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class StringCommands {
+    // INCRBYFLOAT prints like Redis, which formats its long double result with 17 decimals and then
+    // strips the trailing zeros
+    private static final int FLOAT_DECIMALS = 17;
+    // Beyond the exponent range of a long double, and enough to keep the exact sum small
+    private static final int FLOAT_MAX_SCALE = 5000;
+
+    static void register(CommandTable table) {
+        table.register(new Command("get", 2, Command.READONLY | Command.FAST, 1, 1, 1, StringCommands::get));
+        table.register(new Command("set", -3, Command.WRITE | Command.DENYOOM, 1, 1, 1, StringCommands::set));
+        table.register(new Command("incr", 2, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::incr));
+        table.register(new Command("decr", 2, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::decr));
+        table.register(new Command("incrby", 3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::incrby));
+        table.register(new Command("decrby", 3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::decrby));
+        table.register(new Command("incrbyfloat", 3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::incrbyfloat));
+        table.register(new Command("append", 3, Command.WRITE | Command.DENYOOM | Command.FAST, 1, 1, 1, StringCommands::append));
+        table.register(new Command("strlen", 2, Command.READONLY | Command.FAST, 1, 1, 1, StringCommands::strlen));
+        table.register(new Command("getrange", 4, Command.READONLY, 1, 1, 1, StringCommands::getrange));
+    }
+
+    // SET key value [NX | XX] [GET]
+    // [EX seconds | PX milliseconds | EXAT unix-seconds | PXAT unix-milliseconds | KEEPTTL]
+    static void set(Client client, RespCommand command) {
+        String key = command.string(1);
+        Object value = StringValue.of(command, 2);
+        boolean nx = false, xx = false, get = false, keepTtl = false;
+        long expireAt = Keyspace.NO_EXPIRE;
+        for (int i = 3; i < command.argc; i++) {
+            if (command.equalsIgnoreCase(i, "nx") && !xx) {
+                nx = true;
+            } else if (command.equalsIgnoreCase(i, "xx") && !nx) {
+                xx = true;
+            } else if (command.equalsIgnoreCase(i, "get")) {
+                get = true;
+            } else if (command.equalsIgnoreCase(i, "keepttl") && expireAt == Keyspace.NO_EXPIRE) {
+                keepTtl = true;
+            } else if (!keepTtl && expireAt == Keyspace.NO_EXPIRE && i + 1 < command.argc
+                    && (command.equalsIgnoreCase(i, "ex") || command.equalsIgnoreCase(i, "px")
+                    || command.equalsIgnoreCase(i, "exat") || command.equalsIgnoreCase(i, "pxat"))) {
+                long amount;
+                try {
+                    amount = command.parseLong(i + 1);
+                } catch (NumberFormatException e) {
+                    client.writeError("ERR value is not an integer or out of range");
+                    return;
+                }
+                boolean seconds = command.equalsIgnoreCase(i, "ex") || command.equalsIgnoreCase(i, "exat");
+                boolean relative = command.equalsIgnoreCase(i, "ex") || command.equalsIgnoreCase(i, "px");
+                try {
+                    if (amount <= 0) {
+                        throw new ArithmeticException();
+                    }
+                    expireAt = seconds ? Math.multiplyExact(amount, 1000) : amount;
+                    if (relative) {
+                        expireAt = Math.addExact(expireAt, System.currentTimeMillis());
+                    }
+                } catch (ArithmeticException e) {
+                    client.writeError("ERR invalid expire time in 'set' command");
+                    return;
+                }
+                i++;
+            } else {
+                client.writeError("ERR syntax error");
+                return;
+            }
+        }
+
+        Keyspace.Entry existing = Main.keyspace.lookup(key);
+        if (get && existing != null && !StringValue.isString(existing.value)) {
+            throw new Keyspace.WrongTypeException();
+        }
+        Object old = existing == null ? null : existing.value;
+        if ((nx && existing != null) || (xx && existing == null)) {
+            client.writeBulkValue(get ? old : null);
+            return;
+        }
+        if (keepTtl && existing != null) {
+            expireAt = existing.expireAt;
+        }
+        Main.keyspace.put(key, value, expireAt);
+        Main.signalModifiedKey(client, key);
+        // Replicas and the AOF get the effect: an unconditional SET with an absolute deadline
+        if (expireAt != Keyspace.NO_EXPIRE) {
+            client.propagateAs = RespCommand.of("SET", key, command.string(2), "PXAT", String.valueOf(expireAt));
+        } else if (command.argc > 3) {
+            client.propagateAs = RespCommand.of("SET", key, command.string(2));
+        }
+        if (get) {
+            client.writeBulkValue(old);
+        } else {
+            client.writeSimple("OK");
+        }
+    }
+
+    static void get(Client client, RespCommand command) {
+        client.writeBulkValue(Main.keyspace.getString(command.string(1)));
+    }
+
+    static void incr(Client client, RespCommand command) {
+        incrementBy(client, command.string(1), 1);
+    }
+
+    static void decr(Client client, RespCommand command) {
+        incrementBy(client, command.string(1), -1);
+    }
+
+    static void incrby(Client client, RespCommand command) {
+        try {
+            incrementBy(client, command.string(1), command.parseLong(2));
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+        }
+    }
+
+    static void decrby(Client client, RespCommand command) {
+        long decrement;
+        try {
+            decrement = command.parseLong(2);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        if (decrement == Long.MIN_VALUE) {
+            client.writeError("ERR decrement would overflow");
+            return;
+        }
+        incrementBy(client, command.string(1), -decrement);
+    }
+
+    // The counter stays a Long from one call to the next, so neither side parses or prints digits
+    private static void incrementBy(Client client, String key, long increment) {
+        Object current = Main.keyspace.getString(key);
+        long value;
+        try {
+            value = current == null ? 0 : StringValue.toLong(current);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        try {
+            value = Math.addExact(value, increment);
+        } catch (ArithmeticException e) {
+            client.writeError("ERR increment or decrement would overflow");
+            return;
+        }
+        Main.keyspace.update(key, StringValue.of(value));
+        Main.signalModifiedKey(client, key);
+        client.writeInteger(value);
+    }
+
+    // Replicas and the AOF get the result as a SET, so they never redo the float arithmetic
+    static void incrbyfloat(Client client, RespCommand command) {
+        String key = command.string(1);
+        Object current = Main.keyspace.getString(key);
+        BigDecimal value;
+        BigDecimal increment;
+        try {
+            value = current == null ? BigDecimal.ZERO : parseFloat(StringValue.string(current));
+            increment = parseFloat(command.string(2));
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not a valid float");
+            return;
+        }
+        BigDecimal sum = value.add(increment).setScale(FLOAT_DECIMALS, RoundingMode.HALF_EVEN);
+        if (Double.isInfinite(sum.doubleValue())) {
+            client.writeError("ERR increment would produce NaN or Infinity");
+            return;
+        }
+        String result = sum.signum() == 0 ? "0" : sum.stripTrailingZeros().toPlainString();
+        Main.keyspace.update(key, StringValue.of(result.getBytes(StandardCharsets.ISO_8859_1)));
+        Main.signalModifiedKey(client, key);
+        client.propagateAs = RespCommand.of("SET", key, result, "KEEPTTL");
+        client.writeBulk(result);
+    }
+
+    // Finite decimals only, as strtold accepts them; no inf or nan
+    private static BigDecimal parseFloat(String text) {
+        if (text.isEmpty() || Character.isWhitespace(text.charAt(0))
+                || Double.isInfinite(Double.parseDouble(text))) {
+            throw new NumberFormatException(text);
+        }
+        BigDecimal value = new BigDecimal(text);
+        if (Math.abs(value.scale()) > FLOAT_MAX_SCALE) {
+            throw new NumberFormatException(text);
+        }
+        return value;
+    }
+
+    static void append(Client client, RespCommand command) {
+        String key = command.string(1);
+        Object current = Main.keyspace.getString(key);
+        Object value = current == null ? StringValue.of(command, 2) : StringValue.of(StringValue.concat(current, command.bytes(2)));
+        Main.keyspace.update(key, value);
+        Main.signalModifiedKey(client, key);
+        client.writeInteger(StringValue.length(value));
+    }
+
+    static void strlen(Client client, RespCommand command) {
+        Object value = Main.keyspace.getString(command.string(1));
+        client.writeInteger(value == null ? 0 : StringValue.length(value));
+    }
+
+    // GETRANGE key start end, both inclusive and negative from the end, clamped to the string
+    static void getrange(Client client, RespCommand command) {
+        long start;
+        long end;
+        try {
+            start = command.parseLong(2);
+            end = command.parseLong(3);
+        } catch (NumberFormatException e) {
+            client.writeError("ERR value is not an integer or out of range");
+            return;
+        }
+        Object value = Main.keyspace.getString(command.string(1));
+        byte[] bytes = value == null ? new byte[0] : StringValue.bytes(value);
+        long length = bytes.length;
+        if (start < 0 && end < 0 && start > end) {
+            client.writeBulk(new byte[0]);
+            return;
+        }
+        if (start < 0) {
+            start = Math.max(0, length + start);
+        }
+        if (end < 0) {
+            end = Math.max(0, length + end);
+        }
+        end = Math.min(end, length - 1);
+        if (start > end || length == 0) {
+            client.writeBulk(new byte[0]);
+            return;
+        }
+        client.writeBulk(Arrays.copyOfRange(bytes, (int) start, (int) end + 1));
+    }
+}
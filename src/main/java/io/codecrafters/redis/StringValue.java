@@ -0,0 +1,153 @@
+package io.codecrafters.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// String values as stored in the keyspace, in the most compact form that gives the same bytes back.
+// Bytes that are the canonical decimal form of a 64-bit integer become a Long, and 0 to 9999 come
+// from a shared pool, as Redis shares its small integer objects, so a counter costs no allocation
+// at all. Anything else is its raw bytes in one byte[], which is both the value and its only
+// allocation, as an embstr is for Redis. Values are never changed in place: every write stores a
+// new one, so a snapshot can hold on to the old.
+public class StringValue {
+    static final int SHARED_INTEGERS = 10000;
+    // Longest string Redis embeds in its object header; only reported by OBJECT ENCODING
+    static final int EMBSTR_SIZE_LIMIT = 44;
+    // Longest canonical long: "-9223372036854775808"
+    private static final int MAX_LONG_DIGITS = 20;
+
+    private static final Long[] shared = new Long[SHARED_INTEGERS];
+    private static final byte[][] sharedDigits = new byte[SHARED_INTEGERS][];
+
+    static {
+        for (int i = 0; i < SHARED_INTEGERS; i++) {
+            shared[i] = (long) i;
+            sharedDigits[i] = Integer.toString(i).getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    static boolean isString(Object value) {
+        return value instanceof byte[] || value instanceof Long;
+    }
+
+    static Object of(long value) {
+        return value >= 0 && value < SHARED_INTEGERS ? shared[(int) value] : Long.valueOf(value);
+    }
+
+    // Takes ownership of bytes
+    static Object of(byte[] bytes) {
+        Long number = parseCanonical(bytes, 0, bytes.length);
+        return number != null ? number : bytes;
+    }
+
+    // Argument i of command, without copying it when it is an integer
+    static Object of(RespCommand command, int i) {
+        int from = command.base + command.offsets[i];
+        Long number = parseCanonical(command.buffer, from, from + command.lengths[i]);
+        return number != null ? number : command.bytes(i);
+    }
+
+    // The bytes of a value, or null for null. The result may be shared and must not be modified.
+    static byte[] bytes(Object value) {
+        if (value instanceof Long number) {
+            long n = number;
+            return n >= 0 && n < SHARED_INTEGERS ? sharedDigits[(int) n]
+                    : Long.toString(n).getBytes(StandardCharsets.ISO_8859_1);
+        }
+        return (byte[]) value;
+    }
+
+    static String string(Object value) {
+        return value == null ? null : new String(bytes(value), StandardCharsets.ISO_8859_1);
+    }
+
+    static long length(Object value) {
+        if (value instanceof Long number) {
+            long n = number;
+            if (n == Long.MIN_VALUE) {
+                return MAX_LONG_DIGITS;
+            }
+            int digits = n < 0 ? 2 : 1;
+            for (n = Math.abs(n); n >= 10; n /= 10) {
+                digits++;
+            }
+            return digits;
+        }
+        return ((byte[]) value).length;
+    }
+
+    // The integer a value holds, for INCR and friends; throws NumberFormatException if it holds
+    // anything but a canonical 64-bit integer
+    static long toLong(Object value) {
+        if (value instanceof Long number) {
+            return number;
+        }
+        byte[] bytes = (byte[]) value;
+        Long number = parseCanonical(bytes, 0, bytes.length);
+        if (number == null) {
+            throw new NumberFormatException();
+        }
+        return number;
+    }
+
+    static String encoding(Object value) {
+        if (value instanceof Long) {
+            return "int";
+        }
+        return ((byte[]) value).length <= EMBSTR_SIZE_LIMIT ? "embstr" : "raw";
+    }
+
+    // Heap bytes the value takes beyond the reference to it, assuming compressed oops. Shared
+    // integers cost nothing.
+    static long memoryUsage(Object value) {
+        if (value instanceof Long number) {
+            return number >= 0 && number < SHARED_INTEGERS ? 0 : 16;
+        }
+        return align(16 + ((byte[]) value).length);
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static byte[] concat(Object value, byte[] suffix) {
+        byte[] prefix = bytes(value);
+        byte[] joined = Arrays.copyOf(prefix, prefix.length + suffix.length);
+        System.arraycopy(suffix, 0, joined, prefix.length, suffix.length);
+        return joined;
+    }
+
+    // The integer bytes[from, to) spell, or null unless they are exactly what Long.toString prints for
+    // it: no sign but a leading minus, no leading zeros, no "-0", no overflow. Only such values may be
+    // stored as a Long, since the bytes are given back by printing it.
+    static Long parseCanonical(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (length == 0 || length > MAX_LONG_DIGITS) {
+            return null;
+        }
+        if (length == 1 && bytes[from] == '0') {
+            return shared[0];
+        }
+        boolean negative = bytes[from] == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || bytes[i] < '1' || bytes[i] > '9') {
+            return null;
+        }
+        // Accumulate negatively so Long.MIN_VALUE fits
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                return null;
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                return null;
+            }
+            value = -value;
+        }
+        return (Long) of(value);
+    }
+}
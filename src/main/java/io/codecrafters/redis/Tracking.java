@@ -0,0 +1,241 @@
+package io.codecrafters.redis;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Server-assisted client-side caching, as CLIENT TRACKING enables it. In the default mode every key
+// a tracking client reads is remembered with the ids of the clients that read it, and the first
+// change to the key sends each of them an invalidation and forgets the key until it is read again.
+// In BCAST mode nothing is remembered: every change to a key under one of the client's prefixes is
+// sent. The table holds at most tracking-table-max-keys keys; past that, keys are dropped with an
+// invalidation, so clients stop caching them rather than miss a change.
+public class Tracking {
+    static final int MAX_KEYS = Config.getInt("tracking-table-max-keys");
+    static final byte[] INVALIDATE = "invalidate".getBytes(StandardCharsets.ISO_8859_1);
+    static final byte[] MESSAGE = "message".getBytes(StandardCharsets.ISO_8859_1);
+    static final byte[] CHANNEL = "__redis__:invalidate".getBytes(StandardCharsets.ISO_8859_1);
+
+    // Key to the ids of the clients that read it since it last changed. Ids of clients that turned
+    // tracking off or disconnected stay until the key changes and are skipped then.
+    static final ConcurrentHashMap<String, long[]> table = new ConcurrentHashMap<>();
+    // BCAST prefix to its clients; the empty prefix matches every key
+    static final ConcurrentHashMap<String, CopyOnWriteArrayList<Client>> prefixes = new ConcurrentHashMap<>();
+    // Dispatch and writes skip all of this while no client tracks
+    static final AtomicInteger clients = new AtomicInteger();
+
+    static boolean active() {
+        return clients.get() > 0;
+    }
+
+    static void enable(Client client, boolean bcast, List<String> bcastPrefixes) {
+        if (!client.tracking) {
+            clients.incrementAndGet();
+        }
+        client.tracking = true;
+        client.trackingBcast = bcast;
+        if (bcast) {
+            if (bcastPrefixes.isEmpty()) {
+                bcastPrefixes = List.of("");
+            }
+            for (String prefix : bcastPrefixes) {
+                if (client.trackingPrefixes.add(prefix)) {
+                    prefixes.compute(prefix, (name, subscribers) -> {
+                        subscribers = subscribers == null ? new CopyOnWriteArrayList<>() : subscribers;
+                        subscribers.add(client);
+                        return subscribers;
+                    });
+                }
+            }
+        }
+    }
+
+    static void disable(Client client) {
+        if (!client.tracking) {
+            return;
+        }
+        clients.decrementAndGet();
+        for (String prefix : client.trackingPrefixes) {
+            prefixes.computeIfPresent(prefix, (name, subscribers) -> {
+                subscribers.remove(client);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        client.trackingPrefixes.clear();
+        client.tracking = false;
+        client.trackingBcast = false;
+        client.trackingOptIn = false;
+        client.trackingOptOut = false;
+        client.trackingNoLoop = false;
+        client.trackingRedirect = 0;
+        client.cachingOverride = 0;
+    }
+
+    // A prefix that is a prefix of one the client has, or the other way around, would get each
+    // change twice, so Redis refuses it; returns the clashing pair or null
+    static String overlap(Client client, List<String> wanted) {
+        for (int i = 0; i < wanted.size(); i++) {
+            String prefix = wanted.get(i);
+            for (String other : client.trackingPrefixes) {
+                if (!other.equals(prefix) && (other.startsWith(prefix) || prefix.startsWith(other))) {
+                    return "'" + prefix + "' and '" + other + "'";
+                }
+            }
+            for (int j = i + 1; j < wanted.size(); j++) {
+                String other = wanted.get(j);
+                if (!other.equals(prefix) && (other.startsWith(prefix) || prefix.startsWith(other))) {
+                    return "'" + prefix + "' and '" + other + "'";
+                }
+            }
+        }
+        return null;
+    }
+
+    // After a command ran, with its keys still locked: remembers the keys a read-only command
+    // looked at, if this client's mode says to. CLIENT CACHING only covers the command after it.
+    static void afterCommand(Client client, Command command, RespCommand args) {
+        int override = client.cachingOverride;
+        if (!command.name.equals("client")) {
+            client.cachingOverride = 0;
+        }
+        if (client.trackingBcast || !command.has(Command.READONLY)) {
+            return;
+        }
+        if ((client.trackingOptIn && override != 1) || (client.trackingOptOut && override == -1)) {
+            return;
+        }
+        int[] positions = command.keyFinder != null ? command.keyFinder.positions(args) : command.keyPositions(args.argc);
+        for (int position : positions) {
+            if (position < args.argc) {
+                remember(client.id, args.string(position));
+            }
+        }
+    }
+
+    private static void remember(long id, String key) {
+        long[] readers = table.compute(key, (name, ids) -> {
+            if (ids == null) {
+                return new long[] {id};
+            }
+            for (long existing : ids) {
+                if (existing == id) {
+                    return ids;
+                }
+            }
+            long[] more = Arrays.copyOf(ids, ids.length + 1);
+            more[ids.length] = id;
+            return more;
+        });
+        // Only a new key can push the table over its cap
+        if (readers.length == 1 && table.size() > MAX_KEYS) {
+            evictKeys();
+        }
+    }
+
+    // Drops keys until the table is back under its cap, invalidating each for its readers
+    private static void evictKeys() {
+        Iterator<String> keys = table.keySet().iterator();
+        while (table.size() > MAX_KEYS && keys.hasNext()) {
+            invalidateTracked(null, keys.next());
+        }
+    }
+
+    // Called for every change to a key: by writes, expiry and eviction. modifier is the client whose
+    // command made the change, null otherwise, and is spared the message if it asked for NOLOOP.
+    static void invalidate(Client modifier, String key) {
+        invalidateTracked(modifier, key);
+        if (!prefixes.isEmpty()) {
+            for (Map.Entry<String, CopyOnWriteArrayList<Client>> entry : prefixes.entrySet()) {
+                if (key.startsWith(entry.getKey())) {
+                    for (Client client : entry.getValue()) {
+                        send(modifier, client, key);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void invalidateTracked(Client modifier, String key) {
+        long[] ids = table.remove(key);
+        if (ids == null) {
+            return;
+        }
+        for (long id : ids) {
+            Client client = Client.clients.get(id);
+            if (client != null && client.tracking && !client.trackingBcast) {
+                send(modifier, client, key);
+            }
+        }
+    }
+
+    // The whole keyspace went away, e.g. a replica loading its master's copy: one message with a
+    // null key tells every tracking client to drop its whole cache
+    static void invalidateAll() {
+        table.clear();
+        for (Client client : Client.clients.values()) {
+            if (client.tracking) {
+                send(null, client, null);
+            }
+        }
+    }
+
+    private static void send(Client modifier, Client client, String key) {
+        if (client == modifier && client.trackingNoLoop) {
+            return;
+        }
+        Client target = client;
+        if (client.trackingRedirect != 0) {
+            target = Client.clients.get(client.trackingRedirect);
+            if (target == null) {
+                return;
+            }
+        } else if (client.protocol < 3) {
+            // A RESP2 connection cannot take pushes mid-stream; it needs REDIRECT
+            return;
+        }
+        byte[] frame = frame(target.protocol >= 3, client.trackingRedirect != 0, key);
+        Client receiver = target;
+        if (receiver.loop.inLoop()) {
+            receiver.deliver(frame);
+        } else {
+            receiver.loop.execute(() -> receiver.deliver(frame));
+        }
+    }
+
+    // RESP3: >2 invalidate [key]. Redirected: a message on __redis__:invalidate with [key] as its
+    // payload, pushed or as a RESP2 pub/sub array depending on the receiving connection.
+    static byte[] frame(boolean push, boolean redirected, String key) {
+        byte[] keyBytes = key == null ? null : key.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer frame = ByteBuffer.allocate(96 + (keyBytes == null ? 0 : keyBytes.length));
+        if (redirected) {
+            header(frame, push ? '>' : '*', 3);
+            bulk(frame, MESSAGE);
+            bulk(frame, CHANNEL);
+        } else {
+            header(frame, '>', 2);
+            bulk(frame, INVALIDATE);
+        }
+        if (keyBytes == null) {
+            frame.put(push ? "_\r\n".getBytes(StandardCharsets.ISO_8859_1) : Client.NULL_ARRAY);
+        } else {
+            header(frame, '*', 1);
+            bulk(frame, keyBytes);
+        }
+        return Arrays.copyOf(frame.array(), frame.position());
+    }
+
+    private static void header(ByteBuffer frame, char type, int length) {
+        frame.put((byte) type).put(Integer.toString(length).getBytes(StandardCharsets.ISO_8859_1)).put((byte) '\r').put((byte) '\n');
+    }
+
+    private static void bulk(ByteBuffer frame, byte[] value) {
+        header(frame, '$', value.length);
+        frame.put(value).put((byte) '\r').put((byte) '\n');
+    }
+}
@@ -0,0 +1,125 @@
+package io.codecrafters.redis;
+
+import java.util.Map;
+
+public class TransactionCommands {
+    static void register(CommandTable table) {
+        table.register(new Command("multi", 1, Command.FAST | Command.NO_QUEUE, 0, 0, 0, TransactionCommands::multi));
+        table.register(new Command("exec", 1, Command.NO_QUEUE, 0, 0, 0, TransactionCommands::exec));
+        table.register(new Command("discard", 1, Command.FAST | Command.NO_QUEUE, 0, 0, 0, TransactionCommands::discard));
+        table.register(new Command("watch", -2, Command.FAST | Command.NO_QUEUE, 1, -1, 1, TransactionCommands::watch));
+        table.register(new Command("unwatch", 1, Command.FAST, 0, 0, 0, TransactionCommands::unwatch));
+    }
+
+    static void multi(Client client, RespCommand command) {
+        if (client.encounteredMulti) {
+            client.writeError("ERR MULTI calls can not be nested");
+            return;
+        }
+        client.encounteredMulti = true;
+        client.writeSimple("OK");
+    }
+
+    // Runs the queued commands with the stripes of all their keys held, so no other client sees the
+    // transaction half done or changes its keys in between. Only the stripes involved are taken;
+    // transactions on unrelated keys run in parallel. The watched keys' stripes are held too, so
+    // their versions cannot change between the check and the commands.
+    static void exec(Client client, RespCommand command) {
+        if (!client.encounteredMulti) {
+            client.writeError("ERR EXEC without MULTI");
+            return;
+        }
+        if (client.multiError) {
+            client.writeError("EXECABORT Transaction discarded because of previous errors.");
+            reset(client);
+            return;
+        }
+        int[] stripes = transactionStripes(client);
+        Main.keyspace.lock(stripes);
+        try {
+            if (!watchedKeysUnchanged(client)) {
+                client.writeNullArray();
+                return;
+            }
+            client.encounteredMulti = false;
+            client.executingMulti = true;
+            client.writeArrayHeader(client.bufferedCommands.size());
+            for (RespCommand queued : client.bufferedCommands) {
+                Main.call(client, Main.commands.lookup(queued), queued);
+            }
+            // The transaction's effects reach the AOF and replicas in one piece, ahead of the pops
+            // of clients it unblocked
+            Main.propagateTransaction(client);
+            Blocking.serveReadyKeys(client);
+        } finally {
+            client.readyKeys.clear();
+            client.executingMulti = false;
+            Main.keyspace.unlock(stripes);
+            reset(client);
+        }
+    }
+
+    private static boolean watchedKeysUnchanged(Client client) {
+        for (Map.Entry<String, Long> watched : client.watchedKeys.entrySet()) {
+            if (Main.keyspace.watchVersion(watched.getKey()) != watched.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] transactionStripes(Client client) {
+        int count = client.watchedKeys.size();
+        int[][] perCommand = new int[client.bufferedCommands.size()][];
+        for (int i = 0; i < perCommand.length; i++) {
+            RespCommand queued = client.bufferedCommands.get(i);
+            perCommand[i] = Keyspace.stripes(Main.commands.lookup(queued), queued);
+            count += perCommand[i].length;
+        }
+        int[] stripes = new int[count];
+        int at = 0;
+        for (String key : client.watchedKeys.keySet()) {
+            stripes[at++] = Keyspace.stripe(key);
+        }
+        for (int[] commandStripes : perCommand) {
+            System.arraycopy(commandStripes, 0, stripes, at, commandStripes.length);
+            at += commandStripes.length;
+        }
+        return Keyspace.distinct(stripes, count);
+    }
+
+    static void discard(Client client, RespCommand command) {
+        if (!client.encounteredMulti) {
+            client.writeError("ERR DISCARD without MULTI");
+            return;
+        }
+        reset(client);
+        client.writeSimple("OK");
+    }
+
+    // Ends the transaction, whichever way, and forgets the watched keys
+    private static void reset(Client client) {
+        client.bufferedCommands.clear();
+        client.encounteredMulti = false;
+        client.multiError = false;
+        client.watchedKeys.clear();
+    }
+
+    // WATCH key [key ...]: remembers each key's version, with its stripe held, for EXEC to compare.
+    // A key that does not exist is version 0, so creating it counts as a change.
+    static void watch(Client client, RespCommand command) {
+        if (client.encounteredMulti) {
+            client.writeError("ERR WATCH inside MULTI is not allowed");
+            return;
+        }
+        for (int i = 1; i < command.argc; i++) {
+            client.watchedKeys.putIfAbsent(command.string(i), Main.keyspace.watchVersion(command.string(i)));
+        }
+        client.writeSimple("OK");
+    }
+
+    static void unwatch(Client client, RespCommand command) {
+        client.watchedKeys.clear();
+        client.writeSimple("OK");
+    }
+}
@@ -0,0 +1,123 @@
+package io.codecrafters.redis;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Servers in their own processes, for the tests and benchmarks that talk to them over loopback.
+// Compiled into the test classes and, with -Pjmh, into the benchmarks.
+final class ServerProcess {
+    private ServerProcess() {
+    }
+
+    // Starts a server on this process' class path, with its data files and its log in dir
+    static Process start(File dir, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(ProcessHandle.current().info().command().orElse("java"),
+                "-cp", System.getProperty("java.class.path"), Main.class.getName(), "--dir", dir.getPath()));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(new File(dir, "server-" + args[1] + ".log")).start();
+        Thread.sleep(500);
+        return process;
+    }
+
+    // SETs count keys named prefix followed by a number, pipelined
+    static void fill(Connection connection, String prefix, int count) throws IOException {
+        String value = "v".repeat(64);
+        for (int i = 0; i < count; i++) {
+            connection.send("SET", prefix + i, value);
+        }
+        for (int i = 0; i < count; i++) {
+            connection.readReply();
+        }
+    }
+
+    // The value of one field of an INFO reply, or "" if it has none
+    static String field(String info, String name) {
+        for (String line : info.split("\r\n")) {
+            if (line.startsWith(name + ":")) {
+                return line.substring(name.length() + 1);
+            }
+        }
+        return "";
+    }
+
+    // A blocking RESP client, just enough for status, integer and bulk replies
+    static final class Connection implements AutoCloseable {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        // Retries for a few seconds, while the server is still starting
+        static Connection open(int port) throws IOException, InterruptedException {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return new Connection(new Socket("localhost", port));
+                } catch (IOException e) {
+                    if (attempt == 50) {
+                        throw e;
+                    }
+                    Thread.sleep(100);
+                }
+            }
+        }
+
+        void send(String... args) throws IOException {
+            out.write(Main.encode(RespCommand.of(args)));
+        }
+
+        String command(String... args) throws IOException {
+            send(args);
+            out.flush();
+            return readReply();
+        }
+
+        // Simple and integer replies as their text, bulk strings as their contents
+        String readReply() throws IOException {
+            String line = readLine();
+            if (line.startsWith("$")) {
+                int length = Integer.parseInt(line.substring(1));
+                if (length < 0) {
+                    return null;
+                }
+                String value = new String(in.readNBytes(length), StandardCharsets.ISO_8859_1);
+                in.readNBytes(2);
+                return value;
+            }
+            if (line.startsWith("-")) {
+                throw new IOException(line);
+            }
+            return line.substring(1);
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b == -1) {
+                    throw new IOException("Connection closed");
+                }
+                line.append((char) b);
+            }
+            in.read();
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
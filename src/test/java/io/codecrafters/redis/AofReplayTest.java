@@ -0,0 +1,107 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Replaying an append-only file through dispatch, as at startup: transactions apply as a whole, and
+// a command cut off at the end of the file is dropped and the file truncated before it
+class AofReplayTest {
+    @TempDir
+    File dir;
+
+    @BeforeAll
+    static void registerCommands() {
+        if (Main.commands.lookup("incr") == null) {
+            Main.registerCommands();
+        }
+    }
+
+    @BeforeEach
+    void clearKeyspace() {
+        Main.keyspace.clear();
+    }
+
+    @Test
+    void replaysTransactionsAndDropsTruncatedLastCommand() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        append(log, "SET", "a", "1");
+        append(log, "INCR", "a");
+        append(log, "RPUSH", "list", "x", "y");
+        append(log, "MULTI");
+        append(log, "SET", "b", "2");
+        append(log, "INCRBY", "a", "10");
+        append(log, "LPOP", "list");
+        append(log, "EXEC");
+        int complete = log.size();
+        byte[] cut = Main.encode(RespCommand.of("SET", "c", "never"));
+        log.write(cut, 0, cut.length - 4);
+        File file = write(log);
+
+        assertTrue(Aof.load(file));
+        assertEquals("12", string("a"));
+        assertEquals("2", string("b"));
+        assertEquals(List.of("y"), list("list"));
+        assertNull(Main.keyspace.get("c"));
+        assertEquals(complete, file.length());
+    }
+
+    @Test
+    void replaysInlineCommandsAndBinaryValues() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        log.writeBytes("SET inline yes\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        append(log, "SET", "binary", "\r\n\u0000\u00FF");
+        File file = write(log);
+
+        assertTrue(Aof.load(file));
+        assertEquals("yes", string("inline"));
+        assertEquals("\r\n\u0000\u00FF", string("binary"));
+        assertEquals(log.size(), file.length());
+    }
+
+    @Test
+    void refusesACorruptFile() throws IOException {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        append(log, "SET", "a", "1");
+        log.writeBytes("*2\r\n:3\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        append(log, "SET", "b", "2");
+        File file = write(log);
+
+        assertFalse(Aof.load(file));
+        assertEquals(log.size(), file.length());
+    }
+
+    private static void append(ByteArrayOutputStream log, String... args) {
+        log.writeBytes(Main.encode(RespCommand.of(args)));
+    }
+
+    private File write(ByteArrayOutputStream log) throws IOException {
+        File file = new File(dir, "appendonly.aof");
+        Files.write(file.toPath(), log.toByteArray());
+        return file;
+    }
+
+    private static String string(String key) {
+        return StringValue.string(Main.keyspace.getString(key));
+    }
+
+    private static List<String> list(String key) {
+        List<String> elements = new ArrayList<>();
+        Main.keyspace.getList(key).forEach(elements::add);
+        return elements;
+    }
+}
@@ -0,0 +1,80 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// The rules of Redis' stringmatchlen, which KEYS and SCAN MATCH follow
+class GlobTest {
+    @Test
+    void wildcards() {
+        assertMatches("h?llo", "hello", "hallo");
+        assertNoMatch("h?llo", "hllo", "heello");
+        assertMatches("h*llo", "hllo", "heeeello");
+        assertMatches("*:*:end", "a:b:end", "::end", "a:b:c:end");
+        assertNoMatch("*:*:end", "a:end", "a:b:end!");
+        assertMatches("a**b", "ab", "axxb");
+        assertMatches("*", "", "anything");
+    }
+
+    @Test
+    void literalsAndPrefixesTakeTheFastPath() {
+        assertEquals("user:1", Glob.compile("user:1").literal());
+        assertEquals("us*r", Glob.compile("us\\*r").literal());
+        assertNull(Glob.compile("user:*").literal());
+        assertMatches("user:*", "user:", "user:1");
+        assertNoMatch("user:*", "user", "users:1");
+    }
+
+    @Test
+    void classesRangesAndNegation() {
+        assertMatches("h[ae]llo", "hello", "hallo");
+        assertNoMatch("h[ae]llo", "hillo", "hllo");
+        assertMatches("key[0-9]", "key0", "key9");
+        assertNoMatch("key[0-9]", "keya", "key10");
+        // A reversed range is swapped, as Redis does
+        assertMatches("[z-a]", "a", "m", "z");
+        assertMatches("h[^e]llo", "hallo", "hbllo");
+        assertNoMatch("h[^e]llo", "hello", "hllo");
+        assertMatches("[^a-c]", "d", "\u00FF");
+        assertNoMatch("[^a-c]", "a", "b", "c");
+    }
+
+    @Test
+    void escapes() {
+        assertMatches("a\\*b", "a*b");
+        assertNoMatch("a\\*b", "axb", "ab");
+        assertMatches("what\\?", "what?");
+        assertNoMatch("what\\?", "whats");
+        assertMatches("[\\]]", "]");
+        assertMatches("[a\\-z]", "a", "-", "z");
+        assertNoMatch("[a\\-z]", "m");
+        // A trailing backslash has nothing to escape and stands for itself
+        assertMatches("end\\", "end\\");
+    }
+
+    @Test
+    void unterminatedClassEndsWithThePattern() {
+        assertMatches("a[bc", "ab", "ac");
+        assertNoMatch("a[bc", "a", "abc", "ad");
+        assertMatches("[^", "x");
+        assertNoMatch("[", "", "[", "a");
+    }
+
+    private static void assertMatches(String pattern, String... keys) {
+        Glob glob = Glob.compile(pattern);
+        for (String key : keys) {
+            assertTrue(glob.matches(key), pattern + " should match " + key);
+        }
+    }
+
+    private static void assertNoMatch(String pattern, String... keys) {
+        Glob glob = Glob.compile(pattern);
+        for (String key : keys) {
+            assertFalse(glob.matches(key), pattern + " should not match " + key);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+// INCR from many threads at once through dispatch, as the event loops run it: the stripe locks must
+// not lose a single increment, whether every thread hits the same key or keys share stripes
+class KeyspaceConcurrencyTest {
+    static final int THREADS = 8;
+    static final int INCRS_PER_THREAD = 20_000;
+
+    @BeforeAll
+    static void registerCommands() {
+        if (Main.commands.lookup("incr") == null) {
+            Main.registerCommands();
+        }
+    }
+
+    @Test
+    void incrOnOneKeyFromManyThreadsLosesNothing() throws Exception {
+        runConcurrently(thread -> "test:counter");
+        assertEquals(THREADS * INCRS_PER_THREAD, counter("test:counter"));
+    }
+
+    @Test
+    void incrOnSharedKeysFromManyThreadsLosesNothing() throws Exception {
+        runConcurrently(thread -> "test:spread:" + thread % 3);
+        long total = 0;
+        for (int key = 0; key < 3; key++) {
+            total += counter("test:spread:" + key);
+        }
+        assertEquals(THREADS * INCRS_PER_THREAD, total);
+    }
+
+    interface KeyChooser {
+        String key(int thread);
+    }
+
+    private static void runConcurrently(KeyChooser keys) throws Exception {
+        Command incr = Main.commands.lookup("incr");
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Thread> threads = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        for (int i = 0; i < THREADS; i++) {
+            RespCommand command = RespCommand.of("INCR", keys.key(i));
+            Thread thread = new Thread(() -> {
+                Client client = new Client(null, null);
+                // Suppresses replies, there is no socket behind this client
+                client.master = true;
+                try {
+                    start.await();
+                    for (int n = 0; n < INCRS_PER_THREAD; n++) {
+                        Main.call(client, incr, command);
+                    }
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(null, failure[0]);
+    }
+
+    // Read back through GET, under the key's stripe lock like any command
+    private static long counter(String key) {
+        Client client = new Client(null, null);
+        Main.call(client, Main.commands.lookup("get"), RespCommand.of("GET", key));
+        String reply = new String(client.takeOutput(), StandardCharsets.ISO_8859_1);
+        return Long.parseLong(reply.split("\r\n")[1]);
+    }
+}
@@ -0,0 +1,68 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+// SCAN's promise: a key present for the whole walk is returned at least once, however many keys
+// are deleted and inserted between the calls
+class KeyspaceScanTest {
+    static final int KEYS = 5000;
+
+    @Test
+    void everyKeyIsReturnedExactlyOnceWithoutChanges() {
+        Keyspace keyspace = filled();
+        Map<String, Integer> seen = new HashMap<>();
+        long cursor = 0;
+        do {
+            cursor = keyspace.scan(cursor, 10, true, entry -> seen.merge(entry.key, 1, Integer::sum));
+        } while (cursor != 0);
+        assertEquals(KEYS, seen.size());
+        assertTrue(seen.values().stream().allMatch(times -> times == 1));
+    }
+
+    @Test
+    void survivingKeysAreReturnedDespiteDeletesAndInsertsBetweenCalls() {
+        Keyspace keyspace = filled();
+        Random random = new Random(42);
+        List<String> doomed = new ArrayList<>();
+        Set<String> survivors = new HashSet<>();
+        for (int i = 0; i < KEYS; i++) {
+            (i % 2 == 0 ? doomed : survivors).add("key:" + i);
+        }
+        Set<String> seen = new HashSet<>();
+        int inserted = 0;
+        long cursor = 0;
+        do {
+            cursor = keyspace.scan(cursor, 10, true, entry -> seen.add(entry.key));
+            // Removals move a stripe's last entry into the hole; inserts append to the stripe
+            for (int i = 0; i < 20 && !doomed.isEmpty(); i++) {
+                keyspace.remove(doomed.remove(random.nextInt(doomed.size())));
+            }
+            for (int i = 0; i < 5; i++) {
+                keyspace.put("new:" + inserted++, StringValue.of(1), Keyspace.NO_EXPIRE);
+            }
+        } while (cursor != 0);
+        assertTrue(doomed.isEmpty(), "the walk ended before every doomed key was deleted");
+        Set<String> missing = new HashSet<>(survivors);
+        missing.removeAll(seen);
+        assertEquals(Set.of(), missing);
+    }
+
+    private static Keyspace filled() {
+        Keyspace keyspace = new Keyspace();
+        for (int i = 0; i < KEYS; i++) {
+            keyspace.put("key:" + i, StringValue.of(i), Keyspace.NO_EXPIRE);
+        }
+        return keyspace;
+    }
+}
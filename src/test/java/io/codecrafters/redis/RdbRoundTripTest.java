@@ -0,0 +1,304 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// RDB files written, then loaded into the keyspace: a snapshot of a keyspace as RdbWriter writes
+// it, and the encodings that only a full Redis writes (integer and LZF strings, quicklists of
+// listpacks, streams sharing the master's fields) built by hand in Redis' layout, so a format bug
+// on either side shows up here rather than against a real Redis.
+class RdbRoundTripTest {
+    static final long FUTURE = System.currentTimeMillis() + 3_600_000;
+    static final long PAST = System.currentTimeMillis() - 1000;
+
+    @BeforeEach
+    void clearKeyspace() {
+        Main.keyspace.clear();
+    }
+
+    @Test
+    void loadsIntegerAndLzfStrings() throws IOException {
+        RdbFile file = new RdbFile();
+        file.key(RdbLoader.TYPE_STRING, "int8").raw(0xC0 | RdbLoader.ENCODING_INT8, 0xFB);
+        file.key(RdbLoader.TYPE_STRING, "int16").raw(0xC0 | RdbLoader.ENCODING_INT16, 0xD2, 0x04);
+        file.key(RdbLoader.TYPE_STRING, "int32").raw(0xC0 | RdbLoader.ENCODING_INT32, 0x70, 0x11, 0x01, 0x00);
+        // "abc" as a literal run, then a back reference copying 9 bytes from 3 back
+        file.key(RdbLoader.TYPE_STRING, "lzf").raw(0xC0 | RdbLoader.ENCODING_LZF).length(7).length(12)
+                .raw(0x02, 'a', 'b', 'c', 0xE0, 0x00, 0x02);
+        file.key(RdbLoader.TYPE_STRING, "binary").string("a\r\n\u0000\u00FF");
+        load(file.finish());
+
+        assertEquals("-5", string("int8"));
+        assertEquals("1234", string("int16"));
+        assertEquals("70000", string("int32"));
+        assertEquals("abcabcabcabc", string("lzf"));
+        assertEquals("a\r\n\u0000\u00FF", string("binary"));
+    }
+
+    @Test
+    void loadsPlainListsAndQuicklistsOfListpacks() throws IOException {
+        RdbFile file = new RdbFile();
+        file.key(RdbLoader.TYPE_LIST, "plain").length(3).string("a").string("b").string("c");
+        RdbWriter.Listpack node = new RdbWriter.Listpack();
+        node.addString("x");
+        node.addInteger(-42);
+        node.addString("y".repeat(100));
+        node.addInteger(100_000);
+        file.key(RdbLoader.TYPE_LIST_QUICKLIST_2, "quicklist").length(2)
+                .length(2).string(node.finish())
+                .length(RdbLoader.QUICKLIST_NODE_PLAIN).string("a large element on its own");
+        load(file.finish());
+
+        assertEquals(List.of("a", "b", "c"), list("plain"));
+        assertEquals(List.of("x", "-42", "y".repeat(100), "100000", "a large element on its own"), list("quicklist"));
+    }
+
+    @Test
+    void loadsStreamNodesWithSharedFieldsAndDeletedEntries() throws IOException {
+        RdbWriter.Listpack node = new RdbWriter.Listpack();
+        // Master entry: 2 live, 1 deleted, master fields [f, g], terminator
+        node.addInteger(2);
+        node.addInteger(1);
+        node.addInteger(2);
+        node.addString("f");
+        node.addString("g");
+        node.addInteger(0);
+        // 5-1: same fields as the master
+        node.addInteger(RdbLoader.STREAM_ITEM_FLAG_SAMEFIELDS);
+        node.addInteger(0);
+        node.addInteger(0);
+        node.addString("1");
+        node.addString("2");
+        node.addInteger(5);
+        // 5-2: deleted
+        node.addInteger(RdbLoader.STREAM_ITEM_FLAG_DELETED | RdbLoader.STREAM_ITEM_FLAG_SAMEFIELDS);
+        node.addInteger(0);
+        node.addInteger(1);
+        node.addString("3");
+        node.addString("4");
+        node.addInteger(5);
+        // 7-0: its own fields
+        node.addInteger(0);
+        node.addInteger(2);
+        node.addInteger(-1);
+        node.addInteger(1);
+        node.addString("h");
+        node.addString("5");
+        node.addInteger(6);
+
+        RdbFile file = new RdbFile();
+        file.key(RdbLoader.TYPE_STREAM_LISTPACKS, "stream").length(1)
+                .string(nodeKey(5, 1)).string(node.finish())
+                .length(2).length(9).length(0)
+                .length(0);
+        load(file.finish());
+
+        Stream stream = Main.keyspace.getStream("stream");
+        assertEquals(2, stream.length());
+        List<Stream.Entry> entries = stream.range(0, 0, -1, -1, 0, false);
+        assertEquals("5-1", Stream.formatId(entries.get(0).ms, entries.get(0).seq));
+        assertArrayEquals(new String[]{"f", "1", "g", "2"}, entries.get(0).fields);
+        assertEquals("7-0", Stream.formatId(entries.get(1).ms, entries.get(1).seq));
+        assertArrayEquals(new String[]{"h", "5"}, entries.get(1).fields);
+        assertEquals("9-0", Stream.formatId(stream.lastMs, stream.lastSeq));
+    }
+
+    @Test
+    void keepsFutureDeadlinesAndDropsPastOnes() throws IOException {
+        RdbFile file = new RdbFile();
+        file.expireMs(FUTURE).key(RdbLoader.TYPE_STRING, "later").string("v");
+        file.expireMs(PAST).key(RdbLoader.TYPE_STRING, "gone").string("v");
+        file.raw(RdbLoader.OPCODE_EXPIRETIME).littleEndian(FUTURE / 1000, 4)
+                .key(RdbLoader.TYPE_STRING, "seconds").string("v");
+        file.key(RdbLoader.TYPE_STRING, "forever").string("v");
+        load(file.finish());
+
+        assertEquals(FUTURE, Main.keyspace.getExpire("later"));
+        assertNull(Main.keyspace.get("gone"));
+        assertEquals(FUTURE / 1000 * 1000, Main.keyspace.getExpire("seconds"));
+        assertEquals(Keyspace.NO_EXPIRE, Main.keyspace.getExpire("forever"));
+        assertEquals(3, Main.keyspace.size());
+    }
+
+    @Test
+    void stopsAtTheEofOpcodeBeforeTheChecksum() throws IOException {
+        RdbFile file = new RdbFile();
+        file.key(RdbLoader.TYPE_STRING, "k").string("v");
+        byte[] bytes = file.finish();
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+        new RdbLoader(in).load();
+        assertEquals(8, in.available());
+        assertEquals(RdbWriter.crc64(Arrays.copyOf(bytes, bytes.length - 8)), trailer(bytes));
+        assertEquals("v", string("k"));
+    }
+
+    @Test
+    void writerOutputLoadsBackUnchanged() throws IOException {
+        Keyspace source = new Keyspace();
+        source.put("small", StringValue.of(7), Keyspace.NO_EXPIRE);
+        source.put("int32", StringValue.of(-2_000_000_000L), Keyspace.NO_EXPIRE);
+        source.put("wide", StringValue.of(Long.MAX_VALUE), Keyspace.NO_EXPIRE);
+        source.put("binary", StringValue.of(new byte[]{'\r', '\n', 0, (byte) 0xFF}), Keyspace.NO_EXPIRE);
+        source.put("long", StringValue.of("z".repeat(20_000).getBytes(StandardCharsets.ISO_8859_1)), FUTURE);
+        source.put("expired", StringValue.of(1), PAST);
+        QuickList list = new QuickList();
+        List<String> elements = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            elements.add(i % 100 == 0 ? "e".repeat(500) : "e" + i);
+            list.pushTail(elements.get(i));
+        }
+        source.put("list", list, Keyspace.NO_EXPIRE);
+        Stream stream = new Stream();
+        for (int i = 0; i < 2 * Stream.NODE_MAX_ENTRIES + 7; i++) {
+            stream.add(1000 + i / 3, i % 3, new String[]{"n", String.valueOf(i), "f" + i % 2, "v"});
+        }
+        stream.setLastId(5000, 0);
+        source.put("stream", stream, Keyspace.NO_EXPIRE);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RdbWriter writer = new RdbWriter(Channels.newChannel(out));
+        writer.writeSnapshot(source);
+        byte[] bytes = out.toByteArray();
+        assertEquals("REDIS0011", new String(bytes, 0, 9, StandardCharsets.US_ASCII));
+        assertEquals(RdbLoader.OPCODE_EOF, bytes[bytes.length - 9] & 0xFF);
+        assertEquals(RdbWriter.crc64(Arrays.copyOf(bytes, bytes.length - 8)), trailer(bytes));
+
+        load(bytes);
+        assertEquals(7, Main.keyspace.size());
+        assertNull(Main.keyspace.get("expired"));
+        assertEquals("7", string("small"));
+        assertEquals("-2000000000", string("int32"));
+        assertEquals(String.valueOf(Long.MAX_VALUE), string("wide"));
+        assertEquals("\r\n\u0000\u00FF", string("binary"));
+        assertEquals("z".repeat(20_000), string("long"));
+        assertEquals(FUTURE, Main.keyspace.getExpire("long"));
+        assertEquals(Keyspace.NO_EXPIRE, Main.keyspace.getExpire("small"));
+        assertEquals(elements, list("list"));
+
+        Stream loaded = Main.keyspace.getStream("stream");
+        assertTrue(stream.nodeCount() > 1);
+        assertEquals(stream.length(), loaded.length());
+        assertEquals("5000-0", Stream.formatId(loaded.lastMs, loaded.lastSeq));
+        List<Stream.Entry> expected = stream.range(0, 0, -1, -1, 0, false);
+        List<Stream.Entry> actual = loaded.range(0, 0, -1, -1, 0, false);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(Stream.formatId(expected.get(i).ms, expected.get(i).seq),
+                    Stream.formatId(actual.get(i).ms, actual.get(i).seq));
+            assertArrayEquals(expected.get(i).fields, actual.get(i).fields);
+        }
+    }
+
+    @Test
+    void checksumIsRedisCrc64() {
+        // The check value of the Jones polynomial Redis uses, from its crc64.c
+        assertEquals(0xe9c6d914c4b8d9caL, RdbWriter.crc64("123456789".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    static void load(byte[] bytes) throws IOException {
+        new RdbLoader(new ByteArrayInputStream(bytes)).load();
+    }
+
+    static String string(String key) {
+        return StringValue.string(Main.keyspace.getString(key));
+    }
+
+    static List<String> list(String key) {
+        List<String> elements = new ArrayList<>();
+        Main.keyspace.getList(key).forEach(elements::add);
+        return elements;
+    }
+
+    static long trailer(byte[] bytes) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (bytes[bytes.length - 8 + i] & 0xFFL) << (8 * i);
+        }
+        return value;
+    }
+
+    static byte[] nodeKey(long ms, long seq) {
+        byte[] key = new byte[16];
+        for (int b = 0; b < 8; b++) {
+            key[b] = (byte) (ms >>> (56 - 8 * b));
+            key[8 + b] = (byte) (seq >>> (56 - 8 * b));
+        }
+        return key;
+    }
+
+    // Writes RDB records byte by byte, in the encodings Redis uses
+    static final class RdbFile {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RdbFile() {
+            out.writeBytes("REDIS0011".getBytes(StandardCharsets.US_ASCII));
+            raw(RdbLoader.OPCODE_AUX).string("redis-ver").string("7.2.0");
+            raw(RdbLoader.OPCODE_SELECTDB).length(0);
+        }
+
+        RdbFile raw(int... bytes) {
+            for (int b : bytes) {
+                out.write(b);
+            }
+            return this;
+        }
+
+        RdbFile key(int type, String key) {
+            return raw(type).string(key);
+        }
+
+        RdbFile expireMs(long at) {
+            return raw(RdbLoader.OPCODE_EXPIRETIME_MS).littleEndian(at, 8);
+        }
+
+        RdbFile littleEndian(long value, int bytes) {
+            for (int i = 0; i < bytes; i++) {
+                out.write((int) (value >>> (8 * i)));
+            }
+            return this;
+        }
+
+        RdbFile length(long length) {
+            if (length < 1 << 6) {
+                return raw((int) length);
+            } else if (length < 1 << 14) {
+                return raw(0x40 | (int) (length >> 8), (int) length & 0xFF);
+            }
+            raw(0x80);
+            for (int i = 3; i >= 0; i--) {
+                out.write((int) (length >>> (8 * i)));
+            }
+            return this;
+        }
+
+        RdbFile string(String value) {
+            return string(value.getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        RdbFile string(byte[] bytes) {
+            length(bytes.length);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        // The EOF opcode and the CRC64 of everything before it, little-endian
+        byte[] finish() {
+            raw(RdbLoader.OPCODE_EOF);
+            littleEndian(RdbWriter.crc64(out.toByteArray()), 8);
+            return out.toByteArray();
+        }
+    }
+}
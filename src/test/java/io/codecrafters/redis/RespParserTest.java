@@ -0,0 +1,122 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+// The request parser as a connection drives it: bytes arrive in arbitrary chunks, every complete
+// command is taken from the buffer, and the rest is compacted to the front before the next read
+class RespParserTest {
+    final RespParser parser = new RespParser();
+    final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @Test
+    void frameSplitAtEveryByteIsParsedOnceComplete() throws Exception {
+        byte[] frame = bytes("*3\r\n$3\r\nSET\r\n$3\r\nkey\r\n$11\r\nhello world\r\n");
+        for (int i = 0; i < frame.length - 1; i++) {
+            assertTrue(read(frame, i, i + 1).isEmpty(), "complete after " + (i + 1) + " bytes");
+        }
+        List<String[]> commands = read(frame, frame.length - 1, frame.length);
+        assertEquals(1, commands.size());
+        assertArrayEquals(new String[]{"SET", "key", "hello world"}, commands.get(0));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void frameSplitInsideBulkPayloadsAndPipelinedAfterIt() throws Exception {
+        byte[] frames = bytes("*2\r\n$4\r\nECHO\r\n$10\r\n0123456789\r\n*1\r\n$4\r\nPING\r\n");
+        int insidePayload = "*2\r\n$4\r\nECHO\r\n$10\r\n01234".length();
+        assertTrue(read(frames, 0, 6).isEmpty());
+        assertTrue(read(frames, 6, insidePayload).isEmpty());
+        assertEquals(10 + 2, parser.pendingBulkBytes());
+        List<String[]> commands = read(frames, insidePayload, frames.length - 3);
+        assertEquals(1, commands.size());
+        assertArrayEquals(new String[]{"ECHO", "0123456789"}, commands.get(0));
+        commands = read(frames, frames.length - 3, frames.length);
+        assertArrayEquals(new String[]{"PING"}, commands.get(0));
+    }
+
+    @Test
+    void binaryPayloadsMayContainCrlf() throws Exception {
+        byte[] value = {'a', '\r', '\n', 'b', 0, (byte) 0xFF, '\r', '\n'};
+        byte[] frame = concat(bytes("*2\r\n$3\r\nSET\r\n$8\r\n"), value, bytes("\r\n"));
+        buffer.put(frame).flip();
+        RespCommand command = parser.parse(buffer);
+        assertEquals(2, command.argc);
+        assertArrayEquals(value, command.bytes(1));
+        assertEquals(8, command.length(1));
+        assertEquals(frame.length, buffer.position());
+    }
+
+    @Test
+    void inlineCommandsSplitOnSpacesWithOrWithoutCr() throws Exception {
+        byte[] input = bytes("PING\r\nSET  key   value\n\r\n*1\r\n$4\r\nPING\r\n");
+        List<String[]> commands = read(input, 0, input.length);
+        assertEquals(4, commands.size());
+        assertArrayEquals(new String[]{"PING"}, commands.get(0));
+        assertArrayEquals(new String[]{"SET", "key", "value"}, commands.get(1));
+        assertArrayEquals(new String[]{}, commands.get(2));
+        assertArrayEquals(new String[]{"PING"}, commands.get(3));
+    }
+
+    @Test
+    void inlineCommandWaitsForItsNewline() throws Exception {
+        byte[] input = bytes("GET key\r\n");
+        assertTrue(read(input, 0, 5).isEmpty());
+        assertArrayEquals(new String[]{"GET", "key"}, read(input, 5, input.length).get(0));
+    }
+
+    @Test
+    void malformedLengthsAreProtocolErrors() {
+        assertProtocolError("*x\r\n", "invalid multibulk length");
+        assertProtocolError("*1\r\n$-5\r\n", "invalid bulk length");
+        assertProtocolError("*1\r\n$3a\r\n", "invalid bulk length");
+        assertProtocolError("*1\r\n$" + (RespParser.MAX_BULK_LENGTH + 1L) + "\r\n", "invalid bulk length");
+        assertProtocolError("*1\r\n$99999999999999999999\r\n", "invalid bulk length");
+        assertProtocolError("*1\r\n:3\r\n", "expected '$', got ':'");
+        assertProtocolError("*1\r\n$3\r\nabcd\r\n", "bulk string is not terminated by CRLF");
+    }
+
+    private void assertProtocolError(String input, String message) {
+        RespParser fresh = new RespParser();
+        ByteBuffer in = ByteBuffer.wrap(bytes(input));
+        RespParser.ProtocolException e = assertThrows(RespParser.ProtocolException.class, () -> fresh.parse(in));
+        assertEquals("Protocol error: " + message, e.getMessage());
+    }
+
+    // Appends input[from, to) as one read, then parses every complete command and compacts
+    private List<String[]> read(byte[] input, int from, int to) throws RespParser.ProtocolException {
+        buffer.put(input, from, to - from).flip();
+        List<String[]> commands = new ArrayList<>();
+        RespCommand command;
+        while ((command = parser.parse(buffer)) != null) {
+            commands.add(command.toStrings());
+        }
+        buffer.compact();
+        return commands;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer joined = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            joined.put(part);
+        }
+        return joined.array();
+    }
+}
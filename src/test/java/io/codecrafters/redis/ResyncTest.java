@@ -0,0 +1,155 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+// Full and partial resync between two server processes, timed and with the bytes the master sent.
+// The replica reaches the master through a proxy in this process, which counts the bytes and can
+// drop the link to stand in for a network blip.
+class ResyncTest {
+    static final int MASTER_PORT = 17000;
+    static final int PROXY_PORT = 17001;
+    static final int REPLICA_PORT = 17002;
+    static final int KEYS = 50_000;
+
+    @Test
+    @Timeout(120)
+    void replicaCatchesUpFromTheBacklogAfterTheLinkDrops() throws Exception {
+        File dir = Files.createTempDirectory("resync").toFile();
+        List<Process> servers = new ArrayList<>();
+        try (Proxy proxy = new Proxy(PROXY_PORT, MASTER_PORT)) {
+            servers.add(ServerProcess.start(dir, "--port", String.valueOf(MASTER_PORT), "--repl-backlog-size", "16mb"));
+            ServerProcess.Connection master = ServerProcess.Connection.open(MASTER_PORT);
+            ServerProcess.fill(master, "key:", KEYS);
+            proxy.start();
+
+            long start = System.nanoTime();
+            servers.add(ServerProcess.start(dir, "--port", String.valueOf(REPLICA_PORT),
+                    "--replicaof", "localhost " + PROXY_PORT));
+            ServerProcess.Connection replica = ServerProcess.Connection.open(REPLICA_PORT);
+            awaitInSync(master, replica);
+            report("full sync", KEYS, start, proxy.fromMaster.getAndSet(0));
+
+            // Writes made while the link is down must come from the backlog, not a second full sync
+            proxy.dropConnections();
+            ServerProcess.fill(master, "late:", KEYS / 100);
+            start = System.nanoTime();
+            awaitInSync(master, replica);
+            report("partial resync", KEYS / 100, start, proxy.fromMaster.getAndSet(0));
+
+            String stats = master.command("INFO", "stats");
+            assertTrue(stats.contains("sync_full:1\r\n"), stats);
+            assertTrue(stats.contains("sync_partial_ok:1\r\n"), stats);
+            String masterKeys = ServerProcess.field(master.command("INFO", "keyspace"), "db0");
+            assertTrue(masterKeys.startsWith("keys=" + (KEYS + KEYS / 100) + ","), masterKeys);
+            assertEquals(masterKeys, ServerProcess.field(replica.command("INFO", "keyspace"), "db0"));
+        } finally {
+            for (Process server : servers) {
+                server.destroyForcibly();
+            }
+        }
+    }
+
+    static void awaitInSync(ServerProcess.Connection master, ServerProcess.Connection replica)
+            throws IOException, InterruptedException {
+        while (true) {
+            String offset = ServerProcess.field(master.command("INFO", "replication"), "master_repl_offset");
+            String replicaInfo = replica.command("INFO", "replication");
+            if (ServerProcess.field(replicaInfo, "master_link_status").equals("up")
+                    && ServerProcess.field(replicaInfo, "master_repl_offset").equals(offset)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    static void report(String what, int keys, long start, long bytes) {
+        System.out.printf("%s of %d keys: %d ms, %d bytes from the master%n",
+                what, keys, (System.nanoTime() - start) / 1_000_000, bytes);
+    }
+
+    // Forwards connections to the master, counting what the master sends
+    static final class Proxy implements AutoCloseable {
+        final ServerSocket server;
+        final int target;
+        final AtomicLong fromMaster = new AtomicLong();
+        final CopyOnWriteArrayList<Socket> sockets = new CopyOnWriteArrayList<>();
+
+        Proxy(int port, int target) throws IOException {
+            this.server = new ServerSocket(port);
+            this.target = target;
+        }
+
+        void start() {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket downstream = server.accept();
+                        Socket upstream = new Socket("localhost", target);
+                        sockets.add(downstream);
+                        sockets.add(upstream);
+                        pipe(downstream, upstream, null);
+                        pipe(upstream, downstream, fromMaster);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "proxy");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private void pipe(Socket from, Socket to, AtomicLong counter) {
+            Thread thread = new Thread(() -> {
+                byte[] buffer = new byte[64 * 1024];
+                try {
+                    int n;
+                    while ((n = from.getInputStream().read(buffer)) != -1) {
+                        to.getOutputStream().write(buffer, 0, n);
+                        if (counter != null) {
+                            counter.addAndGet(n);
+                        }
+                    }
+                } catch (IOException ignored) {
+                }
+                closeQuietly(from);
+                closeQuietly(to);
+            }, "proxy-pipe");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void dropConnections() {
+            for (Socket socket : sockets) {
+                closeQuietly(socket);
+            }
+            sockets.clear();
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(server);
+            dropConnections();
+        }
+
+        private static void closeQuietly(AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.codecrafters.redis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Trimming and ranges where they cross node boundaries. Entries are 1-0 to 250-0, so with the
+// default of 100 entries per node the nodes hold 1-100, 101-200 and 201-250.
+class StreamTest {
+    static final int ENTRIES = 250;
+    static final int NODE = Stream.NODE_MAX_ENTRIES;
+    static final Pattern ID = Pattern.compile("\\$\\d+\r\n(\\d+-\\d+)\r\n");
+
+    Stream stream;
+
+    @BeforeAll
+    static void registerCommands() {
+        if (Main.commands.lookup("xrange") == null) {
+            Main.registerCommands();
+        }
+    }
+
+    @BeforeEach
+    void fill() {
+        stream = new Stream();
+        for (int i = 1; i <= ENTRIES; i++) {
+            stream.add(i, 0, new String[]{"n", String.valueOf(i)});
+        }
+        assertEquals(3, stream.nodeCount());
+    }
+
+    @Test
+    void exactTrimToLengthCutsIntoANode() {
+        assertEquals(130, stream.trimToLength(120, false, 0));
+        assertEquals(120, stream.length());
+        assertEquals(2, stream.nodeCount());
+        assertEquals(ids(131, 250), ids(all()));
+    }
+
+    @Test
+    void approximateTrimToLengthDropsWholeNodesWithinTheLimit() {
+        assertEquals(0, stream.trimToLength(120, true, NODE - 1));
+        assertEquals(NODE, stream.trimToLength(120, true, Stream.TRIM_LIMIT));
+        assertEquals(ENTRIES - NODE, stream.length());
+        assertEquals(ids(NODE + 1, 250), ids(all()));
+        // Dropping the next whole node would leave fewer than 120, so nothing more goes
+        assertEquals(0, stream.trimToLength(120, true, Stream.TRIM_LIMIT));
+    }
+
+    @Test
+    void trimToMinIdExactAndApproximate() {
+        Stream copy = stream.copy();
+        assertEquals(154, stream.trimToMinId(155, 0, false, 0));
+        assertEquals(ids(155, 250), ids(all()));
+        assertEquals(NODE, copy.trimToMinId(155, 0, true, Stream.TRIM_LIMIT));
+        assertEquals(ids(NODE + 1, 250), ids(copy.range(0, 0, -1, -1, 0, false)));
+    }
+
+    @Test
+    void snapshotSharingTheTrimmedNodeKeepsItsEntries() {
+        Stream snapshot = stream.copy();
+        assertEquals(30, stream.trimToLength(ENTRIES - 30, false, 0));
+        stream.add(251, 0, new String[]{"n", "251"});
+        assertEquals(ids(31, 251), ids(all()));
+        // The trim re-encoded the shared first node into a new one, and the append went to the
+        // live stream's own copy of the last node
+        assertEquals(ENTRIES, snapshot.length());
+        assertEquals(ids(1, ENTRIES), ids(snapshot.range(0, 0, -1, -1, 0, false)));
+    }
+
+    @Test
+    void reverseRangesAcrossNodes() {
+        assertEquals(reversed(ids(95, 230)), ids(stream.range(95, 0, 230, 0, 0, true)));
+        assertEquals(reversed(ids(231, 250)), ids(stream.range(0, 0, -1, -1, 20, true)));
+        // An end between two nodes starts from the last entry of the earlier one
+        assertEquals(reversed(ids(90, 100)), ids(stream.range(90, 0, 100, 5, 0, true)));
+        assertEquals(List.of(), ids(stream.range(251, 0, -1, -1, 0, true)));
+        stream.trimToLength(120, false, 0);
+        assertEquals(reversed(ids(131, 140)), ids(stream.range(0, 0, 140, 0, 0, true)));
+    }
+
+    @Test
+    void exclusiveBoundsAcrossNodes() {
+        Main.keyspace.put("test:stream", stream, Keyspace.NO_EXPIRE);
+        assertEquals(ids(NODE + 1, 2 * NODE), xrange("XRANGE", "test:stream", "(100-0", "(201-0"));
+        assertEquals(reversed(ids(NODE + 1, 2 * NODE)), xrange("XREVRANGE", "test:stream", "(201-0", "(100-0"));
+        // Without a sequence the end is 102-<max>, so excluding it still keeps 102-0
+        assertEquals(ids(100, 102), xrange("XRANGE", "test:stream", "(99", "(102"));
+        assertEquals(ids(201, 203), xrange("XRANGE", "test:stream", "(200-0", "+", "COUNT", "3"));
+        assertEquals(List.of(), xrange("XRANGE", "test:stream", "(100-0", "(101-0"));
+        Main.keyspace.remove("test:stream");
+    }
+
+    private List<Stream.Entry> all() {
+        return stream.range(0, 0, -1, -1, 0, false);
+    }
+
+    private static List<String> ids(List<Stream.Entry> entries) {
+        List<String> ids = new ArrayList<>();
+        for (Stream.Entry entry : entries) {
+            ids.add(Stream.formatId(entry.ms, entry.seq));
+        }
+        return ids;
+    }
+
+    // from-0 to to-0, inclusive
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ids.add(i + "-0");
+        }
+        return ids;
+    }
+
+    private static List<String> reversed(List<String> ids) {
+        List<String> copy = new ArrayList<>(ids);
+        Collections.reverse(copy);
+        return copy;
+    }
+
+    private static List<String> xrange(String... args) {
+        Client client = new Client(null, null);
+        RespCommand command = RespCommand.of(args);
+        Main.call(client, Main.commands.lookup(command), command);
+        Matcher matcher = ID.matcher(new String(client.takeOutput(), StandardCharsets.ISO_8859_1));
+        List<String> ids = new ArrayList<>();
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+}